@@ -0,0 +1,196 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * {@link JsonOutput} based on a char array.
+ *
+ * <p>
+ * Without a {@link Writer} the array grows as needed and the result is
+ * available through {@link #toString()}. With a Writer the array has a fixed
+ * size and is passed on to the Writer whenever it is full, so the memory used
+ * does not depend on the size of the serialized document.
+ */
+public class JsonCharOutput extends JsonOutput {
+
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * Maximum number of chars a single character is escaped to.
+	 */
+	private static final int MAX_STEP = 6;
+
+	/**
+	 * Runs of unescaped characters up to this length are copied char by char.
+	 */
+	private static final int SHORT_RUN = 16;
+
+	private final Writer writer;
+
+	private char[] buf;
+
+	private int count;
+
+	private long flushed;
+
+	/**
+	 * Creates an output collecting all characters in memory.
+	 */
+	public JsonCharOutput() {
+		this.writer = null;
+		this.buf = new char[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates an output passing the characters on to the given writer.
+	 *
+	 * @param writer
+	 */
+	public JsonCharOutput(Writer writer) {
+		this(writer, DEFAULT_BUFFER_SIZE);
+	}
+
+	JsonCharOutput(Writer writer, int bufferSize) {
+		this.writer = writer;
+		this.buf = new char[Math.max(bufferSize, MAX_STEP)];
+	}
+
+	@Override
+	public void append(char ch) {
+		if (count == buf.length) {
+			makeRoom(1);
+		}
+		buf[count++] = ch;
+	}
+
+	@Override
+	public void append(String str) {
+		append(str, 0, str.length());
+	}
+
+	@Override
+	public void append(String str, int start, int end) {
+		int pos = start;
+		while (pos < end) {
+			if (count == buf.length) {
+				makeRoom(end - pos);
+			}
+			int chunk = Math.min(end - pos, buf.length - count);
+			str.getChars(pos, pos + chunk, buf, count);
+			count += chunk;
+			pos += chunk;
+		}
+	}
+
+	@Override
+	public void appendQuoted(String string) {
+		append('"');
+		int len = string.length();
+		int start = 0;
+		int next;
+		while ((next = JsonEscaping.nextEscape(string, start)) < len) {
+			int run = next - start;
+			if (run > SHORT_RUN || run + MAX_STEP > buf.length) {
+				append(string, start, next);
+				start = next;
+				run = 0;
+			}
+			if (buf.length - count < run + MAX_STEP) {
+				makeRoom(run + MAX_STEP);
+			}
+			// short runs are copied here, String.getChars() does not pay off
+			for (int i = start; i < next; i++) {
+				buf[count++] = string.charAt(i);
+			}
+			char ch = string.charAt(next);
+			char escape = (char) JsonEscaping.ESCAPES[ch];
+			buf[count++] = '\\';
+			buf[count++] = escape;
+			if (escape == 'u') {
+				buf[count++] = '0';
+				buf[count++] = '0';
+				buf[count++] = JsonEscaping.HEX[(ch >> 4) & 0xf];
+				buf[count++] = JsonEscaping.HEX[ch & 0xf];
+			}
+			start = next + 1;
+		}
+		if (start < len) {
+			append(string, start, len);
+		}
+		append('"');
+	}
+
+	@Override
+	public long length() {
+		return flushed + count;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (writer != null) {
+			writer.write(buf, 0, count);
+			flushed += count;
+			count = 0;
+			writer.flush();
+		}
+	}
+
+	private void makeRoom(int required) {
+		if (writer == null) {
+			int newLength = Math.max(buf.length * 2, buf.length + required);
+			buf = Arrays.copyOf(buf, newLength);
+		} else {
+			try {
+				writer.write(buf, 0, count);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			flushed += count;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Discards the collected characters so that the output can be reused. The
+	 * array is dropped if it has grown beyond the given capacity.
+	 *
+	 * @param maxRetainedCapacity
+	 */
+	void reset(int maxRetainedCapacity) {
+		count = 0;
+		flushed = 0;
+		if (buf.length > maxRetainedCapacity) {
+			buf = new char[Math.min(INITIAL_CAPACITY, maxRetainedCapacity)];
+		}
+	}
+
+	/**
+	 * @return the collected characters. Only meaningful for outputs created
+	 *         without a writer.
+	 */
+	@Override
+	public String toString() {
+		return new String(buf, 0, count);
+	}
+}
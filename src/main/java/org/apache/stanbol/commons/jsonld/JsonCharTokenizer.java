@@ -0,0 +1,422 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+
+/**
+ * {@link JsonTokenizer} reading characters from a {@link Reader} through a
+ * fixed size buffer. Only the text of the current token is held in memory, so
+ * the memory used does not depend on the size of the document.
+ *
+ * <p>
+ * Strings that lie completely within the buffer and have no escapes are
+ * created from the buffer directly, all others are collected in a separate
+ * text buffer first.
+ */
+final class JsonCharTokenizer extends JsonTokenizer {
+
+	static final int DEFAULT_BUFFER_SIZE = 2048;
+
+	private static final byte IN_OBJECT = 1;
+
+	private static final byte IN_ARRAY = 2;
+
+	/**
+	 * A value is expected, e.g. at the start of the document or after a
+	 * colon.
+	 */
+	private static final int EXPECT_VALUE = 0;
+
+	/**
+	 * A value or the end of the array is expected after '['.
+	 */
+	private static final int EXPECT_FIRST_VALUE = 1;
+
+	/**
+	 * A name or the end of the object is expected after '{'.
+	 */
+	private static final int EXPECT_FIRST_NAME = 2;
+
+	/**
+	 * A comma or the end of the enclosing object or array is expected.
+	 */
+	private static final int EXPECT_SEPARATOR = 3;
+
+	private final Reader reader;
+
+	private final char[] buf;
+
+	private int pos;
+
+	private int limit;
+
+	/**
+	 * Number of characters read before the current buffer content.
+	 */
+	private long consumed;
+
+	private byte[] stack = new byte[16];
+
+	private int depth;
+
+	private int state = EXPECT_VALUE;
+
+	private char[] text = new char[64];
+
+	/**
+	 * The characters of the current token, either {@link #buf} or
+	 * {@link #text}.
+	 */
+	private char[] tokenChars;
+
+	private int tokenStart;
+
+	private int tokenLength;
+
+	JsonCharTokenizer(Reader reader) {
+		this(reader, DEFAULT_BUFFER_SIZE);
+	}
+
+	JsonCharTokenizer(Reader reader, int bufferSize) {
+		this.reader = reader;
+		this.buf = new char[Math.max(bufferSize, 1)];
+	}
+
+	@Override
+	int next() throws IOException, JsonParseException {
+		int ch = skipWhitespace();
+		switch (state) {
+		case EXPECT_FIRST_NAME:
+			if (ch == '}') {
+				return endContainer(END_OBJECT);
+			}
+			return readName(ch);
+		case EXPECT_FIRST_VALUE:
+			if (ch == ']') {
+				return endContainer(END_ARRAY);
+			}
+			return readValue(ch);
+		case EXPECT_SEPARATOR:
+			if (depth == 0) {
+				if (ch < 0) {
+					return END;
+				}
+				throw error("Unexpected character '" + (char) ch + "' after the end of the document");
+			}
+			boolean inObject = stack[depth - 1] == IN_OBJECT;
+			if (ch == ',') {
+				pos++;
+				return inObject ? readName(skipWhitespace()) : readValue(skipWhitespace());
+			}
+			if (ch == (inObject ? '}' : ']')) {
+				return endContainer(inObject ? END_OBJECT : END_ARRAY);
+			}
+			throw unexpected(ch, inObject ? "',' or '}'" : "',' or ']'");
+		default:
+			return readValue(ch);
+		}
+	}
+
+	@Override
+	String getString() {
+		return new String(tokenChars, tokenStart, tokenLength);
+	}
+
+	@Override
+	String getString(JsonLdSymbolTable symbols) {
+		return symbols.intern(tokenChars, tokenStart, tokenLength);
+	}
+
+	@Override
+	Number getNumber() throws JsonParseException {
+		Number number = toNumber(getString());
+		if (number == null) {
+			throw error("JSON does not allow non-finite numbers");
+		}
+		return number;
+	}
+
+	@Override
+	long getOffset() {
+		return consumed + pos;
+	}
+
+	private int readName(int ch) throws IOException, JsonParseException {
+		if (ch != '"') {
+			throw unexpected(ch, "a name");
+		}
+		pos++;
+		readString();
+		ch = skipWhitespace();
+		if (ch != ':') {
+			throw unexpected(ch, "':'");
+		}
+		pos++;
+		state = EXPECT_VALUE;
+		return NAME;
+	}
+
+	private int readValue(int ch) throws IOException, JsonParseException {
+		switch (ch) {
+		case '{':
+			pos++;
+			push(IN_OBJECT);
+			state = EXPECT_FIRST_NAME;
+			return START_OBJECT;
+		case '[':
+			pos++;
+			push(IN_ARRAY);
+			state = EXPECT_FIRST_VALUE;
+			return START_ARRAY;
+		case '"':
+			pos++;
+			readString();
+			state = EXPECT_SEPARATOR;
+			return STRING;
+		case 't':
+			readLiteral("true");
+			state = EXPECT_SEPARATOR;
+			return TRUE;
+		case 'f':
+			readLiteral("false");
+			state = EXPECT_SEPARATOR;
+			return FALSE;
+		case 'n':
+			readLiteral("null");
+			state = EXPECT_SEPARATOR;
+			return NULL;
+		default:
+			if (ch == '-' || (ch >= '0' && ch <= '9')) {
+				readNumber();
+				state = EXPECT_SEPARATOR;
+				return NUMBER;
+			}
+			throw unexpected(ch, "a value");
+		}
+	}
+
+	private void push(byte container) {
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth++] = container;
+	}
+
+	private int endContainer(int token) {
+		pos++;
+		depth--;
+		state = EXPECT_SEPARATOR;
+		return token;
+	}
+
+	/**
+	 * Reads the characters of a string up to the closing quote, the opening
+	 * quote has already been read.
+	 */
+	private void readString() throws IOException, JsonParseException {
+		tokenLength = 0;
+		tokenChars = text;
+		tokenStart = 0;
+		int start = pos;
+		for (;;) {
+			int p = pos;
+			char ch = 0;
+			while (p < limit && (ch = buf[p]) != '"' && ch != '\\' && ch >= ' ') {
+				p++;
+			}
+			if (p < limit && ch == '"' && start == pos) {
+				// the common case: no escapes, no refill
+				tokenChars = buf;
+				tokenStart = start;
+				tokenLength = p - start;
+				pos = p + 1;
+				return;
+			}
+			appendText(buf, pos, p - pos);
+			pos = p;
+			if (p == limit) {
+				if (!fill()) {
+					throw error("Unterminated string");
+				}
+				start = -1;
+				continue;
+			}
+			pos++;
+			if (ch == '"') {
+				return;
+			}
+			if (ch != '\\') {
+				pos--;
+				throw error("Unescaped control character in string");
+			}
+			appendEscaped();
+			start = -1;
+		}
+	}
+
+	private void appendEscaped() throws IOException, JsonParseException {
+		int ch = read();
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			appendText((char) ch);
+			break;
+		case 'b':
+			appendText('\b');
+			break;
+		case 'f':
+			appendText('\f');
+			break;
+		case 'n':
+			appendText('\n');
+			break;
+		case 'r':
+			appendText('\r');
+			break;
+		case 't':
+			appendText('\t');
+			break;
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) {
+					throw error("Invalid unicode escape");
+				}
+				value = (value << 4) | digit;
+			}
+			appendText((char) value);
+			break;
+		default:
+			throw error("Invalid escape sequence");
+		}
+	}
+
+	private void readNumber() throws IOException, JsonParseException {
+		tokenChars = text;
+		tokenStart = 0;
+		tokenLength = 0;
+		for (;;) {
+			if (pos == limit && !fill()) {
+				break;
+			}
+			char ch = buf[pos];
+			if ((ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.' || ch == 'e' || ch == 'E') {
+				appendText(ch);
+				pos++;
+			} else {
+				break;
+			}
+		}
+		if (!isNumber(text, tokenLength)) {
+			throw error("Invalid number '" + getString() + "'");
+		}
+	}
+
+	private void readLiteral(String literal) throws IOException, JsonParseException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (read() != literal.charAt(i)) {
+				throw error("Invalid literal, expected '" + literal + "'");
+			}
+		}
+	}
+
+	private void appendText(char ch) {
+		if (tokenLength == text.length) {
+			text = Arrays.copyOf(text, tokenLength * 2);
+			tokenChars = text;
+		}
+		text[tokenLength++] = ch;
+	}
+
+	private void appendText(char[] chars, int start, int length) {
+		if (tokenLength + length > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length * 2, tokenLength + length));
+			tokenChars = text;
+		}
+		System.arraycopy(chars, start, text, tokenLength, length);
+		tokenLength += length;
+	}
+
+	/**
+	 * @return the next character or -1 at the end of the input.
+	 */
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buf[pos++];
+	}
+
+	/**
+	 * Skips whitespace and returns the next character without consuming it.
+	 *
+	 * @return the next character or -1 at the end of the input.
+	 */
+	private int skipWhitespace() throws IOException {
+		for (;;) {
+			while (pos < limit) {
+				char ch = buf[pos];
+				if (ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t') {
+					return ch;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+	}
+
+	private boolean fill() throws IOException {
+		if (tokenChars == buf) {
+			// the current token must survive the refill, e.g. a name while
+			// the colon is searched
+			if (text.length < tokenLength) {
+				text = new char[Math.max(text.length * 2, tokenLength)];
+			}
+			System.arraycopy(buf, tokenStart, text, 0, tokenLength);
+			tokenChars = text;
+			tokenStart = 0;
+		}
+		consumed += limit;
+		pos = 0;
+		limit = 0;
+		int n;
+		do {
+			n = reader.read(buf, 0, buf.length);
+		} while (n == 0);
+		if (n < 0) {
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	private JsonParseException unexpected(int ch, String expected) {
+		if (ch < 0) {
+			return error("Unexpected end of input, expected " + expected);
+		}
+		return error("Unexpected character '" + (char) ch + "', expected " + expected);
+	}
+}
@@ -0,0 +1,66 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+/**
+ * Lookup table for the characters that have to be escaped in JSON strings.
+ * Only characters below 128 are ever escaped, all others are written as they
+ * are.
+ */
+final class JsonEscaping {
+
+	/**
+	 * The character following the backslash of the escape sequence of an
+	 * ASCII character, 'u' for the "\\u00XX" form and 0 if the character is
+	 * written unescaped.
+	 */
+	static final byte[] ESCAPES = new byte[128];
+
+	static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	static {
+		for (int ch = 0; ch < ' '; ch++) {
+			ESCAPES[ch] = 'u';
+		}
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\f'] = 'f';
+		ESCAPES['\r'] = 'r';
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+	}
+
+	private JsonEscaping() {
+	}
+
+	/**
+	 * @return the index of the first character at or after <code>from</code>
+	 *         that has to be escaped, or the length of the String if there is
+	 *         none.
+	 */
+	static int nextEscape(String string, int from) {
+		int len = string.length();
+		for (int i = from; i < len; i++) {
+			char ch = string.charAt(i);
+			if (ch < 128 && ESCAPES[ch] != 0) {
+				return i;
+			}
+		}
+		return len;
+	}
+}
@@ -16,7 +16,14 @@
 */
 package org.apache.stanbol.commons.jsonld;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -64,6 +71,19 @@ public class JsonLd extends JsonLdCommon {
 	 */
 	private boolean useTypeCoercion = true;
 
+	/**
+	 * The pool the JSON objects and arrays are taken from while this object
+	 * is serialized, <code>null</code> if new maps and lists are created,
+	 * e.g. for {@link #getJsonMap()}.
+	 */
+	private transient JsonLdNodePool nodePool;
+
+	/**
+	 * The plan for serializing this object, see
+	 * {@link #setSerializationPlan(JsonLdSerializationPlan)}.
+	 */
+	private transient JsonLdSerializationPlan serializationPlan;
+
 	/**
 	 * Adds the given resource to this JsonLd object using the resource's
 	 * subject as key. If the key is NULL and there does not exist a resource
@@ -103,15 +123,7 @@ public class JsonLd extends JsonLdCommon {
 	 */
 	@Override
 	public String toString() {
-		if (useJointGraphs) {
-			Map<String, Object> json = createJsonMap();
-
-			return JsonSerializer.toString(json);
-		} else {
-			List<Object> json = createJsonList();
-
-			return JsonSerializer.toString(json);
-		}
+		return toString(0);
 	}
 
 	public Map<String, Object> getJsonMap() {
@@ -136,15 +148,205 @@ public class JsonLd extends JsonLdCommon {
 	 * @return JSON-LD as formatted String.
 	 */
 	public String toString(int indent) {
-		if (useJointGraphs) {
-			Map<String, Object> json = createJsonMap();
+		return toString(indent, JsonSerializationContext.get());
+	}
 
-			return JsonSerializer.toString(json, indent);
+	/**
+	 * Serializes the JSON-LD object structure to a String using the buffers of
+	 * the given context, see {@link #toString(int)}.
+	 * 
+	 * @param indent
+	 *            Number of whitespace chars used for indentation.
+	 * @param context
+	 * @return JSON-LD as String.
+	 */
+	public String toString(int indent, JsonSerializationContext context) {
+		JsonCharOutput out = context.acquireCharOutput();
+		try {
+			write(out, indent, context);
+			return out.toString();
+		} finally {
+			context.release(out);
+		}
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure to the given writer. The output
+	 * is the same as the one of {@link #toString()} but it is passed on to the
+	 * writer in chunks while it is produced. The writer is flushed but not
+	 * closed.
+	 *
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writeTo(writer, 0);
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure to the given writer using
+	 * indentation, see {@link #toString(int)} and {@link #writeTo(Writer)}.
+	 *
+	 * @param writer
+	 * @param indent
+	 *            Number of whitespace chars used for indentation.
+	 * @throws IOException
+	 */
+	public void writeTo(Writer writer, int indent) throws IOException {
+		JsonCharOutput out = new JsonCharOutput(writer);
+		try {
+			write(out, indent, JsonSerializationContext.get());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure to the given stream using the
+	 * given charset. The stream is flushed but not closed.
+	 *
+	 * @param out
+	 * @param charset
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out, Charset charset) throws IOException {
+		writeTo(out, charset, 0);
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure to the given stream using the
+	 * given charset and indentation. The stream is flushed but not closed.
+	 *
+	 * @param out
+	 * @param charset
+	 * @param indent
+	 *            Number of whitespace chars used for indentation.
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out, Charset charset, int indent) throws IOException {
+		if (StandardCharsets.UTF_8.equals(charset)) {
+			// encode directly without the detour through chars
+			JsonUtf8Output utf8 = new JsonUtf8Output(out);
+			try {
+				write(utf8, indent, JsonSerializationContext.get());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			utf8.flush();
 		} else {
-			List<Object> json = createJsonList();
+			Writer writer = new OutputStreamWriter(out, charset);
+			writeTo(writer, indent);
+			writer.flush();
+		}
+	}
 
-			return JsonSerializer.toString(json, indent);
+	/**
+	 * Serializes the JSON-LD object structure directly to UTF-8 bytes, see
+	 * {@link #toString()}.
+	 *
+	 * @return JSON-LD as UTF-8 encoded bytes.
+	 */
+	public byte[] toUtf8Bytes() {
+		return toUtf8Bytes(0);
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure directly to UTF-8 bytes using
+	 * indentation, see {@link #toString(int)}.
+	 *
+	 * @param indent
+	 *            Number of whitespace chars used for indentation.
+	 * @return JSON-LD as UTF-8 encoded bytes.
+	 */
+	public byte[] toUtf8Bytes(int indent) {
+		return toUtf8Bytes(indent, JsonSerializationContext.get());
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure directly to UTF-8 bytes using
+	 * the buffers of the given context, see {@link #toUtf8Bytes(int)}.
+	 *
+	 * @param indent
+	 *            Number of whitespace chars used for indentation.
+	 * @param context
+	 * @return JSON-LD as UTF-8 encoded bytes.
+	 */
+	public byte[] toUtf8Bytes(int indent, JsonSerializationContext context) {
+		JsonUtf8Output out = context.acquireUtf8Output();
+		try {
+			write(out, indent, context);
+			return out.toByteArray();
+		} finally {
+			context.release(out);
+		}
+	}
+
+	/**
+	 * Serializes the JSON-LD object structure to the given output. The JSON
+	 * objects and arrays are taken from the node pool of the context, they
+	 * are only needed until the document is written.
+	 */
+	void write(JsonOutput out, int indent, JsonSerializationContext context) {
+		JsonLdNodePool nodes = beginWrite(context);
+		try {
+			if (useJointGraphs) {
+				JsonSerializer.write(createJsonMap(), indent, out);
+			} else {
+				JsonSerializer.write(createJsonList(), indent, out);
+			}
+		} finally {
+			endWrite(nodes, context);
+		}
+	}
+
+	/**
+	 * Encodes the JSON-LD object structure as CBOR, see {@link #write(JsonOutput, int, JsonSerializationContext)}.
+	 */
+	void write(JsonLdCborWriter out, JsonSerializationContext context) {
+		JsonLdNodePool nodes = beginWrite(context);
+		try {
+			if (useJointGraphs) {
+				out.writeValue(createJsonMap(), false);
+			} else {
+				out.writeValue(createJsonList(), false);
+			}
+		} finally {
+			endWrite(nodes, context);
+		}
+	}
+
+	private JsonLdNodePool beginWrite(JsonSerializationContext context) {
+		JsonLdNodePool nodes = context.acquireNodePool();
+		this.nodePool = nodes;
+		if (serializationPlan != null && serializationPlan.appliesTo(this)) {
+			setActivePlan(serializationPlan);
+		}
+		return nodes;
+	}
+
+	private void endWrite(JsonLdNodePool nodes, JsonSerializationContext context) {
+		this.nodePool = null;
+		setActivePlan(null);
+		context.release(nodes);
+	}
+
+	private Map<String, Object> newJsonObject() {
+		if (nodePool != null) {
+			JsonLdSerializationPlan plan = getActivePlan();
+			if (plan != null) {
+				return nodePool.newNode(plan.getComparator(), plan);
+			}
+			return nodePool.newNode(getPropOrderComparator(), null);
 		}
+		return new TreeMap<String, Object>(getPropOrderComparator());
+	}
+
+	private <T> List<T> newJsonList() {
+		if (nodePool != null) {
+			return nodePool.newList();
+		}
+		return new ArrayList<T>();
 	}
 
 	private Map<String, Object> createJsonMap() {
@@ -155,6 +357,9 @@ public class JsonLd extends JsonLdCommon {
 			// problems while using the shortening algorithm
 			this.setUseCuries(true);
 			this.usedNamespaces.clear();
+			if (nodePool != null) {
+				nodePool.reset();
+			}
 			try {
 				json = createJointGraph();
 			} catch (ShorteningException e1) {
@@ -172,6 +377,9 @@ public class JsonLd extends JsonLdCommon {
 			// problems while using the shortening algorithm
 			this.setUseCuries(true);
 			this.usedNamespaces.clear();
+			if (nodePool != null) {
+				nodePool.reset();
+			}
 			try {
 				json = createDisjointGraph();
 			} catch (ShorteningException e1) {
@@ -182,12 +390,13 @@ public class JsonLd extends JsonLdCommon {
 	}
 
 	private List<Object> createDisjointGraph() throws ShorteningException {
-		List<Object> json = new ArrayList<Object>();
+		List<Object> json = newJsonList();
 		if (!resourceMap.isEmpty()) {
 
 			for (String subject : resourceMap.keySet()) {
-				Map<String, Object> subjectObject = new TreeMap<String, Object>(getPropOrderComparator());
+				Map<String, Object> subjectObject = newJsonObject();
 				JsonLdResource resource = resourceMap.get(subject);
+				resource.addImplicitNamespaces(this.usedNamespaces);
 
 				// put subject
 				if (resource.getSubject() != null && !resource.getSubject().isEmpty()) {
@@ -210,7 +419,7 @@ public class JsonLd extends JsonLdCommon {
 
 				// put the used namespaces
 				if (!this.usedNamespaces.isEmpty() || this.useTypeCoercion) {
-					Map<String, Object> nsObject = new TreeMap<String, Object>(getPropOrderComparator());
+					Map<String, Object> nsObject = newJsonObject();
 
 					for (String ns : this.usedNamespaces.keySet()) {
 						nsObject.put(this.usedNamespaces.get(ns), ns);
@@ -227,19 +436,20 @@ public class JsonLd extends JsonLdCommon {
 
 	@SuppressWarnings("unchecked")
 	private Map<String, Object> createJointGraph() throws ShorteningException {
-		Map<String, Object> context = new TreeMap<String, Object>(getPropOrderComparator());
+		Map<String, Object> context = newJsonObject();
 
-		Map<String, Object> json = new TreeMap<String, Object>(getPropOrderComparator());
+		Map<String, Object> json = newJsonObject();
 		Map<String, String> coercionMap = new TreeMap<String, String>(getPropOrderComparator());
 
 		if (!resourceMap.isEmpty()) {
-			List<Object> subjects = new ArrayList<Object>();
+			List<Object> subjects = newJsonList();
 
 			for (String subject : resourceMap.keySet()) {
 				// put subject
-				Map<String, Object> subjectObject = new TreeMap<String, Object>(getPropOrderComparator());
+				Map<String, Object> subjectObject = newJsonObject();
 
 				JsonLdResource resource = resourceMap.get(subject);
+				resource.addImplicitNamespaces(this.usedNamespaces);
 
 				// put subject
 				if (resource.getSubject() != null && !resource.getSubject().isEmpty()) {
@@ -260,10 +470,11 @@ public class JsonLd extends JsonLdCommon {
 				if (this.useTypeCoercion) {
 					coercionMap.putAll(resource.getCoerceMap());
 
-					for (String propertyName : resource.getPropertyMap().keySet()) {
-						JsonLdProperty property = resource.getProperty(propertyName);
+					Map<String, JsonLdProperty> propertyMap = resource.getPropertiesToWrite();
+					for (String propertyName : propertyMap.keySet()) {
+						JsonLdProperty property = propertyMap.get(propertyName);
 						if (property.isTyped()) {
-							Map<String, Object> propObject = new TreeMap<String, Object>(getPropOrderComparator());
+							Map<String, Object> propObject = newJsonObject();
 							String finalPropName = propertyName;
 							if (this.useCuries) {
 								propObject.put(TYPE, this.shortenURI(property.getType()));
@@ -320,7 +531,7 @@ public class JsonLd extends JsonLdCommon {
 
 	private void putTypes(Map<String, Object> subjectObject, JsonLdResource resource) throws ShorteningException {
 		if (!resource.getTypes().isEmpty()) {
-			List<String> types = new ArrayList<String>();
+			List<String> types = newJsonList();
 			for (String type : resource.getTypes()) {
 				types.add(shortenURI(type));
 			}
@@ -340,8 +551,9 @@ public class JsonLd extends JsonLdCommon {
 	}
 
 	private void putProperties(Map<String, Object> jsonObject, JsonLdResource resource) throws ShorteningException {
-		for (String property : resource.getPropertyMap().keySet()) {
-			JsonLdProperty jldProperty = resource.getPropertyMap().get(property);
+		Map<String, JsonLdProperty> propertyMap = resource.getPropertiesToWrite();
+		for (String property : propertyMap.keySet()) {
+			JsonLdProperty jldProperty = propertyMap.get(property);
 
 			if (!isContainerProperty(property) && jldProperty.isSingleValued()) {
 				putSingleValuedProperty(jsonObject, resource, property, jldProperty);
@@ -355,8 +567,13 @@ public class JsonLd extends JsonLdCommon {
 			JsonLdProperty jldProperty) throws ShorteningException {
 		// This is a single value property but it may have
 		// a datatype and a language.
-		Object value = jldProperty.getValues().get(0);
-		Map<String, Object> valueObject = new TreeMap<String, Object>(getPropOrderComparator());
+		JsonLdPropertyValue value = jldProperty.getValues().get(0);
+		JsonLdRawJson verbatim = getVerbatimJson(value);
+		if (verbatim != null) {
+			jsonObject.put(shortenURI(property), verbatim);
+			return;
+		}
+		Map<String, Object> valueObject = newJsonObject();
 		putProperty(valueObject, resource, property, value);
 
 		if (valueObject.containsKey(TYPE)) {
@@ -441,10 +658,15 @@ public class JsonLd extends JsonLdCommon {
 
 	private void putMultiValuedProperty(Map<String, Object> jsonObject, JsonLdResource resource, String property,
 			JsonLdProperty jldProperty) throws ShorteningException {
-		List<Object> valueList = new ArrayList<Object>();
+		List<Object> valueList = newJsonList();
 
 		for (JsonLdPropertyValue value : jldProperty.getValues()) {
-			Map<String, Object> valueObject = new TreeMap<String, Object>(getPropOrderComparator());
+			JsonLdRawJson verbatim = getVerbatimJson(value);
+			if (verbatim != null) {
+				valueList.add(verbatim);
+				continue;
+			}
+			Map<String, Object> valueObject = newJsonObject();
 			putProperty(valueObject, resource, property, value);
 
 			if (valueObject.containsKey(TYPE)) {
@@ -477,6 +699,20 @@ public class JsonLd extends JsonLdCommon {
 		jsonObject.put(shortenURI(property), valueList);
 	}
 
+	/**
+	 * @return the text the value was read from if it is unchanged since it
+	 *         was read in round-trip mode, otherwise <code>null</code>. The
+	 *         text keeps the CURIEs of the document, so the namespaces of the
+	 *         document are marked as used.
+	 */
+	private JsonLdRawJson getVerbatimJson(JsonLdPropertyValue value) {
+		JsonLdRawJson verbatim = value.getVerbatimJson();
+		if (verbatim != null) {
+			this.usedNamespaces.putAll(getNamespacePrefixMap());
+		}
+		return verbatim;
+	}
+
 	private void simplifyIRI(Map<String, Object> valueObject) throws ShorteningException {
 		// No type coercion but value has type - maybe it's an IRI
 		if (valueObject.get(TYPE).equals(ID)) {
@@ -507,13 +743,13 @@ public class JsonLd extends JsonLdCommon {
 		Map<String, String> coercionMap = resource.getCoerceMap();
 		if (value instanceof JsonLdIRI) {
 			JsonLdIRI iriValue = (JsonLdIRI) value;
-			Map<String, Object> iriObject = new TreeMap<String, Object>();
+			Map<String, Object> iriObject = newJsonObject();
 			iriObject.put(ID, shortenURI(iriValue.getIRI()));
 			jsonObject.put(shortenURI(property), iriObject);
 		} else if (value instanceof JsonLdPropertyValue) {
 			JsonLdPropertyValue jldPropertyValue = (JsonLdPropertyValue) value;
 			if (jldPropertyValue.getValue() != null) {
-				if(jldPropertyValue.getValue() instanceof Number)
+				if(jldPropertyValue.getValue() instanceof Number || jldPropertyValue.getValue() instanceof JsonLdRawJson)
 					jsonObject.put(VALUE, jldPropertyValue.getValue());
 				else if (jldPropertyValue.getValue() instanceof String[]){
 					jsonObject.put(VALUE, (String[]) jldPropertyValue.getValue());
@@ -528,14 +764,10 @@ public class JsonLd extends JsonLdCommon {
 			if (jldPropertyValue.getType() != null) {
 				jsonObject.put(TYPE, shortenURIWithCuries(jldPropertyValue.getType()));
 			}
-			List<String> stringList = jldPropertyValue.getTypes();
-			if (stringList != null && !stringList.isEmpty()) {
-//				jsonObject.put(TYPE, stringList);
-			}
 			if (jldPropertyValue.getLanguage() != null) {
 				jsonObject.put(LANGUAGE, jldPropertyValue.getLanguage());
 			}
-			if (jldPropertyValue.getValues() != null && !jldPropertyValue.getValues().isEmpty()) {
+			if (jldPropertyValue.hasValues()) {
 				Iterator it = jldPropertyValue.getValues().entrySet().iterator();
 				while (it.hasNext()) {
 					Map.Entry<String, String> pairs = (Map.Entry) it.next();
@@ -544,7 +776,7 @@ public class JsonLd extends JsonLdCommon {
 					}
 				}
 			}
-			if (jldPropertyValue.getPropertyMap() != null && ! jldPropertyValue.getPropertyMap().isEmpty()) {
+			if (jldPropertyValue.hasProperties()) {
 				Iterator it = jldPropertyValue.getPropertyMap().entrySet().iterator();
 				while (it.hasNext()) {
 					Map.Entry<String, JsonLdProperty> pairs = (Map.Entry) it.next();
@@ -572,7 +804,7 @@ public class JsonLd extends JsonLdCommon {
 	 * @throws ShorteningException
 	 */
 	private Map<String, Object> unCoerce(Object value, String type) throws ShorteningException {
-		Map<String, Object> typeDef = new TreeMap<String, Object>(getPropOrderComparator());
+		Map<String, Object> typeDef = newJsonObject();
 
 		if (type.equals(ID)) {
 			typeDef.put(VALUE, String.valueOf(value));
@@ -656,6 +888,22 @@ public class JsonLd extends JsonLdCommon {
 		return value;
 	}
 
+	/**
+	 * Sets the plan used to serialize this object. Documents that do not match
+	 * the plan are serialized the generic way, see
+	 * {@link JsonLdSerializationPlan}.
+	 * 
+	 * @param serializationPlan
+	 *            the plan, <code>null</code> to always use the generic way.
+	 */
+	public void setSerializationPlan(JsonLdSerializationPlan serializationPlan) {
+		this.serializationPlan = serializationPlan;
+	}
+
+	public JsonLdSerializationPlan getSerializationPlan() {
+		return serializationPlan;
+	}
+
 	/**
 	 * Return the JSON-LD resource for the given subject.
 	 */
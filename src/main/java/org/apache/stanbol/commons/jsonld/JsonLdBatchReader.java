@@ -0,0 +1,496 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reads newline delimited JSON-LD (NDJSON) as written by the
+ * {@link JsonLdBatchWriter}: every non-blank line of the UTF-8 encoded input
+ * is parsed into a {@link JsonLd} object with
+ * {@link JsonLdParser#parse(java.io.Reader, JsonLdSymbolTable)}. Unlike
+ * {@link JsonLdParser#parse(String)} it accepts strict JSON only, and a
+ * truncated or otherwise malformed line fails with a
+ * {@link org.apache.stanbol.commons.exception.JsonParseException} of its own.
+ *
+ * <p>
+ * The input is read on a separate thread and split on line boundaries into
+ * chunks of about the configured chunk size. The chunks are parsed by a number
+ * of worker threads, and the records are passed to the consumer on the calling
+ * thread in input order. At most <code>queueCapacity</code> chunks are read
+ * ahead of the consumer, so the memory used does not depend on the size of the
+ * input.
+ *
+ * <p>
+ * All workers look up the names and short string values of the records in
+ * the same {@link JsonLdSymbolTable}, so the records share the instances of
+ * their property names and IRIs.
+ *
+ * <p>
+ * A line that can not be parsed is passed to the {@link ErrorHandler} at its
+ * position in the input and reading continues with the next line. Exceptions
+ * thrown by the consumer or the error handler abort the batch.
+ *
+ * <p>
+ * The time spent in each stage is summed up over all batches read, see
+ * {@link #getBytesReadPerSecond()}, {@link #getRecordsParsedPerSecond()} and
+ * {@link #getRecordsDeliveredPerSecond()}. The reader is not thread-safe.
+ */
+public class JsonLdBatchReader {
+
+	/**
+	 * Default size of the chunks in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Receives the lines of the input that can not be parsed.
+	 */
+	public interface ErrorHandler {
+
+		/**
+		 * @param lineNumber
+		 *            the number of the line in the input, starting at 1.
+		 * @param line
+		 *            the line without the line terminator.
+		 * @param e
+		 *            the exception thrown while the line was parsed.
+		 */
+		void error(long lineNumber, String line, Exception e);
+	}
+
+	/**
+	 * Put into the queue after the last chunk.
+	 */
+	private static final Future<Chunk> END = CompletableFuture.completedFuture(null);
+
+	private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "JsonLdBatchReader-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private final int threads;
+
+	private final int chunkSize;
+
+	private final int queueCapacity;
+
+	private final JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+
+	private long recordCount;
+
+	private long errorCount;
+
+	private long lineCount;
+
+	private long byteCount;
+
+	private long readNanos;
+
+	private long parseNanos;
+
+	private long deliveryNanos;
+
+	private long elapsedNanos;
+
+	/**
+	 * Creates a reader with one worker thread per available processor.
+	 */
+	public JsonLdBatchReader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads
+	 *            the number of worker threads parsing the records.
+	 */
+	public JsonLdBatchReader(int threads) {
+		this(threads, DEFAULT_CHUNK_SIZE, 2 * threads);
+	}
+
+	/**
+	 * @param threads
+	 *            the number of worker threads parsing the records.
+	 * @param chunkSize
+	 *            the size of the chunks in bytes. A chunk is larger if a single
+	 *            line does not fit.
+	 * @param queueCapacity
+	 *            the number of chunks read ahead of the consumer.
+	 */
+	public JsonLdBatchReader(int threads, int chunkSize, int queueCapacity) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be positive");
+		}
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Reads all records of the stream and passes them to the consumer in
+	 * input order. The stream is not closed.
+	 *
+	 * @param stream
+	 *            the UTF-8 encoded NDJSON input.
+	 * @param records
+	 *            receives the records.
+	 * @param errors
+	 *            receives the lines that can not be parsed.
+	 * @throws IOException
+	 *             if the stream can not be read. The records before the
+	 *             failure have been passed to the consumer.
+	 */
+	public void read(InputStream stream, Consumer<? super JsonLd> records, ErrorHandler errors)
+			throws IOException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1, THREAD_FACTORY);
+		Batch batch = new Batch(stream, executor);
+		try {
+			executor.execute(batch);
+			Future<Chunk> next;
+			while ((next = batch.queue.take()) != END) {
+				Chunk chunk = next.get();
+				long deliveryStart = System.nanoTime();
+				for (Object result : chunk.results) {
+					if (result instanceof Failure) {
+						Failure failure = (Failure) result;
+						errorCount++;
+						errors.error(lineCount + failure.lineIndex + 1, failure.line, failure.exception);
+					} else {
+						recordCount++;
+						records.accept((JsonLd) result);
+					}
+				}
+				deliveryNanos += System.nanoTime() - deliveryStart;
+				parseNanos += chunk.nanos;
+				lineCount += chunk.lines;
+			}
+			if (batch.failure instanceof IOException) {
+				throw (IOException) batch.failure;
+			} else if (batch.failure != null) {
+				throw (RuntimeException) batch.failure;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the next chunk");
+		} catch (ExecutionException e) {
+			// the lines catch their exceptions, so this is an Error
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			byteCount += batch.byteCount;
+			readNanos += batch.readNanos;
+			elapsedNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * @return the number of records passed to the consumer so far.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of lines passed to the error handler so far.
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return the number of lines delivered so far, including blank ones.
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of bytes read so far.
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return the time spent reading the input and splitting it into chunks
+	 *         so far, in nanoseconds.
+	 */
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	/**
+	 * @return the time the worker threads spent parsing records so far, summed
+	 *         up over all workers, in nanoseconds.
+	 */
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	/**
+	 * @return the time spent in the consumer and the error handler so far, in
+	 *         nanoseconds.
+	 */
+	public long getDeliveryNanos() {
+		return deliveryNanos;
+	}
+
+	/**
+	 * @return the wall clock time of all batches read so far, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the number of bytes read per second, based on
+	 *         {@link #getReadNanos()}.
+	 */
+	public double getBytesReadPerSecond() {
+		return readNanos == 0 ? 0 : byteCount * 1e9 / readNanos;
+	}
+
+	/**
+	 * @return the number of records and errors parsed per second by a single
+	 *         worker thread, based on {@link #getParseNanos()}.
+	 */
+	public double getRecordsParsedPerSecond() {
+		return parseNanos == 0 ? 0 : (recordCount + errorCount) * 1e9 / parseNanos;
+	}
+
+	/**
+	 * @return the number of records and errors delivered per second, based on
+	 *         {@link #getDeliveryNanos()}.
+	 */
+	public double getRecordsDeliveredPerSecond() {
+		return deliveryNanos == 0 ? 0 : (recordCount + errorCount) * 1e9 / deliveryNanos;
+	}
+
+	/**
+	 * @return the number of records read per second, based on
+	 *         {@link #getElapsedNanos()}.
+	 */
+	public double getRecordsPerSecond() {
+		return elapsedNanos == 0 ? 0 : recordCount * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Reads the input of a single batch, splits it into chunks and hands them
+	 * to the workers.
+	 */
+	private final class Batch implements Runnable {
+
+		final BlockingQueue<Future<Chunk>> queue = new ArrayBlockingQueue<Future<Chunk>>(queueCapacity);
+
+		private final InputStream stream;
+
+		private final ExecutorService executor;
+
+		volatile Exception failure;
+
+		volatile long byteCount;
+
+		volatile long readNanos;
+
+		private byte[] buf;
+
+		private int count;
+
+		Batch(InputStream stream, ExecutorService executor) {
+			this.stream = stream;
+			this.executor = executor;
+		}
+
+		public void run() {
+			try {
+				try {
+					readChunks();
+				} catch (IOException e) {
+					failure = e;
+					// the complete lines before the failure are delivered
+					int end = lineEnd(buf, count);
+					if (end > 0) {
+						submit(buf, end);
+					}
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+				queue.put(END);
+			} catch (InterruptedException e) {
+				// the batch has been aborted
+			}
+		}
+
+		private void readChunks() throws IOException, InterruptedException {
+			buf = new byte[chunkSize];
+			long start = System.nanoTime();
+			int n;
+			while ((n = stream.read(buf, count, buf.length - count)) >= 0) {
+				count += n;
+				byteCount += n;
+				if (count < buf.length) {
+					continue;
+				}
+				int end = lineEnd(buf, count);
+				if (end == 0) {
+					// a single line longer than the chunk
+					buf = Arrays.copyOf(buf, buf.length * 2);
+					continue;
+				}
+				byte[] next = new byte[Math.max(chunkSize, 2 * (count - end))];
+				System.arraycopy(buf, end, next, 0, count - end);
+				readNanos += System.nanoTime() - start;
+				submit(buf, end);
+				start = System.nanoTime();
+				buf = next;
+				count -= end;
+			}
+			readNanos += System.nanoTime() - start;
+			if (count > 0) {
+				submit(buf, count);
+			}
+		}
+
+		private void submit(byte[] bytes, int length) throws InterruptedException {
+			queue.put(executor.submit(new Chunk(bytes, length)));
+		}
+	}
+
+	/**
+	 * @return the position after the last linefeed, or 0.
+	 */
+	private static int lineEnd(byte[] buf, int count) {
+		for (int i = count - 1; i >= 0; i--) {
+			if (buf[i] == '\n') {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Lines of the input parsed by a worker. The results are the parsed
+	 * records and the failures in input order.
+	 */
+	private final class Chunk implements Callable<Chunk> {
+
+		private final byte[] bytes;
+
+		private final int length;
+
+		final List<Object> results = new ArrayList<Object>();
+
+		int lines;
+
+		long nanos;
+
+		Chunk(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+
+		public Chunk call() {
+			long start = System.nanoTime();
+			int lineStart = 0;
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] == '\n') {
+					parseLine(lineStart, i);
+					lineStart = i + 1;
+				}
+			}
+			if (lineStart < length) {
+				// the last line of the input without linefeed
+				parseLine(lineStart, length);
+			}
+			nanos = System.nanoTime() - start;
+			return this;
+		}
+
+		private void parseLine(int start, int end) {
+			int lineIndex = lines++;
+			if (end > start && bytes[end - 1] == '\r') {
+				end--;
+			}
+			if (isBlank(start, end)) {
+				return;
+			}
+			String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+			try {
+				results.add(JsonLdParser.parse(new StringReader(line), symbols));
+			} catch (Exception e) {
+				results.add(new Failure(lineIndex, line, e));
+			}
+		}
+
+		private boolean isBlank(int start, int end) {
+			for (int i = start; i < end; i++) {
+				if (bytes[i] != ' ' && bytes[i] != '\t') {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class Failure {
+
+		final int lineIndex;
+
+		final String line;
+
+		final Exception exception;
+
+		Failure(int lineIndex, String line, Exception exception) {
+			this.lineIndex = lineIndex;
+			this.line = line;
+			this.exception = exception;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes {@link JsonLd} objects as newline delimited JSON (NDJSON): every
+ * object is serialized as UTF-8 on a single line, the same as
+ * {@link JsonLd#toString()} returns it, followed by a linefeed.
+ *
+ * <p>
+ * All records share one output buffer and one {@link JsonSerializationContext},
+ * and the namespace search of the IRIs is remembered between records with
+ * the same namespace prefix map. Records are passed on to the stream whenever
+ * the buffer is full, so the memory used does not depend on the number of
+ * records.
+ *
+ * <p>
+ * The writer is not thread-safe.
+ */
+public class JsonLdBatchWriter implements Closeable, Flushable {
+
+	private final OutputStream stream;
+
+	private final JsonUtf8Output out;
+
+	private final JsonSerializationContext context;
+
+	private final JsonLdNamespaceCache namespaceCache = new JsonLdNamespaceCache();
+
+	private long recordCount;
+
+	private long nanos;
+
+	/**
+	 * @param stream
+	 *            the stream the records are written to.
+	 */
+	public JsonLdBatchWriter(OutputStream stream) {
+		this(stream, new JsonSerializationContext());
+	}
+
+	/**
+	 * @param stream
+	 *            the stream the records are written to.
+	 * @param context
+	 *            the context used while the records are serialized.
+	 */
+	public JsonLdBatchWriter(OutputStream stream, JsonSerializationContext context) {
+		this.stream = stream;
+		this.out = new JsonUtf8Output(stream);
+		this.context = context;
+	}
+
+	/**
+	 * Writes a single record.
+	 *
+	 * @param jsonLd
+	 * @throws IOException
+	 */
+	public void write(JsonLd jsonLd) throws IOException {
+		long start = System.nanoTime();
+		jsonLd.setNamespaceCache(namespaceCache);
+		try {
+			jsonLd.write(out, 0, context);
+			out.append('\n');
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			jsonLd.setNamespaceCache(null);
+		}
+		recordCount++;
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Writes all records of the iterator.
+	 *
+	 * @param records
+	 * @throws IOException
+	 */
+	public void writeAll(Iterator<? extends JsonLd> records) throws IOException {
+		while (records.hasNext()) {
+			write(records.next());
+		}
+	}
+
+	/**
+	 * Writes all records of the stream in encounter order.
+	 *
+	 * @param records
+	 * @throws IOException
+	 */
+	public void writeAll(Stream<? extends JsonLd> records) throws IOException {
+		writeAll(records.iterator());
+	}
+
+	/**
+	 * Passes all buffered records on to the stream and flushes it.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Flushes and closes the underlying stream.
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return the number of records written so far.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of bytes written so far, including the ones still
+	 *         buffered.
+	 */
+	public long getByteCount() {
+		return out.length();
+	}
+
+	/**
+	 * @return the time spent serializing records so far, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the number of records written per second, based on
+	 *         {@link #getElapsedNanos()}.
+	 */
+	public double getRecordsPerSecond() {
+		return nanos == 0 ? 0 : recordCount * 1e9 / nanos;
+	}
+
+	/**
+	 * @return the number of bytes written per second, based on
+	 *         {@link #getElapsedNanos()}.
+	 */
+	public double getBytesPerSecond() {
+		return nanos == 0 ? 0 : getByteCount() * 1e9 / nanos;
+	}
+
+	/**
+	 * @return the share of IRIs whose namespace was known from an earlier
+	 *         record or IRI, between 0 and 1.
+	 */
+	public double getNamespaceCacheHitRatio() {
+		long lookups = namespaceCache.getHits() + namespaceCache.getMisses();
+		return lookups == 0 ? 0 : (double) namespaceCache.getHits() / lookups;
+	}
+}
@@ -0,0 +1,335 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Decodes CBOR written by {@link JsonLdCborWriter} into a {@link JsonLd}. The
+ * data items are decoded into JSON objects and arrays which are then parsed
+ * like JSON text by the {@link JsonLdParser}.
+ *
+ * <p>
+ * Besides the tags written by {@link JsonLdCborWriter} (stringref namespace
+ * 256, stringref 25 and URI 32), all other tags are ignored and their content
+ * is decoded as it is.
+ *
+ * <p>
+ * Data items may be nested {@link #MAX_DEPTH} levels deep at most, arrays,
+ * maps and tags count as a level each.
+ */
+public final class JsonLdCborReader {
+
+	/**
+	 * Maximum nesting of data items, deeper data is rejected instead of
+	 * overflowing the stack of the recursive decoder.
+	 */
+	static final int MAX_DEPTH = 256;
+
+	private static final Object BREAK = new Object();
+
+	private final byte[] data;
+
+	private int pos;
+
+	private int depth;
+
+	/**
+	 * The string tables of the enclosing stringref namespaces, the innermost
+	 * last. Strings outside of any namespace are not referenceable.
+	 */
+	private final List<List<String>> stringRefs = new ArrayList<List<String>>();
+
+	private JsonLdCborReader(byte[] data, int offset) {
+		this.data = data;
+		this.pos = offset;
+	}
+
+	/**
+	 * Parses the given CBOR into a JSON-LD data structure.
+	 * 
+	 * @param cbor
+	 * @return JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the data is no valid CBOR or does not hold a JSON
+	 *             object.
+	 */
+	public static JsonLd parse(byte[] cbor) throws JsonParseException {
+		JsonLdCborReader reader = new JsonLdCborReader(cbor, 0);
+		Object value;
+		try {
+			value = reader.readValue();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new JsonParseException("Unexpected end of CBOR data", e);
+		} catch (JSONException e) {
+			throw new JsonParseException("Could not decode CBOR data", e);
+		}
+		if (value == BREAK || reader.pos != cbor.length) {
+			throw new JsonParseException("Unexpected data after the CBOR data item at offset " + reader.pos);
+		}
+		if (!(value instanceof JSONObject)) {
+			throw new JsonParseException("CBOR data does not hold a JSON object");
+		}
+		return JsonLdParser.parse((JSONObject) value);
+	}
+
+	/**
+	 * Parses the CBOR read from the given stream into a JSON-LD data
+	 * structure. The stream is read to its end but not closed.
+	 * 
+	 * @param stream
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 */
+	public static JsonLd parse(InputStream stream) throws IOException, JsonParseException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = stream.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return parse(bytes.toByteArray());
+	}
+
+	private Object readValue() throws JsonParseException, JSONException {
+		if (++depth > MAX_DEPTH) {
+			throw new JsonParseException("CBOR data nested deeper than " + MAX_DEPTH + " levels at offset " + pos);
+		}
+		try {
+			return readItem();
+		} finally {
+			depth--;
+		}
+	}
+
+	private Object readItem() throws JsonParseException, JSONException {
+		int initial = data[pos++] & 0xff;
+		int major = initial >>> 5;
+		int info = initial & 0x1f;
+		if (major == 7) {
+			return readSimple(info);
+		}
+		if (info == 31) {
+			return readIndefinite(major);
+		}
+		long argument = readArgument(info);
+		switch (major) {
+		case 0:
+		case 1:
+			if (argument < 0) {
+				throw new JsonParseException("Integer out of range at offset " + pos);
+			}
+			return toNumber(major == 0 ? argument : -1 - argument);
+		case 2:
+		case 3:
+			return readString(major, checkLength(argument));
+		case 4: {
+			JSONArray array = new JSONArray();
+			for (long i = 0; i < argument; i++) {
+				Object element = readValue();
+				if (element == BREAK) {
+					throw new JsonParseException("Unexpected break at offset " + pos);
+				}
+				array.put(element);
+			}
+			return array;
+		}
+		case 5: {
+			JSONObject object = new JSONObject();
+			for (long i = 0; i < argument; i++) {
+				putMember(object, readValue(), readValue());
+			}
+			return object;
+		}
+		default:
+			return readTagged(argument);
+		}
+	}
+
+	private Object readTagged(long tag) throws JsonParseException, JSONException {
+		if (tag == JsonLdCborWriter.TAG_STRINGREF_NAMESPACE) {
+			stringRefs.add(new ArrayList<String>());
+			try {
+				return readValue();
+			} finally {
+				stringRefs.remove(stringRefs.size() - 1);
+			}
+		} else if (tag == JsonLdCborWriter.TAG_STRINGREF) {
+			Object index = readValue();
+			List<String> table = stringRefs.isEmpty() ? null : stringRefs.get(stringRefs.size() - 1);
+			if (!(index instanceof Number) || table == null || ((Number) index).longValue() < 0
+					|| ((Number) index).longValue() >= table.size()) {
+				throw new JsonParseException("Invalid string reference " + index + " at offset " + pos);
+			}
+			return table.get(((Number) index).intValue());
+		} else {
+			// the IRI tag and unknown tags: the content is what counts
+			return readValue();
+		}
+	}
+
+	private Object readIndefinite(int major) throws JsonParseException, JSONException {
+		switch (major) {
+		case 2:
+		case 3: {
+			// chunks are not referenceable
+			StringBuilder sb = new StringBuilder();
+			Object chunk;
+			while ((chunk = readValue()) != BREAK) {
+				if (!(chunk instanceof String)) {
+					throw new JsonParseException("Invalid chunk of an indefinite length string at offset " + pos);
+				}
+				sb.append((String) chunk);
+			}
+			return sb.toString();
+		}
+		case 4: {
+			JSONArray array = new JSONArray();
+			Object element;
+			while ((element = readValue()) != BREAK) {
+				array.put(element);
+			}
+			return array;
+		}
+		case 5: {
+			JSONObject object = new JSONObject();
+			Object key;
+			while ((key = readValue()) != BREAK) {
+				putMember(object, key, readValue());
+			}
+			return object;
+		}
+		default:
+			throw new JsonParseException("Invalid indefinite length item at offset " + pos);
+		}
+	}
+
+	private void putMember(JSONObject object, Object key, Object value) throws JsonParseException,
+			JSONException {
+		if (!(key instanceof String) || value == BREAK) {
+			throw new JsonParseException("Invalid map entry at offset " + pos);
+		}
+		object.put((String) key, value);
+	}
+
+	private String readString(int major, int length) throws JsonParseException {
+		if (length > data.length - pos) {
+			throw new JsonParseException("Unexpected end of CBOR data");
+		}
+		String str = major == 3 ? new String(data, pos, length, StandardCharsets.UTF_8)
+				: new String(data, pos, length, StandardCharsets.ISO_8859_1);
+		pos += length;
+		if (!stringRefs.isEmpty()) {
+			List<String> table = stringRefs.get(stringRefs.size() - 1);
+			if (JsonLdCborWriter.isReferenceable(length, table.size())) {
+				table.add(str);
+			}
+		}
+		return str;
+	}
+
+	private Object readSimple(int info) throws JsonParseException {
+		switch (info) {
+		case 20:
+			return Boolean.FALSE;
+		case 21:
+			return Boolean.TRUE;
+		case 22:
+		case 23:
+			return JSONObject.NULL;
+		case 25:
+			return Double.valueOf(halfToFloat((int) readBits(2)));
+		case 26:
+			return Double.valueOf(Float.intBitsToFloat((int) readBits(4)));
+		case 27:
+			return Double.valueOf(Double.longBitsToDouble(readBits(8)));
+		case 31:
+			return BREAK;
+		default:
+			throw new JsonParseException("Unsupported simple value " + info + " at offset " + pos);
+		}
+	}
+
+	private long readArgument(int info) throws JsonParseException {
+		if (info < 24) {
+			return info;
+		}
+		switch (info) {
+		case 24:
+			return readBits(1);
+		case 25:
+			return readBits(2);
+		case 26:
+			return readBits(4);
+		case 27:
+			return readBits(8);
+		default:
+			throw new JsonParseException("Invalid additional information " + info + " at offset " + pos);
+		}
+	}
+
+	private long readBits(int bytes) {
+		long bits = 0;
+		for (int i = 0; i < bytes; i++) {
+			bits = (bits << 8) | (data[pos++] & 0xff);
+		}
+		return bits;
+	}
+
+	private static int checkLength(long length) throws JsonParseException {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new JsonParseException("String too long: " + length);
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Integers are decoded like in JSON text, as Integer if they fit and as
+	 * Long otherwise.
+	 */
+	private static Number toNumber(long value) {
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+
+	private static float halfToFloat(int half) {
+		int exponent = (half >>> 10) & 0x1f;
+		int mantissa = half & 0x3ff;
+		float value;
+		if (exponent == 0) {
+			value = mantissa * (float) Math.pow(2, -24);
+		} else if (exponent == 31) {
+			value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		} else {
+			value = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+		}
+		return (half & 0x8000) != 0 ? -value : value;
+	}
+}
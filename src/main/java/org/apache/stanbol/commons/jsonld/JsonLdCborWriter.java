@@ -0,0 +1,437 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
+
+/**
+ * Encodes {@link JsonLd} objects as CBOR (RFC 8949) instead of JSON text. The
+ * data items are the same the {@link JsonSerializer} writes, in the same
+ * order and with the same compaction, so {@link JsonLdCborReader} gives the
+ * same result as parsing the JSON text.
+ *
+ * <p>
+ * The document is wrapped into a stringref namespace (tag 256, see
+ * http://cbor.schmorp.de/stringref): repeated keys, CURIEs and IRIs are
+ * written once and then referenced by their index (tag 25). Absolute IRIs are
+ * marked with the URI tag 32.
+ */
+public final class JsonLdCborWriter {
+
+	static final int TAG_URI = 32;
+
+	static final int TAG_STRINGREF = 25;
+
+	static final int TAG_STRINGREF_NAMESPACE = 256;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	/**
+	 * Size of the buffer that is passed on to the stream when it is full, see
+	 * {@link #writeTo(JsonLd, OutputStream)}.
+	 */
+	private static final int STREAM_BUFFER_SIZE = 8192;
+
+	private byte[] buf;
+
+	private int count;
+
+	/**
+	 * Receives the buffer whenever it is full, <code>null</code> if the whole
+	 * document is collected in the buffer.
+	 */
+	private final OutputStream stream;
+
+	private final Map<String, Integer> stringRefs = new HashMap<String, Integer>();
+
+	private JsonLdCborWriter(OutputStream stream) {
+		this.stream = stream;
+		this.buf = new byte[stream == null ? INITIAL_CAPACITY : STREAM_BUFFER_SIZE];
+	}
+
+	/**
+	 * Encodes the given document as CBOR.
+	 * 
+	 * @param jsonLd
+	 * @return the CBOR encoded document.
+	 */
+	public static byte[] toCbor(JsonLd jsonLd) {
+		return toCbor(jsonLd, JsonSerializationContext.get());
+	}
+
+	/**
+	 * Encodes the given document as CBOR using the given context.
+	 * 
+	 * @param jsonLd
+	 * @param context
+	 * @return the CBOR encoded document.
+	 */
+	public static byte[] toCbor(JsonLd jsonLd, JsonSerializationContext context) {
+		JsonLdCborWriter out = new JsonLdCborWriter(null);
+		out.writeHead(6, TAG_STRINGREF_NAMESPACE);
+		jsonLd.write(out, context);
+		return Arrays.copyOf(out.buf, out.count);
+	}
+
+	/**
+	 * Encodes the given document as CBOR to the given stream. The data is
+	 * passed on in blocks of 8 KB while it is encoded, only strings longer
+	 * than that are buffered as a whole. The stream is flushed but not closed.
+	 * 
+	 * @param jsonLd
+	 * @param stream
+	 * @throws IOException
+	 */
+	public static void writeTo(JsonLd jsonLd, OutputStream stream) throws IOException {
+		JsonLdCborWriter out = new JsonLdCborWriter(stream);
+		try {
+			out.writeHead(6, TAG_STRINGREF_NAMESPACE);
+			jsonLd.write(out, JsonSerializationContext.get());
+			out.drain();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		stream.flush();
+	}
+
+	/**
+	 * Writes a value the way {@link JsonSerializer} does: <code>null</code>
+	 * values are skipped, String arrays with a single element are written as
+	 * that element unless they belong to a container property, and maps
+	 * holding a serialized object as "value" are written as that object.
+	 */
+	@SuppressWarnings("unchecked")
+	void writeValue(Object value, boolean isContainer) {
+		if (value instanceof String) {
+			String str = (String) value;
+			if (isIri(str)) {
+				writeHead(6, TAG_URI);
+			}
+			writeString(str);
+		} else if (value instanceof JsonLdRawJson) {
+			writeValue(parseRawJson(((JsonLdRawJson) value).getJson()), false);
+		} else if (value instanceof Map<?, ?>) {
+			writeMap((Map<String, Object>) value);
+		} else if (value instanceof List<?>) {
+			List<Object> list = (List<Object>) value;
+			writeHead(4, countNonNull(list));
+			for (Object element : list) {
+				if (element != null) {
+					writeValue(element, false);
+				}
+			}
+		} else if (value instanceof String[]) {
+			String[] array = (String[]) value;
+			if (array.length == 1 && !isContainer && array[0] != null) {
+				writeValue(array[0], isContainer);
+			} else {
+				writeHead(4, countNonNull(Arrays.asList(array)));
+				for (String element : array) {
+					if (element != null) {
+						writeString(element);
+					}
+				}
+			}
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			writeHead(4, array.length());
+			for (int i = 0; i < array.length(); i++) {
+				writeValue(array.opt(i), false);
+			}
+		} else if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			writeHead(5, object.length());
+			Iterator<?> keys = object.keys();
+			while (keys.hasNext()) {
+				String key = (String) keys.next();
+				writeString(key);
+				writeValue(object.opt(key), false);
+			}
+		} else if (value instanceof Boolean) {
+			writeByte(((Boolean) value).booleanValue() ? 0xf5 : 0xf4);
+		} else if (value instanceof Number) {
+			writeNumber((Number) value);
+		} else if (value == null || value == JSONObject.NULL) {
+			writeByte(0xf6);
+		} else {
+			// written as it is by the JsonSerializer
+			writeValue(parseRawJson(value.toString()), false);
+		}
+	}
+
+	private void writeMap(Map<String, Object> map) {
+		Object preSerialized = map.get(JsonLdCommon._VALUE);
+		if (preSerialized instanceof String) {
+			String trimmed = ((String) preSerialized).trim();
+			if (trimmed.length() > 1 && trimmed.startsWith("{") && trimmed.endsWith("}")) {
+				writeValue(parseRawJson(trimmed), false);
+				return;
+			}
+		}
+
+		int size = 0;
+		if (map instanceof JsonLdNode) {
+			JsonLdNode node = (JsonLdNode) map;
+			for (int i = 0; i < node.size(); i++) {
+				if (node.valueAt(i) != null) {
+					size++;
+				}
+			}
+			writeHead(5, size);
+			for (int i = 0; i < node.size(); i++) {
+				writeMember(node.keyAt(i), node.valueAt(i));
+			}
+		} else {
+			for (Object value : map.values()) {
+				if (value != null) {
+					size++;
+				}
+			}
+			writeHead(5, size);
+			for (Map.Entry<String, Object> entry : map.entrySet()) {
+				writeMember(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void writeMember(String key, Object value) {
+		if (value != null) {
+			writeString(key);
+			writeValue(value, JsonSerializer.isContainerProp(key));
+		}
+	}
+
+	private static int countNonNull(List<?> list) {
+		int size = 0;
+		for (Object element : list) {
+			if (element != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Raw JSON is stored as the data items it stands for.
+	 */
+	private static Object parseRawJson(String json) {
+		try {
+			return new JSONTokener(json).nextValue();
+		} catch (JSONException e) {
+			throw new IllegalArgumentException("Not a JSON value: " + json, e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> for IRIs with a scheme and an authority, e.g.
+	 *         "http://...", but not for CURIEs.
+	 */
+	static boolean isIri(String str) {
+		int colon = str.indexOf(':');
+		if (colon < 1 || !str.startsWith("//", colon + 1) || !isAsciiLetter(str.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < colon; i++) {
+			char ch = str.charAt(i);
+			if (!isAsciiLetter(ch) && !(ch >= '0' && ch <= '9') && ch != '+' && ch != '-' && ch != '.') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAsciiLetter(char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+	}
+
+	private void writeNumber(Number number) {
+		if (number instanceof Integer || number instanceof Long || number instanceof Short
+				|| number instanceof Byte) {
+			long value = number.longValue();
+			if (value >= 0) {
+				writeHead(0, value);
+			} else {
+				writeHead(1, -1 - value);
+			}
+		} else if (number instanceof Float) {
+			ensure(5);
+			buf[count++] = (byte) 0xfa;
+			writeBits(Float.floatToIntBits(number.floatValue()), 4);
+		} else if (number instanceof Double) {
+			double value = number.doubleValue();
+			if ((float) value == value) {
+				ensure(5);
+				buf[count++] = (byte) 0xfa;
+				writeBits(Float.floatToIntBits((float) value), 4);
+			} else {
+				ensure(9);
+				buf[count++] = (byte) 0xfb;
+				writeBits(Double.doubleToLongBits(value), 8);
+			}
+		} else {
+			// e.g. BigDecimal, written with all its digits by the JsonSerializer
+			writeValue(parseRawJson(number.toString()), false);
+		}
+	}
+
+	/**
+	 * Writes a text string, or a reference to it if it has been written
+	 * before.
+	 */
+	private void writeString(String str) {
+		Integer ref = stringRefs.get(str);
+		if (ref != null) {
+			writeHead(6, TAG_STRINGREF);
+			writeHead(0, ref.intValue());
+			return;
+		}
+
+		int length = utf8Length(str);
+		if (isReferenceable(length, stringRefs.size())) {
+			stringRefs.put(str, stringRefs.size());
+		}
+		writeHead(3, length);
+		ensure(length);
+		int pos = count;
+		int len = str.length();
+		for (int i = 0; i < len; i++) {
+			char ch = str.charAt(i);
+			if (ch < 0x80) {
+				buf[pos++] = (byte) ch;
+			} else if (!Character.isSurrogate(ch)) {
+				pos = JsonUtf8Output.encodeChar(ch, buf, pos);
+			} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+				pos = JsonUtf8Output.encodeCodePoint(Character.toCodePoint(ch, str.charAt(++i)), buf, pos);
+			} else {
+				buf[pos++] = '?';
+			}
+		}
+		count = pos;
+	}
+
+	/**
+	 * @return the number of bytes of the UTF-8 encoding, unpaired surrogates
+	 *         are written as '?'.
+	 */
+	private static int utf8Length(String str) {
+		int len = str.length();
+		int length = len;
+		for (int i = 0; i < len; i++) {
+			char ch = str.charAt(i);
+			if (ch >= 0x80) {
+				if (ch < 0x800) {
+					length++;
+				} else if (!Character.isSurrogate(ch)) {
+					length += 2;
+				} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+					// 4 bytes for 2 chars
+					length += 2;
+					i++;
+				}
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Strings are only added to the stringref table if a reference is
+	 * shorter than the string.
+	 * 
+	 * @param length
+	 *            the length of the string in bytes
+	 * @param index
+	 *            the index the string would get
+	 */
+	static boolean isReferenceable(int length, int index) {
+		if (index < 24) {
+			return length >= 3;
+		} else if (index < 256) {
+			return length >= 4;
+		} else if (index < 65536) {
+			return length >= 5;
+		} else {
+			return length >= 7;
+		}
+	}
+
+	private void writeHead(int majorType, long value) {
+		ensure(9);
+		int major = majorType << 5;
+		if (value < 24) {
+			buf[count++] = (byte) (major | value);
+		} else if (value < 0x100) {
+			buf[count++] = (byte) (major | 24);
+			writeBits(value, 1);
+		} else if (value < 0x10000) {
+			buf[count++] = (byte) (major | 25);
+			writeBits(value, 2);
+		} else if (value < 0x100000000L) {
+			buf[count++] = (byte) (major | 26);
+			writeBits(value, 4);
+		} else {
+			buf[count++] = (byte) (major | 27);
+			writeBits(value, 8);
+		}
+	}
+
+	private void writeBits(long bits, int bytes) {
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+			buf[count++] = (byte) (bits >>> shift);
+		}
+	}
+
+	private void writeByte(int b) {
+		ensure(1);
+		buf[count++] = (byte) b;
+	}
+
+	private void ensure(int required) {
+		if (buf.length - count < required) {
+			if (stream != null) {
+				drain();
+				if (buf.length >= required) {
+					return;
+				}
+			}
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + required));
+		}
+	}
+
+	/**
+	 * Passes the buffered bytes on to the stream.
+	 */
+	private void drain() {
+		try {
+			stream.write(buf, 0, count);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		count = 0;
+	}
+}
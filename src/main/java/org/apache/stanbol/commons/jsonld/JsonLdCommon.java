@@ -69,6 +69,19 @@ public abstract class JsonLdCommon {
 
     protected boolean useCuries = false;
 
+    /**
+     * Namespace matches shared with other documents while this one is
+     * serialized, <code>null</code> if the namespaces are searched for every
+     * IRI.
+     */
+    private transient JsonLdNamespaceCache namespaceCache;
+
+    /**
+     * The plan this object is serialized with, <code>null</code> if it is
+     * not serialized or the generic path is used.
+     */
+    private transient JsonLdSerializationPlan activePlan;
+
     /**
      * @return
      */
@@ -194,26 +207,9 @@ public abstract class JsonLdCommon {
     private String doCURIE(String uri, boolean useCURIEs, boolean ignoreDuplicates) throws ShorteningException {
         String shortened = uri;
         if (uri != null) {
-            String curie = uri;
-            String curieNamespace = null;
-            for (String namespace : namespacePrefixMap.keySet()) {
-                String prefix = namespacePrefixMap.get(namespace);
-                String prefixEx = prefix + ":";
-
-                if (!uri.startsWith(prefix)) {
-                    curie = curie.replace(namespace, prefixEx);
-
-                    if (!uri.equals(curie)) {
-                        // we mark this namespace as being used
-                        curieNamespace = namespace;
-                        break;
-                    }
-                } else {
-                    // we mark this namespace as being used
-                    curieNamespace = namespace;
-                    break;
-                }
-            }
+            JsonLdNamespaceCache.Match match = findNamespace(uri);
+            String curie = match.curie;
+            String curieNamespace = match.namespace;
 
             if (curieNamespace != null) {
                 String usedPrefix = this.namespacePrefixMap.get(curieNamespace);
@@ -253,6 +249,54 @@ public abstract class JsonLdCommon {
         return shortened;
     }
 
+    private JsonLdNamespaceCache.Match findNamespace(String uri) {
+        JsonLdNamespaceCache.Match match = null;
+        if (activePlan != null) {
+            match = activePlan.getNamespaceMatch(uri);
+        }
+        if (match == null && namespaceCache != null) {
+            match = namespaceCache.get(uri);
+        }
+        if (match == null) {
+            match = searchNamespace(uri);
+            if (namespaceCache != null) {
+                namespaceCache.put(uri, match);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Searches the namespace prefix map for the namespace of the given URI.
+     * 
+     * @param uri
+     * @return the CURIE of the URI and its namespace, the URI itself and no
+     *         namespace if there is none.
+     */
+    JsonLdNamespaceCache.Match searchNamespace(String uri) {
+        String curie = uri;
+        String curieNamespace = null;
+        for (String namespace : namespacePrefixMap.keySet()) {
+            String prefix = namespacePrefixMap.get(namespace);
+            String prefixEx = prefix + ":";
+
+            if (!uri.startsWith(prefix)) {
+                curie = curie.replace(namespace, prefixEx);
+
+                if (!uri.equals(curie)) {
+                    // we mark this namespace as being used
+                    curieNamespace = namespace;
+                    break;
+                }
+            } else {
+                // we mark this namespace as being used
+                curieNamespace = namespace;
+                break;
+            }
+        }
+        return new JsonLdNamespaceCache.Match(curie, curieNamespace);
+    }
+
     public String unCURIE(String uri) {
         //only if namespace prefix is used  
     	if (uri != null && uri.contains(":")) {
@@ -268,6 +312,34 @@ public abstract class JsonLdCommon {
         return uri;
     }
        
+	/**
+	 * Uses the given cache for the namespace search of the IRIs until it is
+	 * reset to <code>null</code>. The cache is bound to the namespace prefix
+	 * map of this object.
+	 *
+	 * @param namespaceCache
+	 */
+	void setNamespaceCache(JsonLdNamespaceCache namespaceCache) {
+		if (namespaceCache != null) {
+			namespaceCache.bind(namespacePrefixMap);
+		}
+		this.namespaceCache = namespaceCache;
+	}
+
+	/**
+	 * Uses the namespaces found for the IRIs of the plan until it is reset to
+	 * <code>null</code>.
+	 *
+	 * @param activePlan
+	 */
+	void setActivePlan(JsonLdSerializationPlan activePlan) {
+		this.activePlan = activePlan;
+	}
+
+	JsonLdSerializationPlan getActivePlan() {
+		return activePlan;
+	}
+
 	public void setPropOrderComparator(Comparator<Object> propOrderComparator) {
 		this.propOrderComparator = propOrderComparator;
 	}
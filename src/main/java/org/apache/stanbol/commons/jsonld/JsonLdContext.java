@@ -0,0 +1,98 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Immutable, pre-processed <code>@context</code> of a JSON-LD document: its
+ * namespaces and prefixes and the type coercions of <code>@coerce</code>, in
+ * document order. Applying it to a document has the same effect as reading
+ * the context entry by entry, see {@link JsonLdContextCache}.
+ */
+final class JsonLdContext {
+
+	private final String[] namespaces;
+
+	private final String[] prefixes;
+
+	private final String[] coercedProperties;
+
+	private final String[] coercedTypes;
+
+	private JsonLdContext(List<String> namespaces, List<String> prefixes, List<String> coercedProperties,
+			List<String> coercedTypes) {
+		this.namespaces = namespaces.toArray(new String[namespaces.size()]);
+		this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+		this.coercedProperties = coercedProperties.toArray(new String[coercedProperties.size()]);
+		this.coercedTypes = coercedTypes.toArray(new String[coercedTypes.size()]);
+	}
+
+	/**
+	 * Reads the given context like <code>JsonLdParser.addContext()</code>
+	 * always did: member names are prefixes in lower case, except for
+	 * <code>@coerce</code> which maps the properties to their types.
+	 *
+	 * @param context
+	 * @return the pre-processed context.
+	 * @throws JSONException
+	 *             if a member can not be read.
+	 */
+	@SuppressWarnings("deprecation")
+	static JsonLdContext compile(JSONObject context) throws JSONException {
+		List<String> namespaces = new ArrayList<String>();
+		List<String> prefixes = new ArrayList<String>();
+		List<String> coercedProperties = new ArrayList<String>();
+		List<String> coercedTypes = new ArrayList<String>();
+		for (Iterator<?> names = context.keys(); names.hasNext();) {
+			String name = names.next().toString().toLowerCase();
+			if (name.equals(JsonLdCommon.COERCE)) {
+				JSONObject typeObject = context.getJSONObject(name);
+				for (Iterator<?> properties = typeObject.keys(); properties.hasNext();) {
+					String property = properties.next().toString();
+					coercedProperties.add(property);
+					coercedTypes.add(typeObject.getString(property));
+				}
+			} else {
+				namespaces.add(context.getString(name));
+				prefixes.add(name);
+			}
+		}
+		return new JsonLdContext(namespaces, prefixes, coercedProperties, coercedTypes);
+	}
+
+	/**
+	 * Adds the namespaces to the document and the type coercions to the
+	 * subject.
+	 *
+	 * @param jld
+	 * @param subject
+	 */
+	void applyTo(JsonLd jld, JsonLdResource subject) {
+		for (int i = 0; i < namespaces.length; i++) {
+			jld.addNamespacePrefix(namespaces[i], prefixes[i]);
+		}
+		for (int i = 0; i < coercedProperties.length; i++) {
+			subject.putPropertyType(coercedProperties[i], coercedTypes[i]);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Remembers the pre-processed <code>@context</code> of the documents parsed,
+ * so that documents sharing the same context, e.g. all annotations using the
+ * Web Annotation context, do not read it entry by entry again. Contexts are
+ * looked up by their content, including the order of their members, because
+ * the order of the namespaces matters when IRIs are shortened.
+ *
+ * <p>
+ * Contexts given as IRI are not loaded. Instead, the context of an IRI can be
+ * registered in advance by {@link #register(String, String)}, documents with
+ * this IRI as <code>@context</code> then get the registered namespaces and
+ * coercions. Documents with any other IRI as context are handled as before.
+ *
+ * <p>
+ * The parsers use the shared cache returned by {@link #getShared()}. The
+ * cache is thread-safe and holds at most the configured number of contexts,
+ * it is cleared when it is full. Registered contexts are kept.
+ */
+public final class JsonLdContextCache {
+
+	/**
+	 * Default maximum number of contexts remembered.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	private static final JsonLdContextCache SHARED = new JsonLdContextCache();
+
+	/**
+	 * Marks the content of a JSON array in a content key, so that it differs
+	 * from an object with the same members.
+	 */
+	private static final Object ARRAY = new Object();
+
+	private final int maxEntries;
+
+	private final Map<Object, JsonLdContext> contexts = new ConcurrentHashMap<Object, JsonLdContext>();
+
+	private final Map<String, JsonLdContext> registered = new ConcurrentHashMap<String, JsonLdContext>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	public JsonLdContextCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            maximum number of contexts remembered.
+	 */
+	public JsonLdContextCache(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the cache used by the parsers.
+	 */
+	public static JsonLdContextCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Registers the context documents refer to by the given IRI.
+	 *
+	 * @param iri
+	 *            the IRI given as <code>@context</code>.
+	 * @param context
+	 *            the JSON object of the context, e.g.
+	 *            <code>{"oa":"http://www.w3.org/ns/oa#"}</code>.
+	 * @throws JSONException
+	 *             if the context is no JSON object.
+	 */
+	public void register(String iri, String context) throws JSONException {
+		registered.put(iri, JsonLdContext.compile(JsonLdParserCommon.parseJson(context)));
+	}
+
+	/**
+	 * Removes the context registered for the given IRI.
+	 *
+	 * @param iri
+	 */
+	public void unregister(String iri) {
+		registered.remove(iri);
+	}
+
+	/**
+	 * @return the context registered for the given IRI, <code>null</code> if
+	 *         there is none.
+	 */
+	JsonLdContext getRegistered(String iri) {
+		return registered.get(iri);
+	}
+
+	/**
+	 * @param context
+	 * @return the pre-processed context, compiled and remembered if it is not
+	 *         known yet.
+	 * @throws JSONException
+	 *             if the context can not be read.
+	 */
+	JsonLdContext get(JSONObject context) throws JSONException {
+		Object key = toKey(context);
+		JsonLdContext compiled = lookup(key);
+		if (compiled == null) {
+			compiled = JsonLdContext.compile(context);
+			remember(key, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * @param key
+	 *            the content of a context, e.g. its JSON text.
+	 * @return the context remembered for the key, <code>null</code> if there
+	 *         is none.
+	 */
+	JsonLdContext lookup(Object key) {
+		JsonLdContext compiled = contexts.get(key);
+		if (compiled == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return compiled;
+	}
+
+	void remember(Object key, JsonLdContext compiled) {
+		if (contexts.size() >= maxEntries) {
+			contexts.clear();
+		}
+		contexts.put(key, compiled);
+	}
+
+	/**
+	 * @return the number of contexts remembered, without the registered ones.
+	 */
+	public int size() {
+		return contexts.size();
+	}
+
+	/**
+	 * Removes all remembered contexts, the registered ones are kept.
+	 */
+	public void clear() {
+		contexts.clear();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return a key that equals the key of any context with the same members
+	 *         in the same order.
+	 */
+	private static Object toKey(Object value) throws JSONException {
+		if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			List<Object> key = new ArrayList<Object>(object.length() * 2);
+			for (Iterator<?> names = object.keys(); names.hasNext();) {
+				Object name = names.next();
+				key.add(name);
+				key.add(toKey(object.get(name.toString())));
+			}
+			return key;
+		}
+		if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			List<Object> key = new ArrayList<Object>(array.length() + 1);
+			key.add(ARRAY);
+			for (int i = 0; i < array.length(); i++) {
+				key.add(toKey(array.get(i)));
+			}
+			return key;
+		}
+		return value;
+	}
+}
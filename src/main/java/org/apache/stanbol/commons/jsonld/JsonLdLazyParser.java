@@ -0,0 +1,288 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
+
+/**
+ * Parses a document into a JSON-LD data structure whose properties are built
+ * on demand, see {@link JsonLdParser#parseLazy(String)}.
+ *
+ * <p>
+ * A structural scan of the text, see {@link JsonScanner}, records the offsets
+ * of the values of the top level keys. <code>@context</code>,
+ * <code>@profile</code> and <code>@id</code> are applied right away like
+ * {@link JsonLdParser#parse(String)} does. The other values stay text until the
+ * property is asked for, and the ones still untouched are written as they are
+ * when the document is serialized.
+ *
+ * <p>
+ * Documents with an <code>@id</code> array and documents that are no strict
+ * JSON are parsed by {@link JsonLdParser#parse(String)}.
+ */
+final class JsonLdLazyParser {
+
+	private static final Logger logger = LogManager.getLogger(JsonLdLazyParser.class);
+
+	private JsonLdLazyParser() {
+	}
+
+	/**
+	 * @see JsonLdParser#parseLazy(String)
+	 */
+	static JsonLd parse(String jsonLdString) throws JSONException {
+		Map<String, int[]> index = index(jsonLdString);
+		int[] id = index == null ? null : index.remove(JsonLdCommon.ID);
+		if (index == null || (id != null && jsonLdString.charAt(id[0]) == '[')) {
+			return JsonLdParser.parse(JsonLdParserCommon.parseJson(jsonLdString));
+		}
+
+		JsonLd jld = new JsonLd();
+		LazyResource subject = new LazyResource(jsonLdString, jld, index);
+		try {
+			int[] context = index.remove(JsonLdCommon.CONTEXT);
+			if (context != null) {
+				// documents with the same context text skip reading it
+				JsonLdContextCache cache = JsonLdContextCache.getShared();
+				String text = jsonLdString.substring(context[0], context[1]);
+				JsonLdContext compiled = cache.lookup(text);
+				if (compiled != null) {
+					compiled.applyTo(jld, subject);
+				} else {
+					Object value = parseValue(jsonLdString, context);
+					if (!(value instanceof JSONObject)) {
+						return JsonLdParser.parse(JsonLdParserCommon.parseJson(jsonLdString));
+					}
+					cache.remember(text, JsonLdParser.compileContext((JSONObject) value, jld, subject));
+				}
+				subject.namespaces.putAll(jld.getNamespacePrefixMap());
+			}
+			int[] profile = index.remove(JsonLdCommon.PROFILE);
+			if (profile != null) {
+				subject.setProfile(parseValue(jsonLdString, profile).toString());
+			}
+			if (id == null) {
+				// no subject specified, see JsonLdParser.parseSubject()
+				subject.setSubject("_:bnode1");
+				jld.put(subject.getSubject(), subject);
+			}
+			// a subject with @id is not added, so its properties are not
+			// needed at all
+		} catch (JSONException e) {
+			logger.error("There were JSON problems when parsing the JSON-LD String", e);
+		}
+		return jld;
+	}
+
+	/**
+	 * @return the offsets of the values of the top level object by name, the
+	 *         last one of duplicate names like in Jettison, <code>null</code>
+	 *         if the document is no strict JSON object.
+	 */
+	private static Map<String, int[]> index(String json) throws JSONException {
+		int i = JsonScanner.skipWhitespace(json, 0);
+		if (i >= json.length() || json.charAt(i) != '{') {
+			return null;
+		}
+		Map<String, int[]> index = new HashMap<String, int[]>();
+		i = JsonScanner.skipWhitespace(json, i + 1);
+		if (i < json.length() && json.charAt(i) == '}') {
+			return JsonScanner.skipWhitespace(json, i + 1) == json.length() ? index : null;
+		}
+		for (;;) {
+			int nameEnd = JsonScanner.skipString(json, i);
+			if (nameEnd < 0) {
+				return null;
+			}
+			String name;
+			if (json.lastIndexOf('\\', nameEnd - 2) >= i) {
+				name = (String) parseValue(json, new int[] { i, nameEnd });
+			} else {
+				name = json.substring(i + 1, nameEnd - 1);
+			}
+			i = JsonScanner.skipWhitespace(json, nameEnd);
+			if (i >= json.length() || json.charAt(i) != ':') {
+				return null;
+			}
+			int start = JsonScanner.skipWhitespace(json, i + 1);
+			int end = JsonScanner.skipValue(json, start);
+			if (end < 0) {
+				return null;
+			}
+			index.put(name, new int[] { start, end });
+			i = JsonScanner.skipWhitespace(json, end);
+			if (i >= json.length()) {
+				return null;
+			}
+			if (json.charAt(i) == '}') {
+				return JsonScanner.skipWhitespace(json, i + 1) == json.length() ? index : null;
+			}
+			if (json.charAt(i) != ',') {
+				return null;
+			}
+			i = JsonScanner.skipWhitespace(json, i + 1);
+		}
+	}
+
+	private static Object parseValue(String json, int[] span) throws JSONException {
+		return new JSONTokener(json.substring(span[0], span[1])).nextValue();
+	}
+
+	/**
+	 * A subject whose properties are built from the text when they are asked
+	 * for.
+	 */
+	static final class LazyResource extends JsonLdResource {
+
+		private final String json;
+
+		private final JsonLd jld;
+
+		/**
+		 * Offsets of the values not built yet, by property name.
+		 */
+		private final Map<String, int[]> rawValues;
+
+		/**
+		 * The namespaces of the <code>@context</code>, which the raw values may
+		 * use.
+		 */
+		final Map<String, String> namespaces = new HashMap<String, String>();
+
+		LazyResource(String json, JsonLd jld, Map<String, int[]> rawValues) {
+			this.json = json;
+			this.jld = jld;
+			this.rawValues = rawValues;
+		}
+
+		/**
+		 * @return whether the property is still text.
+		 */
+		boolean isRaw(String property) {
+			return rawValues.containsKey(property);
+		}
+
+		private void build(String property) {
+			int[] span = rawValues.remove(property);
+			if (span != null) {
+				try {
+					JsonLdParser.handleProperty(jld, this, property, parseValue(json, span));
+				} catch (JSONException e) {
+					logger.error("There were JSON problems when parsing the JSON-LD String", e);
+				}
+			}
+		}
+
+		private void buildIgnoreCase(String property) {
+			List<String> names = new ArrayList<String>();
+			for (String name : rawValues.keySet()) {
+				if (name.equalsIgnoreCase(property)) {
+					names.add(name);
+				}
+			}
+			for (String name : names) {
+				build(name);
+			}
+		}
+
+		@Override
+		public JsonLdProperty getProperty(String property) {
+			build(property);
+			return super.getProperty(property);
+		}
+
+		@Override
+		public Map<String, JsonLdProperty> getPropertyMap() {
+			while (!rawValues.isEmpty()) {
+				build(rawValues.keySet().iterator().next());
+			}
+			return super.getPropertyMap();
+		}
+
+		@Override
+		public JsonLdProperty getPropertyValueIgnoreCase(String property) {
+			buildIgnoreCase(property);
+			return super.getPropertyValueIgnoreCase(property);
+		}
+
+		@Override
+		public boolean hasPropertyIgnorecase(String property) {
+			for (String name : rawValues.keySet()) {
+				if (name.equalsIgnoreCase(property)) {
+					return true;
+				}
+			}
+			return super.hasPropertyIgnorecase(property);
+		}
+
+		@Override
+		public String getTypeOfProperty(String property) {
+			build(property);
+			return super.getTypeOfProperty(property);
+		}
+
+		@Override
+		public void putPropertyType(String property, String type) {
+			build(property);
+			super.putPropertyType(property, type);
+		}
+
+		@Override
+		public void putProperty(String property, Object value) {
+			build(property);
+			super.putProperty(property, value);
+		}
+
+		@Override
+		public void putProperty(JsonLdProperty property) {
+			rawValues.remove(property.getName());
+			super.putProperty(property);
+		}
+
+		@Override
+		Map<String, JsonLdProperty> getPropertiesToWrite() {
+			if (rawValues.isEmpty()) {
+				return super.getPropertiesToWrite();
+			}
+			Map<String, JsonLdProperty> properties = new HashMap<String, JsonLdProperty>(super.getPropertiesToWrite());
+			for (Map.Entry<String, int[]> raw : rawValues.entrySet()) {
+				int[] span = raw.getValue();
+				JsonLdProperty property = new JsonLdProperty(raw.getKey(),
+						new JsonLdRawJson(json, span[0], span[1]));
+				property.setType(getCoerceMap().get(raw.getKey()));
+				properties.put(raw.getKey(), property);
+			}
+			return properties;
+		}
+
+		@Override
+		void addImplicitNamespaces(Map<String, String> usedNamespaces) {
+			if (!rawValues.isEmpty()) {
+				usedNamespaces.putAll(namespaces);
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which namespace of a namespace prefix map an IRI belongs to and
+ * its CURIE, so that documents sharing the same prefix map do not have to
+ * search all namespaces for every IRI again.
+ *
+ * <p>
+ * The cache is bound to the prefix map of each document by
+ * {@link #bind(Map)}. It is cleared whenever the map differs from the last
+ * one, including the iteration order because the first matching namespace
+ * wins. Not thread-safe.
+ */
+final class JsonLdNamespaceCache {
+
+	/**
+	 * Default maximum number of IRIs remembered. The cache is cleared when it
+	 * is full.
+	 */
+	static final int DEFAULT_MAX_ENTRIES = 16 * 1024;
+
+	/**
+	 * Result of the namespace search for an IRI.
+	 */
+	static final class Match {
+
+		final String curie;
+
+		/**
+		 * The matching namespace, <code>null</code> if there is none.
+		 */
+		final String namespace;
+
+		Match(String curie, String namespace) {
+			this.curie = curie;
+			this.namespace = namespace;
+		}
+	}
+
+	private final int maxEntries;
+
+	private final Map<String, Match> matches = new HashMap<String, Match>();
+
+	private final List<String> boundNamespaces = new ArrayList<String>();
+
+	private final List<String> boundPrefixes = new ArrayList<String>();
+
+	private long hits;
+
+	private long misses;
+
+	JsonLdNamespaceCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	JsonLdNamespaceCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Makes the cache valid for the given namespace prefix map, it is cleared
+	 * if the map has changed since the last call.
+	 *
+	 * @param namespacePrefixMap
+	 */
+	void bind(Map<String, String> namespacePrefixMap) {
+		if (!isBoundTo(namespacePrefixMap)) {
+			matches.clear();
+			boundNamespaces.clear();
+			boundPrefixes.clear();
+			for (Map.Entry<String, String> entry : namespacePrefixMap.entrySet()) {
+				boundNamespaces.add(entry.getKey());
+				boundPrefixes.add(entry.getValue());
+			}
+		}
+	}
+
+	private boolean isBoundTo(Map<String, String> namespacePrefixMap) {
+		return hasEntries(namespacePrefixMap, boundNamespaces, boundPrefixes);
+	}
+
+	/**
+	 * @return <code>true</code> if the map iterates over the given namespaces
+	 *         and prefixes, in this order.
+	 */
+	static boolean hasEntries(Map<String, String> namespacePrefixMap, List<String> namespaces,
+			List<String> prefixes) {
+		if (namespacePrefixMap.size() != namespaces.size()) {
+			return false;
+		}
+		int i = 0;
+		for (Map.Entry<String, String> entry : namespacePrefixMap.entrySet()) {
+			if (!entry.getKey().equals(namespaces.get(i)) || !entry.getValue().equals(prefixes.get(i))) {
+				return false;
+			}
+			i++;
+		}
+		return true;
+	}
+
+	Match get(String uri) {
+		Match match = matches.get(uri);
+		if (match == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return match;
+	}
+
+	void put(String uri, Match match) {
+		if (matches.size() >= maxEntries) {
+			matches.clear();
+		}
+		matches.put(uri, match);
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+}
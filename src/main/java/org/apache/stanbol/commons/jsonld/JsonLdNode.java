@@ -0,0 +1,211 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * JSON object built by {@link JsonLd} while it is serialized. The entries are
+ * kept in two arrays sorted by the property order comparator, keys comparing
+ * equal are treated as the same key like in a {@link java.util.TreeMap}: the
+ * first key is kept and the value is replaced.
+ *
+ * <p>
+ * Nodes are taken from a {@link JsonLdNodePool} and reused for the next
+ * serialization, the {@link JsonSerializer} writes their entries by index.
+ */
+final class JsonLdNode extends AbstractMap<String, Object> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private Comparator<Object> comparator;
+
+	private JsonLdSerializationPlan plan;
+
+	private String[] keys = new String[INITIAL_CAPACITY];
+
+	private Object[] values = new Object[INITIAL_CAPACITY];
+
+	private int size;
+
+	void init(Comparator<Object> comparator, JsonLdSerializationPlan plan) {
+		this.comparator = comparator;
+		this.plan = plan;
+	}
+
+	/**
+	 * @return the plan the node is built with, <code>null</code> if there is
+	 *         none.
+	 */
+	JsonLdSerializationPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * @return the number of entries the node has room for without growing.
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	String keyAt(int index) {
+		return keys[index];
+	}
+
+	Object valueAt(int index) {
+		return values[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(Object key1, Object key2) {
+		if (comparator == null) {
+			return ((Comparable<Object>) key1).compareTo(key2);
+		}
+		return comparator.compare(key1, key2);
+	}
+
+	/**
+	 * @return the index of the key, or <code>-(insertion point) - 1</code> if
+	 *         it is not contained.
+	 */
+	private int indexOf(Object key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(keys[mid], key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int index = indexOf(key);
+		if (index >= 0) {
+			Object old = values[index];
+			values[index] = value;
+			return old;
+		}
+		index = -(index + 1);
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		keys[index] = key;
+		values[index] = value;
+		size++;
+		return null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int index = indexOf(key);
+		return index >= 0 ? values[index] : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		Object old = values[index];
+		removeAt(index);
+		return old;
+	}
+
+	private void removeAt(int index) {
+		size--;
+		System.arraycopy(keys, index + 1, keys, index, size - index);
+		System.arraycopy(values, index + 1, values, index, size - index);
+		keys[size] = null;
+		values[size] = null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new Iterator<Map.Entry<String, Object>>() {
+					private int next;
+
+					private int last = -1;
+
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					public Map.Entry<String, Object> next() {
+						if (next >= size) {
+							throw new NoSuchElementException();
+						}
+						last = next++;
+						return new SimpleEntry<String, Object>(keys[last], values[last]);
+					}
+
+					public void remove() {
+						if (last < 0) {
+							throw new IllegalStateException();
+						}
+						removeAt(last);
+						next = last;
+						last = -1;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
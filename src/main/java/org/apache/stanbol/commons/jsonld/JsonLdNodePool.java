@@ -0,0 +1,134 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The JSON objects and arrays {@link JsonLd} builds while it is serialized.
+ * They are handed out in order and taken back all at once by
+ * {@link #reset()}, so that a {@link JsonSerializationContext} can reuse them
+ * for the next document instead of allocating a new map for every subject and
+ * value.
+ *
+ * <p>
+ * Like the buffers of the context, nodes and lists that have grown beyond the
+ * maximum retained capacity are dropped when they are taken back, so a single
+ * large document does not pin their arrays for the lifetime of the thread.
+ */
+final class JsonLdNodePool {
+
+	/**
+	 * Maximum number of nodes and of lists kept between two serializations.
+	 */
+	static final int MAX_RETAINED = 1024;
+
+	/**
+	 * Bytes an entry takes at least in the arrays of a node or list, used to
+	 * turn the maximum retained capacity into a number of entries.
+	 */
+	private static final int ENTRY_SIZE = 8;
+
+	/**
+	 * Maximum number of entries a node or list may have room for to be kept.
+	 */
+	private final int maxRetainedEntries;
+
+	private final List<JsonLdNode> nodes = new ArrayList<JsonLdNode>();
+
+	private final List<ArrayList<Object>> lists = new ArrayList<ArrayList<Object>>();
+
+	private int usedNodes;
+
+	private int usedLists;
+
+	/**
+	 * @param maxRetainedCapacity
+	 *            maximum capacity in bytes the arrays of a node or list may
+	 *            keep between two serializations, see
+	 *            {@link JsonSerializationContext#getMaxRetainedCapacity()}.
+	 */
+	JsonLdNodePool(int maxRetainedCapacity) {
+		this.maxRetainedEntries = maxRetainedCapacity / ENTRY_SIZE;
+	}
+
+	JsonLdNode newNode(Comparator<Object> comparator, JsonLdSerializationPlan plan) {
+		JsonLdNode node;
+		if (usedNodes < nodes.size()) {
+			node = nodes.get(usedNodes);
+		} else {
+			node = new JsonLdNode();
+			nodes.add(node);
+		}
+		usedNodes++;
+		node.init(comparator, plan);
+		return node;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> List<T> newList() {
+		ArrayList<Object> list;
+		if (usedLists < lists.size()) {
+			list = lists.get(usedLists);
+		} else {
+			list = new ArrayList<Object>();
+			lists.add(list);
+		}
+		usedLists++;
+		return (List<T>) list;
+	}
+
+	/**
+	 * Clears all nodes and lists handed out so far, so that they neither
+	 * keep the values of the last document alive nor are handed out twice.
+	 * Nodes and lists that have room for more than
+	 * {@link #maxRetainedEntries} are replaced by new ones.
+	 */
+	void reset() {
+		for (int i = 0; i < usedNodes; i++) {
+			JsonLdNode node = nodes.get(i);
+			if (node.capacity() > maxRetainedEntries) {
+				nodes.set(i, new JsonLdNode());
+			} else {
+				node.clear();
+				node.init(null, null);
+			}
+		}
+		for (int i = 0; i < usedLists; i++) {
+			ArrayList<Object> list = lists.get(i);
+			// the capacity of an ArrayList is not visible, but it is
+			// at most half again the size it has grown to
+			if (list.size() > maxRetainedEntries) {
+				lists.set(i, new ArrayList<Object>());
+			} else {
+				list.clear();
+			}
+		}
+		usedNodes = 0;
+		usedLists = 0;
+		trim(nodes);
+		trim(lists);
+	}
+
+	private static void trim(List<?> pooled) {
+		while (pooled.size() > MAX_RETAINED) {
+			pooled.remove(pooled.size() - 1);
+		}
+	}
+}
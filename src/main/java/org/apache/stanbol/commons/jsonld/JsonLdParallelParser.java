@@ -0,0 +1,312 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
+
+/**
+ * Parses documents with many subjects in an <code>@id</code> array in
+ * parallel, see {@link JsonLdParser#parseParallel(String, ForkJoinPool)}.
+ *
+ * <p>
+ * A structural scan of the text finds the elements of the top level
+ * <code>@id</code> array. The document without the elements is parsed as
+ * usual, the elements are parsed in chunks by the tasks of a
+ * {@link ForkJoinPool}, each chunk into a JsonLd of its own. When the parser
+ * reaches the <code>@id</code> array, the chunks are merged in array order.
+ * Subject <i>i</i> of the array is given the bnode number <i>1 + i</i>
+ * wherever it is parsed, so the result is the same as the sequential one.
+ *
+ * <p>
+ * The scan only accepts strict JSON. Documents using the lenient syntax
+ * Jettison accepts, e.g. single quotes or comments, and documents with fewer
+ * than {@link #MIN_SUBJECTS} subjects are parsed sequentially.
+ */
+final class JsonLdParallelParser {
+
+	/**
+	 * Minimum number of subjects in the <code>@id</code> array for parallel
+	 * parsing.
+	 */
+	static final int MIN_SUBJECTS = 64;
+
+	/**
+	 * Minimum number of subjects parsed by a single task.
+	 */
+	private static final int MIN_CHUNK_SIZE = 16;
+
+	private final String json;
+
+	private int arrayStart = -1;
+
+	private int arrayEnd;
+
+	/**
+	 * Start and end offsets of the array elements.
+	 */
+	private int[] spans = new int[32];
+
+	private int size;
+
+	private JsonLdParallelParser(String json) {
+		this.json = json;
+	}
+
+	/**
+	 * @see JsonLdParser#parseParallel(String, ForkJoinPool)
+	 */
+	static JsonLd parse(String jsonLdString, ForkJoinPool pool) throws JSONException {
+		JsonLdParallelParser parser = new JsonLdParallelParser(jsonLdString);
+		if (!parser.scan() || parser.size < MIN_SUBJECTS) {
+			return JsonLdParser.parse(JsonLdParserCommon.parseJson(jsonLdString));
+		}
+		JSONObject jo = JsonLdParserCommon.parseJson(jsonLdString.substring(0, parser.arrayStart) + "[]"
+				+ jsonLdString.substring(parser.arrayEnd));
+		String profile = jo.has(JsonLdCommon.PROFILE) ? jo.getString(JsonLdCommon.PROFILE) : null;
+		Subjects subjects = parser.parseSubjects(profile, pool);
+
+		JsonLd jld = new JsonLd();
+		JsonLdParser.parseSubject(jo, jld, 1, null, subjects);
+		return jld;
+	}
+
+	private Subjects parseSubjects(String profile, ForkJoinPool pool) throws JSONException {
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (size + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+		Chunk[] chunks = new Chunk[(size + chunkSize - 1) / chunkSize];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = new Chunk(i * chunkSize, Math.min(size, (i + 1) * chunkSize));
+		}
+		try {
+			pool.invoke(new ChunkTask(chunks, 0, chunks.length, profile));
+		} catch (RuntimeException e) {
+			// ForkJoinPool may rethrow a copy of the exception of the task
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof JSONException) {
+					throw (JSONException) cause;
+				}
+			}
+			throw e;
+		}
+		return new Subjects(chunks);
+	}
+
+	/**
+	 * Parses the subjects of a chunk, the ones that are no JSON object are
+	 * only checked for valid syntax.
+	 */
+	private void parse(Chunk chunk, String profile) throws JSONException {
+		for (int i = chunk.from; i < chunk.to; i++) {
+			String element = json.substring(spans[2 * i], spans[2 * i + 1]);
+			if (element.charAt(0) == '{') {
+				JSONObject jo = JsonLdParserCommon.parseJson(element);
+				if (chunk.invalid < 0) {
+					JsonLdParser.parseSubject(jo, chunk.jld, 1 + i, profile, null);
+				}
+			} else {
+				new JSONTokener(element).nextValue();
+				if (chunk.invalid < 0) {
+					chunk.invalid = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the elements of the top level <code>@id</code> array.
+	 *
+	 * @return <code>false</code> if there is none or the document cannot be
+	 *         scanned.
+	 */
+	private boolean scan() {
+		int i = JsonScanner.skipWhitespace(json, 0);
+		if (i >= json.length() || json.charAt(i) != '{') {
+			return false;
+		}
+		i = JsonScanner.skipWhitespace(json, i + 1);
+		if (i < json.length() && json.charAt(i) == '}') {
+			return false;
+		}
+		for (;;) {
+			int nameEnd = JsonScanner.skipString(json, i);
+			if (nameEnd < 0 || json.lastIndexOf('\\', nameEnd - 2) >= i) {
+				return false;
+			}
+			boolean id = nameEnd - i == JsonLdCommon.ID.length() + 2 && json.startsWith(JsonLdCommon.ID, i + 1);
+			i = JsonScanner.skipWhitespace(json, nameEnd);
+			if (i >= json.length() || json.charAt(i) != ':') {
+				return false;
+			}
+			i = JsonScanner.skipWhitespace(json, i + 1);
+			if (id) {
+				// the last @id wins like in Jettison
+				arrayStart = -1;
+				size = 0;
+				if (i < json.length() && json.charAt(i) == '[') {
+					i = scanArray(i);
+				} else {
+					i = JsonScanner.skipValue(json, i);
+				}
+			} else {
+				i = JsonScanner.skipValue(json, i);
+			}
+			if (i < 0) {
+				return false;
+			}
+			i = JsonScanner.skipWhitespace(json, i);
+			if (i >= json.length()) {
+				return false;
+			}
+			if (json.charAt(i) == '}') {
+				return arrayStart >= 0;
+			}
+			if (json.charAt(i) != ',') {
+				return false;
+			}
+			i = JsonScanner.skipWhitespace(json, i + 1);
+		}
+	}
+
+	private int scanArray(int start) {
+		int i = JsonScanner.skipWhitespace(json, start + 1);
+		if (i < json.length() && json.charAt(i) == ']') {
+			return -1;
+		}
+		for (;;) {
+			int end = JsonScanner.skipValue(json, i);
+			if (end < 0) {
+				return -1;
+			}
+			if (2 * size + 2 > spans.length) {
+				spans = Arrays.copyOf(spans, spans.length * 2);
+			}
+			spans[2 * size] = i;
+			spans[2 * size + 1] = end;
+			size++;
+			i = JsonScanner.skipWhitespace(json, end);
+			if (i >= json.length()) {
+				return -1;
+			}
+			if (json.charAt(i) == ']') {
+				arrayStart = start;
+				arrayEnd = i + 1;
+				return arrayEnd;
+			}
+			if (json.charAt(i) != ',') {
+				return -1;
+			}
+			i = JsonScanner.skipWhitespace(json, i + 1);
+		}
+	}
+
+	/**
+	 * The subjects of a chunk of the <code>@id</code> array.
+	 */
+	private static final class Chunk {
+
+		final int from;
+
+		final int to;
+
+		final JsonLd jld = new JsonLd();
+
+		/**
+		 * Index of the first element that is no JSON object, -1 if there is
+		 * none.
+		 */
+		int invalid = -1;
+
+		Chunk(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk[] chunks;
+
+		private final int from;
+
+		private final int to;
+
+		private final String profile;
+
+		ChunkTask(Chunk[] chunks, int from, int to, String profile) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.profile = profile;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				try {
+					parse(chunks[from], profile);
+				} catch (JSONException e) {
+					throw new IllegalArgumentException(e.getMessage(), e);
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(chunks, from, middle, profile), new ChunkTask(chunks, middle, to, profile));
+			}
+		}
+	}
+
+	/**
+	 * The subjects of an <code>@id</code> array parsed in advance.
+	 */
+	static final class Subjects {
+
+		private final Chunk[] chunks;
+
+		private Subjects(Chunk[] chunks) {
+			this.chunks = chunks;
+		}
+
+		/**
+		 * Adds the namespaces and resources of the subjects to the given
+		 * JSON-LD data structure in array order.
+		 *
+		 * @throws JSONException
+		 *             if an element is no JSON object, after the subjects
+		 *             before it have been added.
+		 */
+		void addTo(JsonLd jld) throws JSONException {
+			for (Chunk chunk : chunks) {
+				for (Map.Entry<String, String> namespace : chunk.jld.getNamespacePrefixMap().entrySet()) {
+					jld.addNamespacePrefix(namespace.getKey(), namespace.getValue());
+				}
+				for (String subject : chunk.jld.getResourceSubjects()) {
+					jld.put(subject, chunk.jld.getResource(subject));
+				}
+				if (chunk.invalid >= 0) {
+					throw new JSONException("JSONArray[" + chunk.invalid + "] is not a JSONObject.");
+				}
+			}
+		}
+	}
+}
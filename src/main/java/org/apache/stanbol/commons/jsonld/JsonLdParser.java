@@ -16,15 +16,27 @@
 */
 package org.apache.stanbol.commons.jsonld;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.stanbol.commons.exception.JsonParseException;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
@@ -39,6 +51,8 @@ public class JsonLdParser extends JsonLdParserCommon {
 
 	private static final Logger logger = LogManager.getLogger(JsonLdParser.class);
 
+	private static final String EU_TYPE = "euType";
+
 	/**
 	 * Parse the given String into a JSON-LD data structure.
 	 * 
@@ -47,9 +61,398 @@ public class JsonLdParser extends JsonLdParserCommon {
 	 * @return JSON-LD data structure.
 	 */
 	public static JsonLd parse(String jsonLdString) throws Exception {
+		return parse(parseJson(jsonLdString));
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure like
+	 * {@link #parse(String)}, but use the canonical instances of the given
+	 * symbol table for the names and short string values. Documents parsed
+	 * with the same table share the instances of their property names, IRIs
+	 * and other repeated strings.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @param symbols
+	 *            The table of canonical strings.
+	 * @return JSON-LD data structure.
+	 */
+	public static JsonLd parse(String jsonLdString, JsonLdSymbolTable symbols) throws Exception {
+		return parse(parseJson(jsonLdString, symbols));
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure like
+	 * {@link #parse(String)}, but build the properties of the subject only when
+	 * they are asked for. The String is scanned once for the values of the top
+	 * level keys, a property is built from its value the first time
+	 * {@link JsonLdResource#getProperty(String)} or
+	 * {@link JsonLdResource#getPropertyMap()} needs it.
+	 * 
+	 * <p>
+	 * Values that have not been built are serialized as they are in the
+	 * given String, together with the namespaces of its <code>@context</code>.
+	 * Documents with a top level <code>@id</code> array and documents that are
+	 * no strict JSON are parsed like {@link #parse(String)} does.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @return JSON-LD data structure.
+	 */
+	public static JsonLd parseLazy(String jsonLdString) throws Exception {
+		return JsonLdLazyParser.parse(jsonLdString);
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure like
+	 * {@link #parse(String)}, but parse the subjects of a top level
+	 * <code>@id</code> array in parallel in the common ForkJoinPool.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @return JSON-LD data structure.
+	 * @see #parseParallel(String, ForkJoinPool)
+	 */
+	public static JsonLd parseParallel(String jsonLdString) throws Exception {
+		return parseParallel(jsonLdString, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure like
+	 * {@link #parse(String)}, but parse the subjects of a top level
+	 * <code>@id</code> array in parallel in the given ForkJoinPool. Each task
+	 * parses a chunk of the subjects on its own, the chunks are merged in
+	 * document order and the bnodes are numbered by the position of their
+	 * subject in the array, so the result is the same as the one of
+	 * {@link #parse(String)}.
+	 * 
+	 * <p>
+	 * Documents with only a few subjects are parsed on the calling thread.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @param pool
+	 *            The pool to parse the subjects in.
+	 * @return JSON-LD data structure.
+	 */
+	public static JsonLd parseParallel(String jsonLdString, ForkJoinPool pool) throws Exception {
+		return JsonLdParallelParser.parse(jsonLdString, pool);
+	}
+
+	/**
+	 * Parse the JSON-LD document read from the given Reader into a JSON-LD
+	 * data structure. The document is read incrementally and the JSON-LD data
+	 * structure is built while it is read, so neither the document text nor a
+	 * JSON object tree of it is held in memory. The Reader is not closed.
+	 * 
+	 * <p>
+	 * The result is the same as the one of {@link #parse(String)}, but the
+	 * input has to be strict JSON.
+	 * 
+	 * @param reader
+	 *            Reader providing a JSON-LD document.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parse(Reader reader) throws IOException, JsonParseException {
+		return JsonLdStreamParser.parse(new JsonCharTokenizer(reader));
+	}
+
+	/**
+	 * Parse the JSON-LD document read from the given Reader into a JSON-LD
+	 * data structure like {@link #parse(Reader)}, but use the canonical
+	 * instances of the given symbol table for the names and short string
+	 * values, see {@link #parse(String, JsonLdSymbolTable)}. Strings found in
+	 * the table are not created at all.
+	 * 
+	 * @param reader
+	 *            Reader providing a JSON-LD document.
+	 * @param symbols
+	 *            The table of canonical strings.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parse(Reader reader, JsonLdSymbolTable symbols) throws IOException, JsonParseException {
+		return JsonLdStreamParser.parse(new JsonCharTokenizer(reader), false, symbols);
+	}
+
+	/**
+	 * Parse the UTF-8 encoded JSON-LD document read from the given stream into
+	 * a JSON-LD data structure, see {@link #parse(Reader)}. The stream is not
+	 * closed.
+	 * 
+	 * @param stream
+	 *            InputStream providing a UTF-8 encoded JSON-LD document.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parse(InputStream stream) throws IOException, JsonParseException {
+		return parse(new InputStreamReader(stream, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parse the UTF-8 encoded JSON-LD document read from the given stream into
+	 * a JSON-LD data structure, see {@link #parse(Reader, JsonLdSymbolTable)}.
+	 * The stream is not closed.
+	 * 
+	 * @param stream
+	 *            InputStream providing a UTF-8 encoded JSON-LD document.
+	 * @param symbols
+	 *            The table of canonical strings.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parse(InputStream stream, JsonLdSymbolTable symbols) throws IOException,
+			JsonParseException {
+		return parse(new InputStreamReader(stream, StandardCharsets.UTF_8), symbols);
+	}
+
+	/**
+	 * Parse the UTF-8 encoded JSON-LD document held by the given bytes into a
+	 * JSON-LD data structure, see {@link #parse(Reader)}. The bytes are
+	 * tokenized as they are, without decoding the document into a String
+	 * first. Names and values of ASCII characters without escapes are only
+	 * turned into Strings when they are added to the result.
+	 * 
+	 * @param utf8
+	 *            UTF-8 encoded JSON-LD document.
+	 * @param off
+	 *            index of the first byte of the document.
+	 * @param len
+	 *            number of bytes of the document.
+	 * @return JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON, no JSON object or no
+	 *             valid UTF-8.
+	 */
+	public static JsonLd parse(byte[] utf8, int off, int len) throws JsonParseException {
+		return parse(utf8, off, len, null);
+	}
+
+	/**
+	 * Parse the UTF-8 encoded JSON-LD document held by the given bytes into a
+	 * JSON-LD data structure like {@link #parse(byte[], int, int)}, but use
+	 * the canonical instances of the given symbol table for the names and
+	 * short string values, see {@link #parse(String, JsonLdSymbolTable)}.
+	 * Names of ASCII characters found in the table are looked up directly in
+	 * the bytes, no String is created for them.
+	 * 
+	 * @param utf8
+	 *            UTF-8 encoded JSON-LD document.
+	 * @param off
+	 *            index of the first byte of the document.
+	 * @param len
+	 *            number of bytes of the document.
+	 * @param symbols
+	 *            The table of canonical strings, <code>null</code> to create
+	 *            new strings.
+	 * @return JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON, no JSON object or no
+	 *             valid UTF-8.
+	 */
+	public static JsonLd parse(byte[] utf8, int off, int len, JsonLdSymbolTable symbols) throws JsonParseException {
+		try {
+			return JsonLdStreamParser.parse(new JsonUtf8Tokenizer(ByteBuffer.wrap(utf8, off, len)), false, symbols);
+		} catch (IOException e) {
+			// a buffer is read without I/O
+			throw new IllegalStateException(e);
+		}
+	}
+	/**
+	 * Parse only the properties selected by the given projection from the
+	 * JSON-LD document read from the given Reader, see {@link #parse(Reader)}.
+	 * The values of all other members are skipped while they are read,
+	 * without creating objects for them. The subjects and their
+	 * <code>@context</code> and <code>@profile</code> are read as usual. The
+	 * Reader is not closed.
+	 * 
+	 * @param reader
+	 *            Reader providing a JSON-LD document.
+	 * @param projection
+	 *            The property paths to read.
+	 * @return JSON-LD data structure holding the selected properties.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseProjected(Reader reader, JsonLdProjection projection) throws IOException,
+			JsonParseException {
+		return JsonLdStreamParser.parse(new JsonCharTokenizer(reader), false, null, projection);
+	}
+
+	/**
+	 * Parse only the properties selected by the given projection from the
+	 * given String, see {@link #parseProjected(Reader, JsonLdProjection)}.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @param projection
+	 *            The property paths to read.
+	 * @return JSON-LD data structure holding the selected properties.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseProjected(String jsonLdString, JsonLdProjection projection)
+			throws JsonParseException {
+		try {
+			return parseProjected(new StringReader(jsonLdString), projection);
+		} catch (IOException e) {
+			// StringReader does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parse the JSON-LD document read from the given Reader into a JSON-LD
+	 * data structure like {@link #parse(Reader)}, but build nested property
+	 * values directly as {@link JsonLdProperty} and {@link JsonLdPropertyValue}
+	 * objects instead of Map and List objects. A nested JSON object becomes a
+	 * JsonLdPropertyValue with a property per member, and an array becomes a
+	 * property with one value per element. Objects with an <code>@id</code>
+	 * are {@link JsonLdIRI} values as with {@link #parse(String)}. The Reader
+	 * is not closed.
+	 * 
+	 * @param reader
+	 *            Reader providing a JSON-LD document.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseModel(Reader reader) throws IOException, JsonParseException {
+		return JsonLdStreamParser.parse(new JsonCharTokenizer(reader), true);
+	}
+
+	/**
+	 * Parse the JSON-LD document read from the given Reader into a JSON-LD
+	 * data structure like {@link #parseModel(Reader)}, but use the canonical
+	 * instances of the given symbol table for the names and short string
+	 * values, see {@link #parse(Reader, JsonLdSymbolTable)}.
+	 * 
+	 * @param reader
+	 *            Reader providing a JSON-LD document.
+	 * @param symbols
+	 *            The table of canonical strings.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseModel(Reader reader, JsonLdSymbolTable symbols) throws IOException,
+			JsonParseException {
+		return JsonLdStreamParser.parse(new JsonCharTokenizer(reader), true, symbols);
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure, see
+	 * {@link #parseModel(Reader)}.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @return JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseModel(String jsonLdString) throws JsonParseException {
+		try {
+			return parseModel(new StringReader(jsonLdString));
+		} catch (IOException e) {
+			// StringReader does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parse the given String into a JSON-LD data structure like
+	 * {@link #parseModel(String)}, for documents that are written again after
+	 * a few changes. Each {@link JsonLdPropertyValue} read from a JSON object
+	 * keeps the part of the String it was read from, and is written by
+	 * {@link JsonLd#toString()} as that text, without serializing its
+	 * properties, as long as neither it nor its nested values are modified.
+	 * Unmodified values therefore keep their original member order and
+	 * formatting, also when writing with indentation.
+	 * 
+	 * @param jsonLdString
+	 *            A JSON-LD String.
+	 * @return JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	public static JsonLd parseRoundTrip(String jsonLdString) throws JsonParseException {
+		try {
+			return JsonLdStreamParser.parseRoundTrip(new JsonCharTokenizer(new StringReader(jsonLdString)),
+					jsonLdString);
+		} catch (IOException e) {
+			// StringReader does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parse the UTF-8 encoded JSON-LD documents of the given file and pass
+	 * their subjects to the consumer one at a time. The file is mapped into
+	 * memory in windows and decoded in place, and only the subject that is
+	 * being read is held in memory, so files of several GB can be parsed with
+	 * a heap that does not depend on the file size.
+	 * 
+	 * <p>
+	 * The file holds a single JSON-LD document or a sequence of documents
+	 * separated by whitespace, e.g. as written by {@link JsonLdBatchWriter}.
+	 * The consumer receives a JsonLd per subject: for a document with a top
+	 * level <code>@id</code> array one per element of the array, with the
+	 * namespaces of the <code>@context</code> of the document, otherwise one
+	 * for the document. Unlike {@link #parse(String)}, subjects with an
+	 * <code>@id</code> name are included under this name. The
+	 * <code>@context</code> and <code>@profile</code> of a document have to
+	 * precede its <code>@id</code> array. The names and short string values
+	 * of all subjects share their instances, see {@link JsonLdSymbolTable}.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param subjects
+	 *            Receives the subjects in file order.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or UTF-8, a document is
+	 *             no JSON object or its <code>@context</code> follows its
+	 *             <code>@id</code> array.
+	 */
+	public static void parseSubjects(Path file, Consumer<? super JsonLd> subjects) throws IOException,
+			JsonParseException {
+		parseSubjects(file, subjects, JsonUtf8Tokenizer.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @see #parseSubjects(Path, Consumer)
+	 */
+	static void parseSubjects(Path file, Consumer<? super JsonLd> subjects, int windowSize) throws IOException,
+			JsonParseException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			JsonLdStreamParser.parseSubjects(new JsonUtf8Tokenizer(channel, windowSize, true),
+					new JsonLdSymbolTable(), subjects);
+		}
+	}
+
+	/**
+	 * Parse the given JSON object into a JSON-LD data structure. The object is
+	 * modified while it is parsed.
+	 * 
+	 * @param jo
+	 *            A JSON-LD object.
+	 * @return JSON-LD data structure.
+	 */
+	static JsonLd parse(JSONObject jo) {
 		JsonLd jld = null;
 
-		JSONObject jo = parseJson(jsonLdString);
 		if (jo != null) {
 			jld = new JsonLd();
 			parseSubject(jo, jld, 1, null);
@@ -86,9 +489,25 @@ public class JsonLdParser extends JsonLdParserCommon {
 	 * @param jld
 	 *            JsonLd object to add the created subject resource.
 	 */
-	@SuppressWarnings("deprecation")
 	private static void parseSubject(JSONObject jo, JsonLd jld, int bnodeCount,
 			String profile) {
+		parseSubject(jo, jld, bnodeCount, profile, null);
+	}
+
+	/**
+	 * Parses a single subject.
+	 * 
+	 * @param jo
+	 *            JSON object that holds the subject's data.
+	 * @param jld
+	 *            JsonLd object to add the created subject resource.
+	 * @param parsedSubjects
+	 *            The subjects of the <code>@id</code> array parsed in
+	 *            advance, or <code>null</code>.
+	 */
+	@SuppressWarnings("deprecation")
+	static void parseSubject(JSONObject jo, JsonLd jld, int bnodeCount,
+			String profile, JsonLdParallelParser.Subjects parsedSubjects) {
 
 		// The root subject is used for cases where no explicit subject is
 		// specified. We need
@@ -99,21 +518,7 @@ public class JsonLdParser extends JsonLdParserCommon {
 
 		try {
 			if (jo.has(JsonLdCommon.CONTEXT)) {
-				JSONObject context = jo.getJSONObject(JsonLdCommon.CONTEXT);
-				for (int i = 0; i < context.names().length(); i++) {
-					String name = context.names().getString(i).toLowerCase();
-					if (name.equals(JsonLdCommon.COERCE)) {
-						JSONObject typeObject = context.getJSONObject(name);
-						for (int j = 0; j < typeObject.names().length(); j++) {
-							String property = typeObject.names().getString(j);
-							String type = typeObject.getString(property);
-							subject.putPropertyType(property, type);
-						}
-					} else {
-						jld.addNamespacePrefix(context.getString(name), name);
-					}
-				}
-
+				addContext(jo.get(JsonLdCommon.CONTEXT), jld, subject);
 				jo.remove(JsonLdCommon.CONTEXT);
 			}
 
@@ -136,6 +541,9 @@ public class JsonLdParser extends JsonLdParserCommon {
 					// There is an array of subjects. We create all subjects
 					// in sequence.
 					JSONArray subjects = (JSONArray) subjectObject;
+					if (parsedSubjects != null) {
+						parsedSubjects.addTo(jld);
+					}
 					for (int i = 0; i < subjects.length(); i++) {
 						parseSubject(subjects.getJSONObject(i), jld,
 								bnodeCount++, profile);
@@ -157,12 +565,10 @@ public class JsonLdParser extends JsonLdParserCommon {
 			// Iterate through the rest of properties and unCURIE property
 			// values
 			// depending on their type
-			if (jo.names() != null && jo.names().length() > 0) {
-				for (int i = 0; i < jo.names().length(); i++) {
-					String property = jo.names().getString(i);
-					Object valueObject = jo.get(property);
-					handleProperty(jld, subject, property, valueObject);
-				}
+			for (Iterator<?> keys = jo.keys(); keys.hasNext();) {
+				String property = (String) keys.next();
+				Object valueObject = jo.get(property);
+				handleProperty(jld, subject, property, valueObject);
 			}
 
 		} catch (JSONException e) {
@@ -173,6 +579,108 @@ public class JsonLdParser extends JsonLdParserCommon {
 		}
 	}
 
+	/**
+	 * Adds the namespaces of the given <code>@context</code> value to the
+	 * JSON-LD data structure and its type coercions to the subject. An IRI is
+	 * accepted if a context has been registered for it, see
+	 * {@link JsonLdContextCache#register(String, String)}.
+	 * 
+	 * @param context
+	 *            The value of <code>@context</code>.
+	 * @param jld
+	 *            JsonLd object to add the namespaces to.
+	 * @param subject
+	 *            Subject to add the type coercions to.
+	 * @throws JSONException
+	 *             if the context is no JSON object or registered IRI.
+	 */
+	static void addContext(Object context, JsonLd jld, JsonLdResource subject) throws JSONException {
+		if (context instanceof String) {
+			JsonLdContext registered = JsonLdContextCache.getShared().getRegistered((String) context);
+			if (registered != null) {
+				registered.applyTo(jld, subject);
+				return;
+			}
+		}
+		if (!(context instanceof JSONObject)) {
+			throw new JSONException("JSONObject[\"" + JsonLdCommon.CONTEXT + "\"] is not a JSONObject.");
+		}
+		addContext((JSONObject) context, jld, subject);
+	}
+
+	/**
+	 * Adds the namespaces of the given <code>@context</code> to the JSON-LD
+	 * data structure and its type coercions to the subject. The context is
+	 * pre-processed once and taken from the {@link JsonLdContextCache} for
+	 * all following documents with the same context.
+	 * 
+	 * @param context
+	 *            JSON object that holds the context.
+	 * @param jld
+	 *            JsonLd object to add the namespaces to.
+	 * @param subject
+	 *            Subject to add the type coercions to.
+	 * @return the pre-processed context.
+	 */
+	static JsonLdContext addContext(JSONObject context, JsonLd jld, JsonLdResource subject) throws JSONException {
+		JsonLdContext compiled;
+		try {
+			compiled = JsonLdContextCache.getShared().get(context);
+		} catch (JSONException e) {
+			// apply the entries up to the one that can not be read, as before
+			addContextEntries(context, jld, subject);
+			throw e;
+		}
+		compiled.applyTo(jld, subject);
+		return compiled;
+	}
+
+	/**
+	 * Adds the given <code>@context</code> like
+	 * {@link #addContext(JSONObject, JsonLd, JsonLdResource)}, but without
+	 * looking it up in the {@link JsonLdContextCache}, for callers that have
+	 * looked it up under a key of their own already.
+	 * 
+	 * @param context
+	 *            JSON object that holds the context.
+	 * @param jld
+	 *            JsonLd object to add the namespaces to.
+	 * @param subject
+	 *            Subject to add the type coercions to.
+	 * @return the pre-processed context, to be remembered by the caller.
+	 */
+	static JsonLdContext compileContext(JSONObject context, JsonLd jld, JsonLdResource subject)
+			throws JSONException {
+		JsonLdContext compiled;
+		try {
+			compiled = JsonLdContext.compile(context);
+		} catch (JSONException e) {
+			// apply the entries up to the one that can not be read, as before
+			addContextEntries(context, jld, subject);
+			throw e;
+		}
+		compiled.applyTo(jld, subject);
+		return compiled;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void addContextEntries(JSONObject context, JsonLd jld, JsonLdResource subject)
+			throws JSONException {
+		for (int i = 0; i < context.names().length(); i++) {
+			String name = context.names().getString(i).toLowerCase();
+			if (name.equals(JsonLdCommon.COERCE)) {
+				JSONObject typeObject = context.getJSONObject(name);
+				for (int j = 0; j < typeObject.names().length(); j++) {
+					String property = typeObject.names().getString(j);
+					String type = typeObject.getString(property);
+					subject.putPropertyType(property, type);
+				}
+			} else {
+				jld.addNamespacePrefix(context.getString(name), name);
+			}
+		}
+	}
+
 	/**
 	 * Parses a single subject if subject is undefined.
 	 * Will be replaced through the annotation-utils.AnnotatioParser
@@ -262,12 +770,10 @@ public class JsonLdParser extends JsonLdParserCommon {
 			// Iterate through the rest of properties and unCURIE property
 			// values
 			// depending on their type
-			if (jo.names() != null && jo.names().length() > 0) {
-				for (int i = 0; i < jo.names().length(); i++) {
-					String property = jo.names().getString(i);
-					Object valueObject = jo.get(property);
-					handlePropertyExt(jld, subject, property, valueObject);
-				}
+			for (Iterator<?> keys = jo.keys(); keys.hasNext();) {
+				String property = (String) keys.next();
+				Object valueObject = jo.get(property);
+				handlePropertyExt(jld, subject, property, valueObject);
 			}
 //			jld.put(subject.getSubject(), subject); //
 			jld.put(subject); //
@@ -280,7 +786,7 @@ public class JsonLdParser extends JsonLdParserCommon {
 		}
 	}
 
-	private static void handleProperty(JsonLd jld, JsonLdResource subject,
+	static void handleProperty(JsonLd jld, JsonLdResource subject,
 			String property, Object valueObject) {
 		if (valueObject instanceof JSONObject) {
 			JSONObject jsonValue = (JSONObject) valueObject;
@@ -303,6 +809,7 @@ public class JsonLdParser extends JsonLdParserCommon {
      * This method converts JSON string to map.
      * @param value The input string
      * @return resulting map
+     * @see JsonLdSplitter#splitToMap(CharSequence, Map)
      */
     public static Map<String, String> splitToMap(String value) {
     	String reg = "\",\"|\\},\"";
@@ -336,6 +843,7 @@ public class JsonLdParser extends JsonLdParserCommon {
      * This method converts JSON string to array.
      * @param value The input string
      * @return resulting map
+     * @see JsonLdSplitter#splitToArray(CharSequence, List)
      */
     public static String[] splitToArray(String value) {
         return value.split("\\},\\{");
@@ -345,159 +853,133 @@ public class JsonLdParser extends JsonLdParserCommon {
      * This method converts Annotation JSON list string to array.
      * @param value The input string
      * @return resulting map
+     * @see JsonLdSplitter#splitAnnotationListStringToArray(CharSequence, List)
      */
     public static String[] splitAnnotationListStringToArray(String value) {
         return value.split("\\}\\},\\{");
     }
     
-    /**
-     * This method calculates end position for current key area.
-     * @param key
-     * @param keyList
-     * @param data
-     * @return next area position
-     */
-    private static int findNextKey(String key, List<String> keyList, String data) {
-    	int nextIdx = 0;
-    	Iterator<String> itr = keyList.iterator();
-    	int idx = 0;
-    	if (data != null && data.length() > 0) {
-	    	nextIdx = data.length();
-	    	if (data.contains(key)) {
-		    	idx = data.indexOf(key);
-		    	while (itr.hasNext()) {
-		    		String currentKey = itr.next();
-		    		currentKey = "\"" + currentKey + "\"";
-		        	if (data.contains(currentKey) && !currentKey.equals(key)) {
-		        		int curNextIdx = data.indexOf(currentKey);
-		        		if (curNextIdx > idx && curNextIdx < nextIdx) {
-		        			nextIdx = curNextIdx;
-		        		}
-		        	}
-		    	}
-	    	}
-    	}
-    	return nextIdx;
-    }
-    
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/**
+	 * Handles a property of a subject without explicit subject. JSON objects
+	 * are converted into a {@link JsonLdPropertyValue} and arrays into one per
+	 * element by walking the JSON tree, see {@link #toPropertyValue}.
+	 * Will be replaced through the annotation-utils.AnnotatioParser
+	 */
 	@Deprecated
 	private static void handlePropertyExt(JsonLd jld, JsonLdResource subject,
 			String property, Object valueObject) throws JSONException {
 		
 		if (valueObject instanceof JSONObject) {			
-			JSONObject jsonValue = (JSONObject) valueObject;
-			String jsonValueStr = jsonValue.toString();
-			String jsonValueNormalized = normalize(jsonValueStr);
-			
-			JsonLdProperty jlp = new JsonLdProperty(property);
-			String mapString = jsonValueNormalized.substring(1, jsonValueNormalized.length() - 1); // remove braces
-			JsonLdPropertyValue jlpv = new JsonLdPropertyValue();
-			
 			if(JsonLd.CONTEXT.equals(property)){
 				parseContext(jld, valueObject);
 				return;
 			}
 			
-			
-			if (!mapString.contains("}")) {
-				/**
-				 * The property is a single map - without complex objects inside
-				 */
-				jlpv = parseJsonLdPropertyValue(mapString);
-				jlp.addValue(jlpv);
-			} else {
-				Map<String, String> propMap = 
-						(Map<String, String>) convertToMapAndList(jsonValue, jld.getNamespacePrefixMap());
-				List<String> keyList = new ArrayList<String>();
-				keyList.addAll(propMap.keySet());
-				Iterator<?> it = propMap.entrySet().iterator();
-				while (it.hasNext()) {
-				    Map.Entry pairs = (Map.Entry)it.next();
-				    String key = "\"" + pairs.getKey().toString() + "\"";
-				    int nextPos = findNextKey(key, keyList, mapString);
-				    int startPos = mapString.indexOf(key) + key.length() + 1; // +1 for ':'
-				    String value = mapString.substring(startPos, nextPos);
-				    if (value.lastIndexOf(",") == value.length() - 1) {
-					    value = value.substring(0, value.length() - 1);
-				    }
-					value = value.substring(1, value.length() - 1); // remove braces
-				    key = key.replace("\"", "");
-				    if (!value.contains(",")) {
-				    	if (!value.contains("\":\"")) {
-				    		/**
-				    		 * simple key value pair
-				    		 */				    	
-				    		jlpv.getValues().put(key, value);
-				    	} else {
-				    		/**
-				    		 * complex value with ':'
-				    		 */
-					        JsonLdProperty subProperty = new JsonLdProperty(key);
-							JsonLdPropertyValue sub_jlpv = new JsonLdPropertyValue();
-							Map<String, String> propMap2 = splitToMap(value);
-							Iterator<?> it2 = propMap2.entrySet().iterator();
-							while (it2.hasNext()) {
-							    Map.Entry pairs2 = (Map.Entry)it2.next();
-							    String key2 = pairs2.getKey().toString().replace("\"", "").replace("{", "").replace("}", "");
-							    String value2 = pairs2.getValue().toString();//.replace("\"", "").replace("{", "").replace("}", "");
-							    if (value2.length() < 2) {
-							    	value2 = "";
-							    }
-							    sub_jlpv.getValues().put(key2, value2);
-								subProperty.addValue(sub_jlpv);
-						        jlpv.putProperty(subProperty);
-							}
-				    	}
-				    } else {
-				    	if (value.contains(":") && value.contains("euType") && !key.equals("selector")) { // for the euType
-//					    	if (value.contains(":") && value.contains("#")) { // for the euType
-				    		jlpv.getValues().put(key, value);
-				    	} else {
-					        JsonLdProperty subProperty = new JsonLdProperty(key);
-							JsonLdPropertyValue sub_jlpv = parseJsonLdPropertyValue(value);
-							subProperty.addValue(sub_jlpv);
-					        jlpv.putProperty(subProperty);
-				    	}
-				    }
-				}
-				jlp.addValue(jlpv);
-			}
+			JsonLdProperty jlp = new JsonLdProperty(property);
+			jlp.addValue(toPropertyValue((JSONObject) valueObject, true));
 			subject.putProperty(jlp);
 		} else if (valueObject instanceof JSONArray) {
-			JSONArray arrayValue = (JSONArray) valueObject;
-			String jsonValueStr = arrayValue.toString();
-			String jsonValueNormalized = normalize(jsonValueStr);
 			JsonLdProperty jlp = new JsonLdProperty(property);
-			String arrayString = jsonValueNormalized.substring(1, jsonValueNormalized.length() - 1);
-			String[] propArray = splitToArray(arrayString);
-			Iterator<String> itr = Arrays.asList(propArray).iterator();
-			while (itr.hasNext()) {
-				String propString = normalizeArrayString(itr.next());
-				JsonLdPropertyValue jlpv = parseJsonLdPropertyValue(propString);
-				jlp.addValue(jlpv);
-			}
+			addPropertyValues(jlp, (JSONArray) valueObject);
 			subject.putProperty(jlp);
 		} else if (valueObject instanceof String) {
-//			JsonLdPropertyValue jlpv = new JsonLdPropertyValue();
-//			JsonLdProperty jlp = new JsonLdProperty(property);
-
 			String stringValue = (String) valueObject;
 			subject.putProperty(property, unCURIE(stringValue, jld
 					.getNamespacePrefixMap()));
-//    		jlpv.getValues().put(property, unCURIE(stringValue, jld
-//					.getNamespacePrefixMap()));
-//			jlp.addValue(jlpv);
 		} else {
-//			JsonLdPropertyValue jlpv = new JsonLdPropertyValue();
-//			JsonLdProperty jlp = new JsonLdProperty(property);
-
 			subject.putProperty(property, valueObject);
-//    		jlpv.getValues().put(property, (String) valueObject);
-//			jlp.addValue(jlpv);
 		}
 	}
 
+	/**
+	 * Converts a JSON object into a property value. Literal members become
+	 * entries of its values, nested objects and arrays become properties of
+	 * it. Each member is visited once, so the time is linear in the size of
+	 * the object.
+	 * 
+	 * <p>
+	 * This replaces the former splitting of the JSON text and builds the same
+	 * values for the documents it handled. Values the splitting garbled -
+	 * numbers, single characters, nesting deeper than two levels, arrays
+	 * within objects - are now kept as they are.
+	 * 
+	 * @param jo
+	 *            JSON object to be converted.
+	 * @param keepEuTypeText
+	 *            if <code>true</code>, nested objects and arrays that mention
+	 *            an euType (except selectors) are kept as their JSON text
+	 *            without the enclosing brackets, as the splitting did for the
+	 *            members of a property object.
+	 */
+	private static JsonLdPropertyValue toPropertyValue(JSONObject jo, boolean keepEuTypeText)
+			throws JSONException {
+		JsonLdPropertyValue jlpv = new JsonLdPropertyValue();
+		for (Iterator<?> keys = jo.keys(); keys.hasNext();) {
+			String key = (String) keys.next();
+			Object value = jo.get(key);
+			if (value instanceof JSONObject || value instanceof JSONArray) {
+				if (keepEuTypeText && !"selector".equals(key) && mentions(value, EU_TYPE)) {
+					String text = normalize(value.toString());
+					text = text.substring(1, text.length() - 1);
+					if (text.contains(",") && text.contains(":")) {
+						jlpv.getValues().put(key, text);
+						continue;
+					}
+				}
+				JsonLdProperty subProperty = new JsonLdProperty(key);
+				if (value instanceof JSONObject) {
+					subProperty.addValue(toPropertyValue((JSONObject) value, false));
+				} else {
+					addPropertyValues(subProperty, (JSONArray) value);
+				}
+				jlpv.putProperty(subProperty);
+			} else {
+				jlpv.getValues().put(key, String.valueOf(value));
+			}
+		}
+		return jlpv;
+	}
+
+	/**
+	 * Adds a property value for each element of the given array.
+	 */
+	private static void addPropertyValues(JsonLdProperty jlp, JSONArray array) throws JSONException {
+		for (int i = 0; i < array.length(); i++) {
+			Object element = array.get(i);
+			if (element instanceof JSONObject) {
+				jlp.addValue(toPropertyValue((JSONObject) element, false));
+			} else {
+				jlp.addSingleValue(element);
+			}
+		}
+	}
+
+	/**
+	 * @return whether a name or string value within the given JSON value
+	 *         contains the given word.
+	 */
+	private static boolean mentions(Object value, String word) throws JSONException {
+		if (value instanceof JSONObject) {
+			JSONObject jo = (JSONObject) value;
+			for (Iterator<?> keys = jo.keys(); keys.hasNext();) {
+				String key = (String) keys.next();
+				if (key.contains(word) || mentions(jo.get(key), word)) {
+					return true;
+				}
+			}
+			return false;
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			for (int i = 0; i < array.length(); i++) {
+				if (mentions(array.get(i), word)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return value instanceof String && ((String) value).contains(word);
+	}
+
 	private static void parseContext(JsonLd jld, Object valueObject)
 			throws JSONException {
 		HashMap< String, String> namespaces = new HashMap<String, String>();
@@ -510,24 +992,6 @@ public class JsonLdParser extends JsonLdParserCommon {
 		jld.setNamespacePrefixMap(namespaces);
 	}
 
-	/**
-	 * This method parses the JsonLdPropertyValue string to the object.
-	 * @param mapString
-	 */
-	@SuppressWarnings("rawtypes")
-	private static JsonLdPropertyValue parseJsonLdPropertyValue(String mapString) {
-		JsonLdPropertyValue jlpv = new JsonLdPropertyValue();
-		Map<String, String> propMap = splitToMap(mapString);
-		Iterator<?> it = propMap.entrySet().iterator();
-		while (it.hasNext()) {
-		    Map.Entry pairs = (Map.Entry)it.next();
-		    String key = pairs.getKey().toString().replace("\"", "").replace("{", "").replace("}", "");
-		    String value = pairs.getValue().toString().replace("\"", "").replace("{", "").replace("}", "");
-		    jlpv.getValues().put(key, value);
-		}
-		return jlpv;
-	}
-
 	/**
 	 * Converts a JSON object into a Map or List data structure.
 	 * 
@@ -591,10 +1055,10 @@ public class JsonLdParser extends JsonLdParserCommon {
 			Map<String, String> namespacePrefixMap) {
 		Map<String, Object> jsonMap = null;
 		try {
-			if (jo.names() != null && jo.names().length() > 0) {
+			if (jo.length() > 0) {
 				jsonMap = new HashMap<String, Object>();
-				for (int i = 0; i < jo.names().length(); i++) {
-					String name = jo.names().getString(i);
+				for (Iterator<?> keys = jo.keys(); keys.hasNext();) {
+					String name = (String) keys.next();
 					jsonMap.put(name, convertToMapAndList(jo.get(name),
 							namespacePrefixMap));
 				}
@@ -648,11 +1112,4 @@ public class JsonLdParser extends JsonLdParserCommon {
         return s;
     }
     
-    private static String normalizeArrayString(String value) {
-        String s = value;
-        s = s.replace("{", "");
-        s = s.replace("}", "");
-        return s;
-    }
-    
 }
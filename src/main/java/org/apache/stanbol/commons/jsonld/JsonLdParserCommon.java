@@ -20,6 +20,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
 
 public abstract class JsonLdParserCommon {
 
@@ -43,4 +44,47 @@ public abstract class JsonLdParserCommon {
 
         return jo;
     }
+
+    /**
+     * Uses the underlying Jettison to parse a JSON object like
+     * {@link #parseJson(String)}, but looks up the names and string values
+     * in the given symbol table.
+     * 
+     * @param jsonString
+     *            JSON String representation.
+     * @param symbols
+     *            table of canonical strings, <code>null</code> to keep the
+     *            strings created by Jettison.
+     * @return
+     */
+    protected static JSONObject parseJson(String jsonString, JsonLdSymbolTable symbols) throws JSONException {
+        if (symbols == null) {
+            return parseJson(jsonString);
+        }
+        try {
+            return new JSONObject(new SymbolTokener(jsonString, symbols));
+        } catch (JSONException e) {
+            logger.info("Could not parse JSON string: " + jsonString, e);
+            throw new JSONException("Could not parse JSON string: " + jsonString + e);
+        }
+    }
+
+    /**
+     * Tokener returning the canonical instances of the quoted strings, which
+     * are both the names and the string values of a JSON object.
+     */
+    private static final class SymbolTokener extends JSONTokener {
+
+        private final JsonLdSymbolTable symbols;
+
+        SymbolTokener(String s, JsonLdSymbolTable symbols) {
+            super(s);
+            this.symbols = symbols;
+        }
+
+        @Override
+        public String nextString(char quote) throws JSONException {
+            return symbols.intern(super.nextString(quote));
+        }
+    }
 }
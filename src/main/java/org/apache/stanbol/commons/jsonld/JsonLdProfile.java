@@ -53,11 +53,23 @@ public class JsonLdProfile extends JsonLdCommon {
     }
 
     public String toString() {
-        return JsonSerializer.toString(this.createJsonMap());
+        return toString(0);
     }
 
     public String toString(int indent) {
-        return JsonSerializer.toString(this.createJsonMap(), indent);
+        return toString(indent, JsonSerializationContext.get());
+    }
+
+    /**
+     * Serializes the profile using the buffers of the given context.
+     * 
+     * @param indent
+     *            Number of whitespace chars used for indentation.
+     * @param context
+     * @return the profile as String.
+     */
+    public String toString(int indent, JsonSerializationContext context) {
+        return JsonSerializer.toString(this.createJsonMap(), indent, context);
     }
     
     private Map<String,Object> createJsonMap() {
@@ -0,0 +1,158 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The properties to read from a JSON-LD document, given as property paths
+ * whose names are separated by dots, e.g. <code>@type</code>,
+ * <code>created</code> and <code>target.source</code>. A path selects the
+ * whole value of its last name; the names before select the members of the
+ * nested objects, also of the objects in an array. Names are compared as they
+ * are written in the document, so a property written as CURIE has to be
+ * selected as CURIE.
+ *
+ * <p>
+ * {@link JsonLdParser#parseProjected(Reader, JsonLdProjection)} skips the values of
+ * all other members while it reads the tokens, without building strings,
+ * numbers or objects for them. The <code>@context</code>,
+ * <code>@profile</code> and <code>@id</code> of a subject, and the
+ * <code>@id</code> of a nested object, are always read. The result is the
+ * same as the one of parsing the document with all other members removed.
+ *
+ * <p>
+ * A projection is immutable and can be shared by parsers running in
+ * different threads.
+ */
+public final class JsonLdProjection {
+
+	private final Set<String> paths;
+
+	private final Node root = new Node();
+
+	/**
+	 * Canonical instances of the names read with this projection, so names
+	 * are matched without creating a String for every member.
+	 */
+	private final JsonLdSymbolTable names = new JsonLdSymbolTable(256, JsonLdSymbolTable.DEFAULT_MAX_LENGTH);
+
+	/**
+	 * @param paths
+	 *            the property paths, names separated by dots.
+	 * @throws IllegalArgumentException
+	 *             if a path is <code>null</code> or has an empty name.
+	 */
+	public JsonLdProjection(Collection<String> paths) {
+		Set<String> set = new LinkedHashSet<String>();
+		for (String path : paths) {
+			if (path == null) {
+				throw new IllegalArgumentException("path must not be null");
+			}
+			root.add(path.split("\\.", -1), 0, path, names);
+			set.add(path);
+		}
+		this.paths = Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * @param paths
+	 *            the property paths, names separated by dots.
+	 * @return a projection selecting the given paths.
+	 * @throws IllegalArgumentException
+	 *             if a path is <code>null</code> or has an empty name.
+	 */
+	public static JsonLdProjection of(String... paths) {
+		return new JsonLdProjection(Arrays.asList(paths));
+	}
+
+	/**
+	 * @return the property paths in the order they have been given.
+	 */
+	public Set<String> getPaths() {
+		return paths;
+	}
+
+	Node getRoot() {
+		return root;
+	}
+
+	JsonLdSymbolTable getNames() {
+		return names;
+	}
+
+	@Override
+	public String toString() {
+		return paths.toString();
+	}
+
+	/**
+	 * The members selected in an object. A selected member whose whole value
+	 * is read has no node.
+	 */
+	static final class Node {
+
+		private final Map<String, Node> members = new HashMap<String, Node>();
+
+		/**
+		 * @param name
+		 * @return whether the member with the given name is read.
+		 */
+		boolean selects(String name) {
+			return members.containsKey(name);
+		}
+
+		/**
+		 * @param name
+		 * @return the members selected in the value of the given member,
+		 *         <code>null</code> if the whole value is read.
+		 */
+		Node get(String name) {
+			return members.get(name);
+		}
+
+		private void add(String[] path, int index, String string, JsonLdSymbolTable names) {
+			String name = path[index];
+			if (name.isEmpty()) {
+				throw new IllegalArgumentException("Empty name in path '" + string + "'");
+			}
+			names.intern(name);
+			if (index == path.length - 1) {
+				members.put(name, null);
+				return;
+			}
+			Node node = members.get(name);
+			if (node == null) {
+				if (members.containsKey(name)) {
+					// the whole value is already selected, still check the path
+					new Node().add(path, index + 1, string, names);
+					return;
+				}
+				node = new Node();
+				members.put(name, node);
+			}
+			node.add(path, index + 1, string, names);
+		}
+	}
+}
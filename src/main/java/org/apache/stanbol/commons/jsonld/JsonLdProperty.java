@@ -26,6 +26,18 @@ public class JsonLdProperty {
     private List<JsonLdPropertyValue> values = new ArrayList<JsonLdPropertyValue>();
     
     private String type;
+
+    /**
+     * Whether values have been added or the type has been set since the
+     * property was read, see {@link JsonLdPropertyValue#getVerbatimJson()}.
+     */
+    private transient boolean modified;
+
+    /**
+     * Whether the property belongs to a value read in round-trip mode, whose
+     * values are returned as a view that tracks changes.
+     */
+    private transient boolean tracked;
     
     public JsonLdProperty(String name) {
         this.name = name;
@@ -42,14 +54,24 @@ public class JsonLdProperty {
     
     public void addValue(JsonLdPropertyValue value) {
         this.values.add(value);
+        this.modified = true;
     }
 
     public void addSingleValue(Object value) {
         this.values.add(new JsonLdPropertyValue(value));
+        this.modified = true;
     }
     
     public List<JsonLdPropertyValue> getValues() {
-        return this.values;
+        if (!tracked) {
+            return this.values;
+        }
+        return new JsonLdTracking.TrackedList<JsonLdPropertyValue>(this.values) {
+            @Override
+            void modified() {
+                JsonLdProperty.this.modified = true;
+            }
+        };
     }
 
     public String getType() {
@@ -86,6 +108,9 @@ public class JsonLdProperty {
     }
 
     public void setType(String type) {
+        if (type == null ? this.type != null : !type.equals(this.type)) {
+            this.modified = true;
+        }
         this.type = type;
     }
 
@@ -98,4 +123,33 @@ public class JsonLdProperty {
     public boolean isTyped() {
         return this.type != null;
     }
+
+    /**
+     * @return whether neither the property nor any of its values have been
+     *         changed since they were read, see
+     *         {@link JsonLdPropertyValue#getVerbatimJson()}.
+     */
+    boolean isUnmodified() {
+        if (modified) {
+            return false;
+        }
+        for (JsonLdPropertyValue value : this.values) {
+            if (!value.isUnmodified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the property as unmodified and tracks the changes of it and its
+     * values from now on.
+     */
+    void track() {
+        this.modified = false;
+        this.tracked = true;
+        for (JsonLdPropertyValue value : this.values) {
+            value.track();
+        }
+    }
 }
@@ -21,15 +21,44 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * A value of a {@link JsonLdProperty}: a literal with its type and language,
+ * or an object with properties of its own.
+ *
+ * <p>
+ * Values read by {@link JsonLdParser#parseRoundTrip(String)} keep the part of
+ * the document they were read from and are written as that text while they
+ * are not modified. The collections such a value, its properties and their
+ * values return report changes made through them as well, and so do the
+ * lists and maps nested in them and in {@link #getValue()}.
+ */
 public class JsonLdPropertyValue {
 
     private Object value;
     private String type;
     private String language;
     
-    private Map<String,String> values = new HashMap<String,String>();
-    private List<String> types = new ArrayList<String>();
-    private Map<String,JsonLdProperty> propertyMap = new HashMap<String,JsonLdProperty>();
+    // the collections are created on first use, most values are plain literals
+    private Map<String,String> values;
+    private List<String> types;
+    private Map<String,JsonLdProperty> propertyMap;
+
+    /**
+     * The source text of a value read in round-trip mode, otherwise
+     * <code>null</code>.
+     */
+    private transient JsonLdRawJson raw;
+
+    /**
+     * Whether this value has been changed since {@link #raw} was read.
+     */
+    private transient boolean modified;
+
+    /**
+     * Whether this value belongs to a value read in round-trip mode, whose
+     * collections are returned as views that track changes.
+     */
+    private transient boolean tracked;
     
 	public JsonLdPropertyValue() {
         
@@ -47,7 +76,14 @@ public class JsonLdPropertyValue {
     }
 
     public Object getValue() {
-        return value;
+        if (!tracked) {
+            return value;
+        }
+        return JsonLdTracking.track(value, new Runnable() {
+            public void run() {
+                JsonLdPropertyValue.this.modified = true;
+            }
+        });
     }
 
     public String getLiteralValue() {
@@ -56,6 +92,7 @@ public class JsonLdPropertyValue {
     
     public void setValue(Object value) {
         this.value = value;
+        this.modified = true;
     }
 
     public String getType() {
@@ -63,6 +100,9 @@ public class JsonLdPropertyValue {
     }
 
     public void setType(String type) {
+        if (type == null ? this.type != null : !type.equals(this.type)) {
+            this.modified = true;
+        }
         this.type = type;
     }
 
@@ -72,33 +112,62 @@ public class JsonLdPropertyValue {
 
     public void setLanguage(String language) {
         this.language = language;
+        this.modified = true;
     }
 
 	public Map<String,String> getValues() {
-		return values;
+		if (values == null) {
+			values = new HashMap<String,String>();
+		}
+		return tracked ? track(values) : values;
+	}
+
+	/**
+	 * @return whether {@link #getValues()} is not empty, without creating it.
+	 */
+	boolean hasValues() {
+		return values != null && !values.isEmpty();
 	}
 
 	public void setValues(Map<String,String> values) {
 		this.values = values;
+		this.modified = true;
 	}
 
     public void addType(String type) {
-        types.add(type);
+        getTypes().add(type);
+        this.modified = true;
     }
 
     public void addAllTypes(List<String> types) {
-        this.types.addAll(types);
+        getTypes().addAll(types);
+        this.modified = true;
     }
     
     public List<String> getTypes() {
-        return types;
+        if (types == null) {
+            types = new ArrayList<String>();
+        }
+        if (!tracked) {
+            return types;
+        }
+        return new JsonLdTracking.TrackedList<String>(types) {
+            @Override
+            void modified() {
+                JsonLdPropertyValue.this.modified = true;
+            }
+        };
     }
 	
     public void putProperty(JsonLdProperty property) {
-        this.propertyMap.put(property.getName(), property);
+        getPropertyMap().put(property.getName(), property);
+        this.modified = true;
     }
 
     public JsonLdProperty getPropertyValueIgnoreCase(String property) {
+        if (this.propertyMap == null) {
+            return null;
+        }
         for (String p : this.propertyMap.keySet()) {
             if (p.equalsIgnoreCase(property)) {
                 return this.propertyMap.get(p);
@@ -108,11 +177,90 @@ public class JsonLdPropertyValue {
     }
     
     public JsonLdProperty getProperty(String property) {
-        return this.propertyMap.get(property);
+        return this.propertyMap == null ? null : this.propertyMap.get(property);
     }
         
     public Map<String,JsonLdProperty> getPropertyMap() {
-        return this.propertyMap;
+        if (propertyMap == null) {
+            propertyMap = new HashMap<String,JsonLdProperty>();
+        }
+        return tracked ? track(this.propertyMap) : this.propertyMap;
+    }
+
+    /**
+     * @return whether {@link #getPropertyMap()} is not empty, without
+     *         creating it.
+     */
+    boolean hasProperties() {
+        return propertyMap != null && !propertyMap.isEmpty();
+    }
+
+    /**
+     * @return a view of the given map of this value that marks the value as
+     *         modified when it is changed.
+     */
+    private <K, V> Map<K, V> track(Map<K, V> map) {
+        return new JsonLdTracking.TrackedMap<K, V>(map) {
+            @Override
+            void modified() {
+                JsonLdPropertyValue.this.modified = true;
+            }
+        };
+    }
+
+    /**
+     * Keeps the text this value was read from, see
+     * {@link JsonLdParser#parseRoundTrip(String)}. The value and its direct
+     * properties count as unmodified afterwards, and their collections are
+     * returned as views that track changes.
+     *
+     * @param source
+     *            the parsed document.
+     * @param start
+     *            index of the opening brace of the value.
+     * @param end
+     *            index after the closing brace of the value.
+     */
+    void setRaw(String source, int start, int end) {
+        this.raw = new JsonLdRawJson(source, start, end);
+        this.modified = false;
+        this.tracked = true;
+        if (propertyMap != null) {
+            for (JsonLdProperty property : propertyMap.values()) {
+                property.track();
+            }
+        }
+    }
+
+    /**
+     * Returns the collections of this value as views that track changes from
+     * now on, see {@link JsonLdProperty#track()}.
+     */
+    void track() {
+        this.tracked = true;
+    }
+
+    /**
+     * @return the text this value was read from if neither the value nor any
+     *         of its nested values have been changed since, otherwise
+     *         <code>null</code>.
+     */
+    JsonLdRawJson getVerbatimJson() {
+        return raw != null && isUnmodified() ? raw : null;
+    }
+
+    boolean isUnmodified() {
+        if (modified) {
+            return false;
+        }
+        if (propertyMap != null) {
+            for (JsonLdProperty property : propertyMap.values()) {
+                if (!property.isUnmodified()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
 }
@@ -0,0 +1,156 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.nio.ByteBuffer;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+
+/**
+ * Parses a UTF-8 encoded JSON-LD document that arrives in chunks, e.g. the
+ * body of a request read by a non-blocking server. Every chunk is passed to
+ * {@link #feed(ByteBuffer)} as soon as it has been received and is parsed
+ * right away, the parser keeps the state of a token cut by the end of a chunk
+ * until the next one arrives. Neither the chunks nor the document text are
+ * kept, only the text of the current token and the subject being built.
+ *
+ * <p>
+ * The result is the same as the one of {@link JsonLdParser#parse(String)}, but
+ * the input has to be strict JSON. It is returned by the call of
+ * {@link #feed(ByteBuffer)} that reads the closing brace of the document.
+ * Only whitespace may follow, call {@link #end()} at the end of the input to
+ * check that the document is complete.
+ *
+ * <pre>
+ * JsonLdPushParser parser = new JsonLdPushParser();
+ * while (channel.read(buffer) &gt;= 0) {
+ *     buffer.flip();
+ *     JsonLd jsonLd = parser.feed(buffer);
+ *     buffer.clear();
+ *     ...
+ * }
+ * JsonLd jsonLd = parser.end();
+ * </pre>
+ *
+ * <p>
+ * After a {@link JsonParseException} the parser has to be {@link #reset()}
+ * before it can be used again. The parser is not thread-safe.
+ */
+public class JsonLdPushParser {
+
+	private final JsonLdSymbolTable symbols;
+
+	private final JsonPushTokenizer tokenizer = new JsonPushTokenizer();
+
+	private JsonLdStreamParser parser;
+
+	private boolean started;
+
+	private JsonLd result;
+
+	public JsonLdPushParser() {
+		this(null);
+	}
+
+	/**
+	 * @param symbols
+	 *            the table the names and short string values are looked up in,
+	 *            see {@link JsonLdParser#parse(String, JsonLdSymbolTable)}, or
+	 *            <code>null</code>.
+	 */
+	public JsonLdPushParser(JsonLdSymbolTable symbols) {
+		this.symbols = symbols;
+		reset();
+	}
+
+	/**
+	 * Parses the bytes of the given chunk from its position to its limit. The
+	 * chunk is consumed completely and can be reused once the call returns.
+	 *
+	 * @param chunk
+	 *            the next bytes of the document.
+	 * @return the JSON-LD data structure once the document is complete,
+	 *         otherwise <code>null</code>.
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or UTF-8, or no JSON
+	 *             object.
+	 */
+	public JsonLd feed(ByteBuffer chunk) throws JsonParseException {
+		tokenizer.setInput(chunk);
+		int token;
+		while ((token = tokenizer.next()) != JsonPushTokenizer.NEED_INPUT) {
+			accept(token);
+		}
+		return result;
+	}
+
+	/**
+	 * Signals the end of the input.
+	 *
+	 * @return the JSON-LD data structure.
+	 * @throws JsonParseException
+	 *             if the document is not complete.
+	 */
+	public JsonLd end() throws JsonParseException {
+		int token = tokenizer.finish();
+		if (token != JsonTokenizer.END) {
+			accept(token);
+		}
+		if (result == null) {
+			throw tokenizer.error("Unexpected end of input");
+		}
+		return result;
+	}
+
+	/**
+	 * @return whether the closing brace of the document has been read.
+	 */
+	public boolean isComplete() {
+		return result != null;
+	}
+
+	/**
+	 * @return the JSON-LD data structure once the document is complete,
+	 *         otherwise <code>null</code>.
+	 */
+	public JsonLd getResult() {
+		return result;
+	}
+
+	/**
+	 * Prepares the parser for the next document, keeping its buffers.
+	 */
+	public void reset() {
+		tokenizer.reset();
+		parser = new JsonLdStreamParser(false, symbols);
+		started = false;
+		result = null;
+	}
+
+	private void accept(int token) throws JsonParseException {
+		if (!started) {
+			if (token != JsonTokenizer.START_OBJECT) {
+				throw tokenizer.error("A JSON-LD document must be a JSON object");
+			}
+			started = true;
+		}
+		parser.accept(token, tokenizer);
+		if (tokenizer.isComplete()) {
+			result = parser.getResult();
+		}
+	}
+}
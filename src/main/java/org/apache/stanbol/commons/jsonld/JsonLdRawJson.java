@@ -0,0 +1,77 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+/**
+ * A value that is already serialized JSON, e.g. a cached entity description
+ * that should be embedded into an annotation. The JSON is written by the
+ * {@link JsonSerializer} as it is, without any inspection, so it must be
+ * valid JSON.
+ */
+public class JsonLdRawJson {
+
+    /**
+     * The text the JSON is a part of, see {@link #start} and {@link #end}.
+     */
+    private final String source;
+    private final int start;
+    private final int end;
+
+    public JsonLdRawJson(String json) {
+        if (json == null) {
+            throw new IllegalArgumentException("json must not be null");
+        }
+        this.source = json;
+        this.start = 0;
+        this.end = json.length();
+    }
+
+    /**
+     * Creates a value that refers to a part of a parsed document, so that it
+     * is written without copying it into a String of its own first.
+     *
+     * @param source
+     * @param start
+     *            index of the first character of the JSON.
+     * @param end
+     *            index after the last character of the JSON.
+     */
+    JsonLdRawJson(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    public String getJson() {
+        return start == 0 && end == source.length() ? source : source.substring(start, end);
+    }
+
+    /**
+     * Appends the JSON to the given output as one block of characters.
+     *
+     * @param out
+     */
+    void appendTo(JsonOutput out) {
+        out.append(source, start, end);
+    }
+
+    @Override
+    public String toString() {
+        return getJson();
+    }
+
+}
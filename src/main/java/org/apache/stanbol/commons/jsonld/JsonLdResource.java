@@ -122,6 +122,25 @@ public class JsonLdResource {
         return this.propertyMap;
     }
 
+    /**
+     * @return the properties {@link JsonLd} serializes, by default the
+     *         property map.
+     */
+    Map<String,JsonLdProperty> getPropertiesToWrite() {
+        return this.propertyMap;
+    }
+
+    /**
+     * Marks the namespaces as used that the values of this resource refer to
+     * without the serializer seeing them, e.g. in raw JSON values.
+     * 
+     * @param usedNamespaces
+     *            Map from namespace to prefix of the namespaces written to the
+     *            <code>@context</code>.
+     */
+    void addImplicitNamespaces(Map<String,String> usedNamespaces) {
+    }
+
     public boolean hasPropertyIgnorecase(String property) {
         for (String p : this.propertyMap.keySet()) {
             if (p.equalsIgnoreCase(property)) {
@@ -0,0 +1,246 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What can be derived once for documents of the same shape instead of for
+ * every document: the order of the known keys, their quoted and escaped
+ * form, and the namespaces of the known property and type IRIs.
+ *
+ * <p>
+ * A plan is compiled from a sample document or from a profile, see
+ * {@link #compile(JsonLd)} and {@link #compile(JsonLdProfile)}, and set on
+ * the documents with {@link JsonLd#setSerializationPlan(JsonLdSerializationPlan)}.
+ * It is only used for documents with the same namespace prefix map and
+ * property order as the sample, the others are serialized the generic way.
+ * Keys and IRIs the plan does not know are handled the generic way too, so
+ * the output never depends on the plan.
+ *
+ * <p>
+ * Plans are immutable and can be shared between threads.
+ */
+public final class JsonLdSerializationPlan {
+
+	/**
+	 * The key as it is written, quoted and escaped.
+	 */
+	static final class EncodedKey {
+
+		final String json;
+
+		final byte[] utf8;
+
+		EncodedKey(String json) {
+			this.json = json;
+			this.utf8 = json.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final String[] KEYWORDS = { JsonLdCommon.CONTEXT, JsonLdCommon.ID, JsonLdCommon.TYPE,
+			JsonLdCommon.VALUE, JsonLdCommon.LANGUAGE, JsonLdCommon.GRAPH, JsonLdCommon.PROFILE,
+			JsonLdCommon.TYPES, JsonLdCommon._VALUE };
+
+	private final Comparator<Object> propOrderComparator;
+
+	private final Comparator<Object> comparator;
+
+	private final Map<String, Integer> ranks;
+
+	private final Map<String, EncodedKey> encodedKeys;
+
+	private final List<String> namespaces = new ArrayList<String>();
+
+	private final List<String> prefixes = new ArrayList<String>();
+
+	private final Map<String, JsonLdNamespaceCache.Match> namespaceMatches;
+
+	private JsonLdSerializationPlan(JsonLdCommon sample, Set<String> keys, Set<String> iris) {
+		this.propOrderComparator = sample.getPropOrderComparator();
+		for (Map.Entry<String, String> entry : sample.getNamespacePrefixMap().entrySet()) {
+			namespaces.add(entry.getKey());
+			prefixes.add(entry.getValue());
+		}
+
+		List<String> sortedKeys = new ArrayList<String>(keys);
+		Collections.sort(sortedKeys, propOrderComparator);
+		Map<String, Integer> ranks = new HashMap<String, Integer>();
+		Map<String, EncodedKey> encodedKeys = new HashMap<String, EncodedKey>();
+		JsonCharOutput out = new JsonCharOutput();
+		int rank = 0;
+		for (int i = 0; i < sortedKeys.size(); i++) {
+			String key = sortedKeys.get(i);
+			// keys comparing equal are the same key for the nodes
+			if (i > 0 && propOrderComparator.compare(sortedKeys.get(i - 1), key) != 0) {
+				rank++;
+			}
+			ranks.put(key, rank);
+
+			out.reset(Integer.MAX_VALUE);
+			out.appendQuoted(key);
+			encodedKeys.put(key, new EncodedKey(out.toString()));
+		}
+		this.ranks = ranks;
+		this.encodedKeys = encodedKeys;
+		this.comparator = new PlannedComparator();
+
+		Map<String, JsonLdNamespaceCache.Match> namespaceMatches = new HashMap<String, JsonLdNamespaceCache.Match>();
+		for (String iri : iris) {
+			namespaceMatches.put(iri, sample.searchNamespace(iri));
+		}
+		this.namespaceMatches = namespaceMatches;
+	}
+
+	/**
+	 * Compiles a plan from a sample document. The sample is serialized once to
+	 * collect the keys it uses.
+	 *
+	 * @param sample
+	 * @return the plan for documents of the same shape.
+	 */
+	public static JsonLdSerializationPlan compile(JsonLd sample) {
+		Set<String> keys = new TreeSet<String>();
+		Collections.addAll(keys, KEYWORDS);
+		if (sample.isUseJointGraphs()) {
+			collectKeys(sample.getJsonMap(), keys);
+		} else {
+			collectKeys(sample.getJsonList(), keys);
+		}
+
+		Set<String> iris = new TreeSet<String>();
+		for (String subject : sample.getResourceSubjects()) {
+			JsonLdResource resource = sample.getResource(subject);
+			iris.addAll(resource.getTypes());
+			iris.addAll(resource.getCoerceMap().values());
+			collectIris(resource.getPropertyMap(), iris);
+		}
+		return new JsonLdSerializationPlan(sample, keys, iris);
+	}
+
+	/**
+	 * Compiles a plan for documents using the properties, types and
+	 * namespaces of the given profile.
+	 *
+	 * @param profile
+	 * @return the plan for documents following the profile.
+	 */
+	public static JsonLdSerializationPlan compile(JsonLdProfile profile) {
+		Set<String> keys = new TreeSet<String>();
+		Collections.addAll(keys, KEYWORDS);
+		keys.addAll(profile.getNamespacePrefixMap().values());
+
+		Set<String> iris = new TreeSet<String>();
+		for (String property : profile.getTypes()) {
+			iris.add(property);
+			iris.addAll(profile.getTypes(property));
+		}
+		for (String iri : iris) {
+			// the property names as IRIs, CURIEs and without prefix
+			keys.add(iri);
+			JsonLdNamespaceCache.Match match = profile.searchNamespace(iri);
+			if (match.namespace != null) {
+				String prefix = profile.getNamespacePrefixMap().get(match.namespace);
+				keys.add(match.curie);
+				keys.add(match.curie.replace(prefix + ":", ""));
+			}
+		}
+		return new JsonLdSerializationPlan(profile, keys, iris);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void collectKeys(Object json, Set<String> keys) {
+		if (json instanceof Map<?, ?>) {
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) json).entrySet()) {
+				keys.add(entry.getKey());
+				collectKeys(entry.getValue(), keys);
+			}
+		} else if (json instanceof List<?>) {
+			for (Object element : (List<Object>) json) {
+				collectKeys(element, keys);
+			}
+		}
+	}
+
+	private static void collectIris(Map<String, JsonLdProperty> propertyMap, Set<String> iris) {
+		for (JsonLdProperty property : propertyMap.values()) {
+			iris.add(property.getName());
+			for (JsonLdPropertyValue value : property.getValues()) {
+				if (value.getType() != null) {
+					iris.add(value.getType());
+				}
+				collectIris(value.getPropertyMap(), iris);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of keys the plan knows.
+	 */
+	public int getKeyCount() {
+		return ranks.size();
+	}
+
+	/**
+	 * @return <code>true</code> if the document has the namespace prefix map
+	 *         and the property order the plan was compiled for.
+	 */
+	boolean appliesTo(JsonLdCommon jsonLd) {
+		Comparator<Object> other = jsonLd.getPropOrderComparator();
+		boolean sameOrder = other == propOrderComparator
+				|| (other.getClass() == JsonComparator.class && propOrderComparator.getClass() == JsonComparator.class);
+		return sameOrder && JsonLdNamespaceCache.hasEntries(jsonLd.getNamespacePrefixMap(), namespaces, prefixes);
+	}
+
+	/**
+	 * @return the property order comparator comparing known keys by their
+	 *         rank.
+	 */
+	Comparator<Object> getComparator() {
+		return comparator;
+	}
+
+	EncodedKey getEncodedKey(String key) {
+		return encodedKeys.get(key);
+	}
+
+	JsonLdNamespaceCache.Match getNamespaceMatch(String uri) {
+		return namespaceMatches.get(uri);
+	}
+
+	private final class PlannedComparator implements Comparator<Object> {
+
+		public int compare(Object key1, Object key2) {
+			Integer rank1 = ranks.get(key1);
+			if (rank1 != null) {
+				Integer rank2 = ranks.get(key2);
+				if (rank2 != null) {
+					return rank1.compareTo(rank2);
+				}
+			}
+			return propOrderComparator.compare(key1, key2);
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the strings handled by {@link JsonLdParser#splitToMap(String)},
+ * {@link JsonLdParser#splitToArray(String)} and
+ * {@link JsonLdParser#splitAnnotationListStringToArray(String)} with the same
+ * results, but reads the {@link CharSequence} once with a single cursor
+ * instead of using regular expressions and intermediate arrays.
+ *
+ * <p>
+ * The results are either added to a Map or List given by the caller, which
+ * can be reused from one call to the next, or passed to a visitor. The
+ * visitor methods create no objects at all: the parts and entries are passed
+ * as views of the input that are only valid during the call.
+ *
+ * <p>
+ * A splitter keeps the views and a buffer for reuse and is therefore not
+ * thread-safe, use one per thread.
+ */
+public final class JsonLdSplitter {
+
+	private static final String ENTRY_SEPARATOR = "\",\"";
+
+	private static final String LAST_ENTRY_SEPARATOR = "},\"";
+
+	private static final String KEY_SEPARATOR = "\":\"";
+
+	private static final String ARRAY_SEPARATOR = "},{";
+
+	private static final String ANNOTATION_LIST_SEPARATOR = "}},{";
+
+	/**
+	 * Receives the parts of a split string.
+	 */
+	public interface PartVisitor {
+
+		/**
+		 * @param text
+		 *            the string that is split.
+		 * @param start
+		 *            index of the first character of the part.
+		 * @param end
+		 *            index after the last character of the part.
+		 */
+		void part(CharSequence text, int start, int end);
+	}
+
+	/**
+	 * Receives the entries of a string split into a map.
+	 */
+	public interface EntryVisitor {
+
+		/**
+		 * @param key
+		 *            the key, only valid during the call.
+		 * @param value
+		 *            the value, only valid during the call.
+		 */
+		void entry(CharSequence key, CharSequence value);
+	}
+
+	private final Span key = new Span();
+
+	private final Span value = new Span();
+
+	private final StringBuilder unquoted = new StringBuilder();
+
+	/**
+	 * The visitor of the current {@link #splitToMap(CharSequence, EntryVisitor)}.
+	 */
+	private EntryVisitor entryVisitor;
+
+	private final PartVisitor entries = new PartVisitor() {
+		public void part(CharSequence text, int start, int end) {
+			entry(text, start, end, entryVisitor);
+		}
+	};
+
+	/**
+	 * Splits the given string into entries like
+	 * {@link JsonLdParser#splitToMap(String)}.
+	 *
+	 * @param text
+	 * @param visitor
+	 *            receives the entries in the order of the string, later entries
+	 *            with the same key replace earlier ones in the Map form.
+	 */
+	public void splitToMap(CharSequence text, EntryVisitor visitor) {
+		if (text.length() == 0) {
+			return;
+		}
+		EntryVisitor outer = entryVisitor;
+		entryVisitor = visitor;
+		try {
+			split(text, ENTRY_SEPARATOR, LAST_ENTRY_SEPARATOR, entries);
+		} finally {
+			entryVisitor = outer;
+		}
+	}
+
+	/**
+	 * Splits the given string into entries like
+	 * {@link JsonLdParser#splitToMap(String)}.
+	 *
+	 * @param text
+	 * @param map
+	 *            the Map the entries are put into, it is cleared first.
+	 * @return the given Map.
+	 */
+	public Map<String, String> splitToMap(CharSequence text, final Map<String, String> map) {
+		map.clear();
+		splitToMap(text, new EntryVisitor() {
+			public void entry(CharSequence key, CharSequence value) {
+				map.put(key.toString(), value.toString());
+			}
+		});
+		return map;
+	}
+
+	/**
+	 * Splits the given string into parts like
+	 * {@link JsonLdParser#splitToArray(String)}.
+	 *
+	 * @param text
+	 * @param visitor
+	 *            receives the parts in order.
+	 */
+	public void splitToArray(CharSequence text, PartVisitor visitor) {
+		split(text, ARRAY_SEPARATOR, null, visitor);
+	}
+
+	/**
+	 * Splits the given string into parts like
+	 * {@link JsonLdParser#splitToArray(String)}.
+	 *
+	 * @param text
+	 * @param list
+	 *            the List the parts are added to, it is cleared first.
+	 * @return the given List.
+	 */
+	public List<String> splitToArray(CharSequence text, List<String> list) {
+		list.clear();
+		split(text, ARRAY_SEPARATOR, null, toList(list));
+		return list;
+	}
+
+	/**
+	 * Splits the given string into parts like
+	 * {@link JsonLdParser#splitAnnotationListStringToArray(String)}.
+	 *
+	 * @param text
+	 * @param visitor
+	 *            receives the parts in order.
+	 */
+	public void splitAnnotationListStringToArray(CharSequence text, PartVisitor visitor) {
+		split(text, ANNOTATION_LIST_SEPARATOR, null, visitor);
+	}
+
+	/**
+	 * Splits the given string into parts like
+	 * {@link JsonLdParser#splitAnnotationListStringToArray(String)}.
+	 *
+	 * @param text
+	 * @param list
+	 *            the List the parts are added to, it is cleared first.
+	 * @return the given List.
+	 */
+	public List<String> splitAnnotationListStringToArray(CharSequence text, List<String> list) {
+		list.clear();
+		split(text, ANNOTATION_LIST_SEPARATOR, null, toList(list));
+		return list;
+	}
+
+	private static PartVisitor toList(final List<String> list) {
+		return new PartVisitor() {
+			public void part(CharSequence text, int start, int end) {
+				list.add(text.subSequence(start, end).toString());
+			}
+		};
+	}
+
+	/**
+	 * Splits like <code>String.split()</code> with a regular expression
+	 * matching either of the given separators: the parts between the
+	 * separators are passed on, except for empty parts at the end. The whole
+	 * text is a single part if it holds no separator.
+	 *
+	 * @param separator
+	 * @param otherSeparator
+	 *            a separator of the same length or <code>null</code>.
+	 */
+	private static void split(CharSequence text, String separator, String otherSeparator, PartVisitor visitor) {
+		int length = text.length();
+		int separatorLength = separator.length();
+		int start = 0;
+		int emptyParts = 0;
+		boolean found = false;
+		int i = 0;
+		while (i <= length - separatorLength) {
+			if (startsWith(text, i, separator) || otherSeparator != null && startsWith(text, i, otherSeparator)) {
+				if (i == start) {
+					// passed on when a part follows
+					emptyParts++;
+				} else {
+					for (; emptyParts > 0; emptyParts--) {
+						visitor.part(text, start, start);
+					}
+					visitor.part(text, start, i);
+				}
+				found = true;
+				i += separatorLength;
+				start = i;
+			} else {
+				i++;
+			}
+		}
+		if (!found) {
+			visitor.part(text, 0, length);
+		} else if (start < length) {
+			for (; emptyParts > 0; emptyParts--) {
+				visitor.part(text, start, start);
+			}
+			visitor.part(text, start, length);
+		}
+	}
+
+	/**
+	 * Passes an entry to the visitor like <code>splitToMap()</code> reads
+	 * it: the key is the text before the first <code>":"</code>, the value
+	 * the text after it up to the next <code>":"</code>, without quotes.
+	 */
+	private void entry(CharSequence text, int start, int end, EntryVisitor visitor) {
+		int separator = indexOf(text, KEY_SEPARATOR, start, end);
+		if (separator < 0) {
+			key.set(text, start, end);
+			value.set(text, end, end);
+			visitor.entry(key, value);
+			return;
+		}
+		int valueStart = separator + KEY_SEPARATOR.length();
+		int valueEnd = indexOf(text, KEY_SEPARATOR, valueStart, end);
+		if (valueEnd < 0) {
+			valueEnd = end;
+		}
+		key.set(text, start, separator);
+		if (indexOf(text, "\"", valueStart, valueEnd) < 0) {
+			value.set(text, valueStart, valueEnd);
+			visitor.entry(key, value);
+		} else {
+			unquoted.setLength(0);
+			for (int i = valueStart; i < valueEnd; i++) {
+				char ch = text.charAt(i);
+				if (ch != '"') {
+					unquoted.append(ch);
+				}
+			}
+			visitor.entry(key, unquoted);
+		}
+	}
+
+	private static boolean startsWith(CharSequence text, int index, String prefix) {
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text.charAt(index + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the index of the given string between <code>start</code> and
+	 *         <code>end</code>, -1 if it is not found.
+	 */
+	private static int indexOf(CharSequence text, String string, int start, int end) {
+		for (int i = start; i <= end - string.length(); i++) {
+			if (startsWith(text, i, string)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A reusable view of a part of a CharSequence.
+	 */
+	private static final class Span implements CharSequence {
+
+		private CharSequence text;
+
+		private int start;
+
+		private int end;
+
+		void set(CharSequence text, int start, int end) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+		}
+
+		public int length() {
+			return end - start;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= end - start) {
+				throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+			}
+			return text.charAt(start + index);
+		}
+
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || to > end - start || from > to) {
+				throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + (end - start));
+			}
+			return text.subSequence(start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			return text.subSequence(start, end).toString();
+		}
+	}
+}
@@ -0,0 +1,975 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.stanbol.commons.exception.JsonParseException;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Builds a {@link JsonLd} from the tokens of a {@link JsonTokenizer} without
+ * creating a JSON object tree of the whole document first. The result is the
+ * same as the one of {@link JsonLdParser#parse(String)}.
+ *
+ * <p>
+ * Property values are converted into their Map, List and {@link JsonLdIRI}
+ * form, or directly into {@link JsonLdProperty} and {@link JsonLdPropertyValue}
+ * objects for {@link JsonLdParser#parseModel(Reader)}, while they are read. Only the members of a subject are kept until the
+ * end of its object, because <code>@context</code>, <code>@profile</code> and
+ * <code>@id</code> have to be applied before the properties, wherever they
+ * appear in the object. The small <code>@context</code>, <code>@profile</code>
+ * and <code>@id</code> values are kept as Jettison objects, so they are
+ * interpreted exactly as by {@link JsonLdParser}.
+ *
+ * <p>
+ * The parser is driven by {@link #accept(int, JsonTokenizer)} and keeps its
+ * state in an explicit stack instead of the call stack, so deeply nested
+ * documents do not overflow the call stack.
+ *
+ * <p>
+ * With a {@link JsonLdProjection} the tokens of the values that are not
+ * selected are only counted until the value ends, no strings, numbers or
+ * frames are created for them.
+ */
+final class JsonLdStreamParser {
+
+	private static final Logger logger = LogManager.getLogger(JsonLdStreamParser.class);
+
+	/**
+	 * Whether property values are built as {@link JsonLdPropertyValue}
+	 * structure instead of Map and List.
+	 */
+	private final boolean model;
+
+	/**
+	 * Canonicalizes the names and string values, <code>null</code> if they
+	 * are not shared.
+	 */
+	private final JsonLdSymbolTable symbols;
+
+	/**
+	 * Receives the subjects one at a time, <code>null</code> if the whole
+	 * document is built.
+	 */
+	private final Consumer<? super JsonLd> subjects;
+
+	/**
+	 * The members read from the root subject, <code>null</code> if all
+	 * members are read.
+	 */
+	private final JsonLdProjection.Node projection;
+
+	/**
+	 * The table the member names are looked up in. Unlike {@link #symbols}
+	 * it is also set with a projection, so names are matched without creating
+	 * strings.
+	 */
+	private final JsonLdSymbolTable names;
+
+	/**
+	 * The document the model values keep their text of, <code>null</code>
+	 * unless parsing in round-trip mode.
+	 */
+	private String source;
+
+	private Frame top;
+
+	/**
+	 * Whether the tokens of a value that is not selected are being skipped.
+	 */
+	private boolean skipping;
+
+	/**
+	 * Number of objects and arrays opened in the skipped value.
+	 */
+	private int skipDepth;
+
+	private JsonLd result;
+
+	private boolean complete;
+
+	JsonLdStreamParser(boolean model) {
+		this(model, null);
+	}
+
+	JsonLdStreamParser(boolean model, JsonLdSymbolTable symbols) {
+		this(model, symbols, null);
+	}
+
+	JsonLdStreamParser(boolean model, JsonLdSymbolTable symbols, Consumer<? super JsonLd> subjects) {
+		this(model, symbols, subjects, null);
+	}
+
+	JsonLdStreamParser(boolean model, JsonLdSymbolTable symbols, Consumer<? super JsonLd> subjects,
+			JsonLdProjection projection) {
+		this.model = model;
+		this.symbols = symbols;
+		this.subjects = subjects;
+		this.projection = projection != null ? projection.getRoot() : null;
+		this.names = symbols != null || projection == null ? symbols : projection.getNames();
+	}
+
+	/**
+	 * Reads a JSON-LD document from the given tokenizer.
+	 *
+	 * @param tokenizer
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	static JsonLd parse(JsonTokenizer tokenizer) throws IOException, JsonParseException {
+		return parse(tokenizer, false);
+	}
+
+	/**
+	 * Reads a JSON-LD document from the given tokenizer.
+	 *
+	 * @param tokenizer
+	 * @param model
+	 *            whether nested property values are built as
+	 *            {@link JsonLdPropertyValue} structure, see
+	 *            {@link JsonLdParser#parseModel(Reader)}.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	static JsonLd parse(JsonTokenizer tokenizer, boolean model) throws IOException, JsonParseException {
+		return parse(tokenizer, model, null);
+	}
+
+	/**
+	 * Reads a JSON-LD document from the given tokenizer.
+	 *
+	 * @param tokenizer
+	 * @param model
+	 *            see {@link #parse(JsonTokenizer, boolean)}.
+	 * @param symbols
+	 *            the table the names and string values are looked up in,
+	 *            <code>null</code> to create new strings.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	static JsonLd parse(JsonTokenizer tokenizer, boolean model, JsonLdSymbolTable symbols)
+			throws IOException, JsonParseException {
+		return parse(tokenizer, model, symbols, null);
+	}
+
+	/**
+	 * Reads the selected properties of a JSON-LD document from the given
+	 * tokenizer, see {@link JsonLdParser#parseProjected(Reader, JsonLdProjection)}.
+	 *
+	 * @param tokenizer
+	 * @param model
+	 *            see {@link #parse(JsonTokenizer, boolean)}.
+	 * @param symbols
+	 *            the table the names and string values are looked up in,
+	 *            <code>null</code> to create new strings.
+	 * @param projection
+	 *            the properties to read, <code>null</code> to read all.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	static JsonLd parse(JsonTokenizer tokenizer, boolean model, JsonLdSymbolTable symbols,
+			JsonLdProjection projection) throws IOException, JsonParseException {
+		int token = tokenizer.next();
+		if (token != JsonTokenizer.START_OBJECT) {
+			throw tokenizer.error("A JSON-LD document must be a JSON object");
+		}
+		JsonLdStreamParser parser = new JsonLdStreamParser(model, symbols, null, projection);
+		do {
+			parser.accept(token, tokenizer);
+		} while ((token = tokenizer.next()) != JsonTokenizer.END);
+		return parser.getResult();
+	}
+
+	/**
+	 * Reads a JSON-LD document like {@link #parse(JsonTokenizer, boolean)} in
+	 * model form, and lets each {@link JsonLdPropertyValue} read from an
+	 * object keep the text of that object, see
+	 * {@link JsonLdParser#parseRoundTrip(String)}.
+	 *
+	 * @param tokenizer
+	 *            reads the document.
+	 * @param source
+	 *            the document, the offsets of the tokenizer are indexes into
+	 *            it.
+	 * @return JSON-LD data structure.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON or no JSON object.
+	 */
+	static JsonLd parseRoundTrip(JsonTokenizer tokenizer, String source) throws IOException, JsonParseException {
+		int token = tokenizer.next();
+		if (token != JsonTokenizer.START_OBJECT) {
+			throw tokenizer.error("A JSON-LD document must be a JSON object");
+		}
+		JsonLdStreamParser parser = new JsonLdStreamParser(true);
+		parser.source = source;
+		do {
+			parser.accept(token, tokenizer);
+		} while ((token = tokenizer.next()) != JsonTokenizer.END);
+		return parser.getResult();
+	}
+
+	/**
+	 * Reads a sequence of JSON-LD documents from the given tokenizer and
+	 * passes their subjects to the consumer one at a time, see
+	 * {@link JsonLdParser#parseSubjects(java.nio.file.Path, Consumer)}. Only the
+	 * subject that is being read is kept in memory.
+	 *
+	 * @param tokenizer
+	 * @param symbols
+	 *            the table the names and string values are looked up in,
+	 *            <code>null</code> to create new strings.
+	 * @param subjects
+	 *            receives a JsonLd per subject.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON, a document is no JSON
+	 *             object or its <code>@context</code> follows its
+	 *             <code>@id</code> array.
+	 */
+	static void parseSubjects(JsonTokenizer tokenizer, JsonLdSymbolTable symbols,
+			Consumer<? super JsonLd> subjects) throws IOException, JsonParseException {
+		int token;
+		while ((token = tokenizer.next()) != JsonTokenizer.END) {
+			if (token != JsonTokenizer.START_OBJECT) {
+				throw tokenizer.error("A JSON-LD document must be a JSON object");
+			}
+			JsonLdStreamParser parser = new JsonLdStreamParser(false, symbols, subjects);
+			parser.accept(token, tokenizer);
+			while (!parser.complete) {
+				parser.accept(tokenizer.next(), tokenizer);
+			}
+		}
+	}
+
+	/**
+	 * Processes the current token of the tokenizer.
+	 *
+	 * @param token
+	 *            type of the current token, see {@link JsonTokenizer}.
+	 * @param tokenizer
+	 * @throws JsonParseException
+	 */
+	void accept(int token, JsonTokenizer tokenizer) throws JsonParseException {
+		if (skipping) {
+			skip(token);
+			return;
+		}
+		switch (token) {
+		case JsonTokenizer.START_OBJECT:
+			push(top == null ? new SubjectFrame(model, subjects) : top.newObject());
+			if (source != null && top instanceof ModelObjectFrame) {
+				// the offset is behind the opening brace
+				((ModelObjectFrame) top).start = (int) tokenizer.getOffset() - 1;
+			}
+			break;
+		case JsonTokenizer.START_ARRAY:
+			push(top.newArray());
+			break;
+		case JsonTokenizer.END_OBJECT:
+		case JsonTokenizer.END_ARRAY:
+			Frame frame = top;
+			top = frame.parent;
+			if (top == null) {
+				if (subjects == null) {
+					result = ((SubjectFrame) frame).toJsonLd();
+				} else {
+					((SubjectFrame) frame).emit();
+				}
+				complete = true;
+			} else {
+				if (source != null && frame instanceof ModelObjectFrame) {
+					((ModelObjectFrame) frame).keepSource(source, (int) tokenizer.getOffset());
+				}
+				top.add(frame.end());
+			}
+			break;
+		case JsonTokenizer.NAME:
+			String name = names == null ? tokenizer.getString() : tokenizer.getString(names);
+			if (top.selects(name)) {
+				top.name = name;
+			} else {
+				skipping = true;
+			}
+			break;
+		case JsonTokenizer.STRING:
+			top.add(symbols == null ? tokenizer.getString() : tokenizer.getString(symbols));
+			break;
+		case JsonTokenizer.NUMBER:
+			top.add(tokenizer.getNumber());
+			break;
+		case JsonTokenizer.TRUE:
+			top.add(Boolean.TRUE);
+			break;
+		case JsonTokenizer.FALSE:
+			top.add(Boolean.FALSE);
+			break;
+		case JsonTokenizer.NULL:
+			top.add(JSONObject.NULL);
+			break;
+		default:
+			throw tokenizer.error("Unexpected token " + token);
+		}
+	}
+
+	/**
+	 * @return the parsed document once its object has been closed, otherwise
+	 *         <code>null</code>.
+	 */
+	JsonLd getResult() {
+		return result;
+	}
+
+	/**
+	 * Skips a token of a value that is not selected.
+	 */
+	private void skip(int token) {
+		switch (token) {
+		case JsonTokenizer.START_OBJECT:
+		case JsonTokenizer.START_ARRAY:
+			skipDepth++;
+			break;
+		case JsonTokenizer.END_OBJECT:
+		case JsonTokenizer.END_ARRAY:
+			skipDepth--;
+			break;
+		default:
+			break;
+		}
+		if (skipDepth == 0) {
+			skipping = false;
+		}
+	}
+
+	private void push(Frame frame) {
+		frame.projection = top == null ? projection : top.childProjection();
+		frame.parent = top;
+		top = frame;
+	}
+
+	/**
+	 * Same as <code>JSONObject.getString()</code>.
+	 */
+	private static String asString(Object value) {
+		return value instanceof String ? (String) value : String.valueOf(value);
+	}
+
+	/**
+	 * An object or array that is being read.
+	 */
+	private abstract static class Frame {
+
+		Frame parent;
+
+		/**
+		 * The name of the current member if this is an object.
+		 */
+		String name;
+
+		/**
+		 * The members read from this object, or from the objects in this
+		 * array, <code>null</code> if all members are read.
+		 */
+		JsonLdProjection.Node projection;
+
+		/**
+		 * @param name
+		 * @return whether the member with the given name is read.
+		 */
+		boolean selects(String name) {
+			return projection == null || projection.selects(name);
+		}
+
+		/**
+		 * @return the members read from the current value, <code>null</code>
+		 *         if all are read.
+		 */
+		JsonLdProjection.Node childProjection() {
+			return projection == null ? null : projection.get(name);
+		}
+
+		/**
+		 * @return the frame for an object that is the current value.
+		 */
+		abstract Frame newObject();
+
+		/**
+		 * @return the frame for an array that is the current value.
+		 */
+		abstract Frame newArray();
+
+		abstract void add(Object value) throws JsonParseException;
+
+		abstract Object end();
+	}
+
+	/**
+	 * A subject, applied to the {@link JsonLd} like
+	 * <code>JsonLdParser.parseSubject()</code> does.
+	 */
+	private static final class SubjectFrame extends Frame {
+
+		private final boolean model;
+
+		/**
+		 * Receives the subjects of the document one at a time if this is the
+		 * root subject, otherwise <code>null</code>.
+		 */
+		private final Consumer<? super JsonLd> subjects;
+
+		/**
+		 * Whether the subjects of the <code>@id</code> array have been passed
+		 * to {@link #subjects} while they were read.
+		 */
+		private boolean emitted;
+
+		private int emittedCount;
+
+		private Object context;
+
+		private Object profile;
+
+		/**
+		 * The subject name or a List of the subjects given as array.
+		 */
+		private Object id;
+
+		private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+		SubjectFrame(boolean model) {
+			this(model, null);
+		}
+
+		SubjectFrame(boolean model, Consumer<? super JsonLd> subjects) {
+			this.model = model;
+			this.subjects = subjects;
+		}
+
+		@Override
+		Frame newObject() {
+			if (isSpecial(name)) {
+				return new RawObjectFrame();
+			}
+			return model ? new ModelObjectFrame() : new ValueObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			if (JsonLdCommon.ID.equals(name)) {
+				return subjects == null ? new SubjectArrayFrame(model) : new EmittingSubjectArrayFrame(this);
+			}
+			if (isSpecial(name)) {
+				return new RawArrayFrame();
+			}
+			return model ? new ModelArrayFrame(name) : new ValueArrayFrame();
+		}
+
+		@Override
+		boolean selects(String name) {
+			return isSpecial(name) || super.selects(name);
+		}
+
+		@Override
+		JsonLdProjection.Node childProjection() {
+			if (JsonLdCommon.ID.equals(name)) {
+				// the subjects of the array are read like this one
+				return projection;
+			}
+			return isSpecial(name) ? null : super.childProjection();
+		}
+
+		private static boolean isSpecial(String name) {
+			return JsonLdCommon.CONTEXT.equals(name) || JsonLdCommon.PROFILE.equals(name)
+					|| JsonLdCommon.ID.equals(name);
+		}
+
+		@Override
+		void add(Object value) throws JsonParseException {
+			if (emitted && (JsonLdCommon.CONTEXT.equals(name) || JsonLdCommon.PROFILE.equals(name))) {
+				throw new JsonParseException("JSON-LD " + name + " must precede the " + JsonLdCommon.ID
+						+ " array to read the subjects one at a time");
+			}
+			if (value == EmittingSubjectArrayFrame.EMITTED) {
+				emitted = true;
+			} else if (JsonLdCommon.CONTEXT.equals(name)) {
+				context = value;
+			} else if (JsonLdCommon.PROFILE.equals(name)) {
+				profile = value;
+			} else if (JsonLdCommon.ID.equals(name)) {
+				id = value;
+			} else {
+				properties.put(name, value);
+			}
+		}
+
+		@Override
+		Object end() {
+			return this;
+		}
+
+		JsonLd toJsonLd() {
+			JsonLd jld = new JsonLd();
+			apply(jld, 1, null);
+			return jld;
+		}
+
+		/**
+		 * Passes this root subject to {@link #subjects} unless its
+		 * <code>@id</code> array has been passed on instead.
+		 */
+		void emit() {
+			if (!emitted) {
+				subjects.accept(toSubjectJsonLd(this, null, 1, null));
+			}
+		}
+
+		/**
+		 * Passes a subject of the <code>@id</code> array of this root subject
+		 * to {@link #subjects}, with the context and profile of the root.
+		 */
+		void emit(SubjectFrame subject) {
+			String rootProfile = profile != null ? asString(profile) : null;
+			subjects.accept(toSubjectJsonLd(subject, context, ++emittedCount, rootProfile));
+		}
+
+		/**
+		 * @return a JsonLd holding the given subject, also if it has a name.
+		 */
+		private static JsonLd toSubjectJsonLd(SubjectFrame frame, Object rootContext, int bnodeCount,
+				String profile) {
+			JsonLd jld = new JsonLd();
+			if (rootContext != null) {
+				try {
+					applyContext(rootContext, jld, new JsonLdResource());
+				} catch (JSONException e) {
+					logger.error("There were JSON problems when parsing the JSON-LD String", e);
+				}
+			}
+			JsonLdResource subject = frame.apply(jld, bnodeCount, profile);
+			if (frame.id != null && !(frame.id instanceof List)) {
+				jld.put(subject.getSubject(), subject);
+			}
+			return jld;
+		}
+
+		private static void applyContext(Object context, JsonLd jld, JsonLdResource subject) throws JSONException {
+			JsonLdParser.addContext(context, jld, subject);
+		}
+
+		private JsonLdResource apply(JsonLd jld, int bnodeCount, String profile) {
+			JsonLdResource subject = new JsonLdResource();
+			try {
+				if (context != null) {
+					applyContext(context, jld, subject);
+				}
+
+				if (this.profile != null) {
+					profile = asString(this.profile);
+				}
+				subject.setProfile(profile);
+
+				if (id instanceof List) {
+					List<?> subjects = (List<?>) id;
+					for (int i = 0; i < subjects.size(); i++) {
+						if (!(subjects.get(i) instanceof SubjectFrame)) {
+							throw new JSONException("JSONArray[" + i + "] is not a JSONObject.");
+						}
+						((SubjectFrame) subjects.get(i)).apply(jld, bnodeCount++, profile);
+					}
+				} else if (id != null) {
+					subject.setSubject(asString(id));
+				} else {
+					subject.setSubject("_:bnode" + bnodeCount);
+					jld.put(subject.getSubject(), subject);
+				}
+
+				for (Map.Entry<String, Object> property : properties.entrySet()) {
+					putProperty(subject, property.getKey(), property.getValue());
+				}
+			} catch (JSONException e) {
+				logger.error("There were JSON problems when parsing the JSON-LD String", e);
+			}
+			return subject;
+		}
+	}
+
+	/**
+	 * Adds a property value to the subject. Values built as
+	 * {@link JsonLdPropertyValue} structure are added as they are, with the
+	 * type coercion of the subject.
+	 */
+	private static void putProperty(JsonLdResource subject, String name, Object value) {
+		JsonLdProperty property;
+		if (value instanceof JsonLdProperty) {
+			property = (JsonLdProperty) value;
+		} else if (value instanceof JsonLdPropertyValue) {
+			property = new JsonLdProperty(name);
+			property.addValue((JsonLdPropertyValue) value);
+		} else {
+			subject.putProperty(name, value);
+			return;
+		}
+		property.setType(subject.getCoerceMap().get(name));
+		subject.putProperty(property);
+	}
+
+	/**
+	 * @return the given value as value of a {@link JsonLdProperty}.
+	 */
+	private static JsonLdPropertyValue toPropertyValue(Object value) {
+		if (value instanceof JsonLdPropertyValue) {
+			return (JsonLdPropertyValue) value;
+		}
+		return new JsonLdPropertyValue(value);
+	}
+
+	/**
+	 * The array of subjects given as <code>@id</code>.
+	 */
+	private static final class SubjectArrayFrame extends Frame {
+
+		private final boolean model;
+
+		private final List<Object> subjects = new ArrayList<Object>();
+
+		SubjectArrayFrame(boolean model) {
+			this.model = model;
+		}
+
+		@Override
+		Frame newObject() {
+			return new SubjectFrame(model);
+		}
+
+		@Override
+		Frame newArray() {
+			return new RawArrayFrame();
+		}
+
+		@Override
+		void add(Object value) {
+			subjects.add(value);
+		}
+
+		@Override
+		JsonLdProjection.Node childProjection() {
+			return projection;
+		}
+
+		@Override
+		Object end() {
+			return subjects;
+		}
+	}
+
+	/**
+	 * The array of subjects given as <code>@id</code> of a root subject whose
+	 * subjects are passed on one at a time, see
+	 * {@link JsonLdStreamParser#parseSubjects(JsonTokenizer, JsonLdSymbolTable, Consumer)}.
+	 */
+	private static final class EmittingSubjectArrayFrame extends Frame {
+
+		/**
+		 * Value of the array for the root subject.
+		 */
+		static final Object EMITTED = new Object();
+
+		private final SubjectFrame root;
+
+		EmittingSubjectArrayFrame(SubjectFrame root) {
+			this.root = root;
+		}
+
+		@Override
+		Frame newObject() {
+			return new SubjectFrame(false);
+		}
+
+		@Override
+		Frame newArray() {
+			return new RawArrayFrame();
+		}
+
+		@Override
+		void add(Object value) throws JsonParseException {
+			if (!(value instanceof SubjectFrame)) {
+				throw new JsonParseException("JSON-LD " + JsonLdCommon.ID + " array must hold objects only");
+			}
+			root.emit((SubjectFrame) value);
+		}
+
+		@Override
+		JsonLdProjection.Node childProjection() {
+			return projection;
+		}
+
+		@Override
+		Object end() {
+			return EMITTED;
+		}
+	}
+
+	/**
+	 * A property value object, converted like
+	 * <code>JsonLdParser.convertToMapAndList()</code> does: objects with an
+	 * <code>@id</code> become a {@link JsonLdIRI}, empty objects
+	 * <code>null</code>.
+	 */
+	private static final class ValueObjectFrame extends Frame {
+
+		private final Map<String, Object> map = new HashMap<String, Object>();
+
+		private Object id;
+
+		@Override
+		Frame newObject() {
+			return JsonLdCommon.ID.equals(name) ? new RawObjectFrame() : new ValueObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return JsonLdCommon.ID.equals(name) ? new RawArrayFrame() : new ValueArrayFrame();
+		}
+
+		@Override
+		void add(Object value) {
+			if (JsonLdCommon.ID.equals(name)) {
+				id = value;
+			}
+			map.put(name, value);
+		}
+
+		@Override
+		boolean selects(String name) {
+			return JsonLdCommon.ID.equals(name) || super.selects(name);
+		}
+
+		@Override
+		Object end() {
+			if (id != null) {
+				return new JsonLdIRI(asString(id));
+			}
+			return map.isEmpty() ? null : map;
+		}
+	}
+
+	private static final class ValueArrayFrame extends Frame {
+
+		private final List<Object> list = new ArrayList<Object>();
+
+		@Override
+		Frame newObject() {
+			return new ValueObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return new ValueArrayFrame();
+		}
+
+		@Override
+		void add(Object value) {
+			list.add(value);
+		}
+
+		@Override
+		JsonLdProjection.Node childProjection() {
+			return projection;
+		}
+
+		@Override
+		Object end() {
+			return list;
+		}
+	}
+
+	/**
+	 * A property value object built as {@link JsonLdPropertyValue} whose
+	 * members are its properties. Objects with an <code>@id</code> become a
+	 * {@link JsonLdIRI} and empty objects <code>null</code>, as in the Map form.
+	 */
+	private static final class ModelObjectFrame extends Frame {
+
+		private final JsonLdPropertyValue value = new JsonLdPropertyValue();
+
+		private Object id;
+
+		/**
+		 * Index of the opening brace in round-trip mode.
+		 */
+		int start;
+
+		@Override
+		Frame newObject() {
+			return JsonLdCommon.ID.equals(name) ? new RawObjectFrame() : new ModelObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return JsonLdCommon.ID.equals(name) ? new RawArrayFrame() : new ModelArrayFrame(name);
+		}
+
+		@Override
+		void add(Object member) {
+			if (JsonLdCommon.ID.equals(name)) {
+				id = member;
+			} else if (member instanceof JsonLdProperty) {
+				value.putProperty((JsonLdProperty) member);
+			} else {
+				JsonLdProperty property = new JsonLdProperty(name);
+				property.addValue(toPropertyValue(member));
+				value.putProperty(property);
+			}
+		}
+
+		@Override
+		boolean selects(String name) {
+			return JsonLdCommon.ID.equals(name) || super.selects(name);
+		}
+
+		@Override
+		Object end() {
+			if (id != null) {
+				return new JsonLdIRI(asString(id));
+			}
+			return value.hasProperties() ? value : null;
+		}
+
+		/**
+		 * Lets the value keep its text once the object has been read.
+		 *
+		 * @param source
+		 * @param end
+		 *            index after the closing brace.
+		 */
+		void keepSource(String source, int end) {
+			value.setRaw(source, start, end);
+		}
+	}
+
+	/**
+	 * A property value array built as {@link JsonLdProperty} with one value
+	 * per element. Arrays directly inside arrays keep their List form.
+	 */
+	private static final class ModelArrayFrame extends Frame {
+
+		private final JsonLdProperty property;
+
+		ModelArrayFrame(String name) {
+			this.property = new JsonLdProperty(name);
+		}
+
+		@Override
+		Frame newObject() {
+			return new ModelObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return new ValueArrayFrame();
+		}
+
+		@Override
+		void add(Object element) {
+			property.addValue(toPropertyValue(element));
+		}
+
+		@Override
+		JsonLdProjection.Node childProjection() {
+			return projection;
+		}
+
+		@Override
+		Object end() {
+			return property;
+		}
+	}
+
+	private static final class RawObjectFrame extends Frame {
+
+		private final JSONObject object = new JSONObject();
+
+		@Override
+		Frame newObject() {
+			return new RawObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return new RawArrayFrame();
+		}
+
+		@Override
+		void add(Object value) throws JsonParseException {
+			try {
+				object.put(name, value);
+			} catch (JSONException e) {
+				throw new JsonParseException("Invalid value of " + name, e);
+			}
+		}
+
+		@Override
+		Object end() {
+			return object;
+		}
+	}
+
+	private static final class RawArrayFrame extends Frame {
+
+		private final JSONArray array = new JSONArray();
+
+		@Override
+		Frame newObject() {
+			return new RawObjectFrame();
+		}
+
+		@Override
+		Frame newArray() {
+			return new RawArrayFrame();
+		}
+
+		@Override
+		void add(Object value) {
+			array.put(value);
+		}
+
+		@Override
+		Object end() {
+			return array;
+		}
+	}
+}
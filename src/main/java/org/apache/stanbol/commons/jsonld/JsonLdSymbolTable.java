@@ -0,0 +1,223 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bounded table of canonical String instances for the property names, IRIs
+ * and other short strings that repeat in and across JSON-LD documents. The
+ * parsers look up the names and short string values they read, so all
+ * {@link JsonLdResource}s parsed with the same table share one instance of a
+ * string instead of holding a copy each.
+ *
+ * <p>
+ * The table has a fixed number of slots, a string is stored in the slot of
+ * its hash code and replaces the string that was stored there before. The
+ * memory used is therefore bounded by the capacity and the maximum length of
+ * the strings, and strings that are no longer used are dropped as soon as
+ * another string takes their slot.
+ *
+ * <p>
+ * A table can be shared by parsers running in different threads. The slots
+ * are read and written without locking: a thread may not see the string
+ * another thread has just stored and create its own instance, which costs
+ * memory but never changes the result.
+ */
+public final class JsonLdSymbolTable {
+
+	/**
+	 * Default number of slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * Default maximum length of the strings held by the table. Longer strings
+	 * are rarely repeated and are returned as they are.
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 128;
+
+	private final String[] slots;
+
+	private final int mask;
+
+	private final int maxLength;
+
+	public JsonLdSymbolTable() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * @param capacity
+	 *            the number of slots, rounded up to the next power of two.
+	 * @param maxLength
+	 *            the maximum length of the strings held by the table.
+	 */
+	public JsonLdSymbolTable(int capacity, int maxLength) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+		}
+		if (maxLength < 0) {
+			throw new IllegalArgumentException("maxLength must not be negative");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.slots = new String[size];
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Returns the canonical instance of the given string. The string becomes
+	 * the canonical instance if the table holds no equal string.
+	 *
+	 * @param string
+	 * @return an equal string, <code>null</code> for <code>null</code>.
+	 */
+	public String intern(String string) {
+		if (string == null || string.length() > maxLength) {
+			return string;
+		}
+		int index = index(string.hashCode());
+		String symbol = slots[index];
+		if (string.equals(symbol)) {
+			return symbol;
+		}
+		slots[index] = string;
+		return string;
+	}
+
+	/**
+	 * Returns the canonical instance of the string of the given characters. A
+	 * new string is only created if the table holds no equal string.
+	 *
+	 * @param chars
+	 * @param start
+	 *            index of the first character.
+	 * @param length
+	 *            number of characters.
+	 * @return an equal string.
+	 */
+	String intern(char[] chars, int start, int length) {
+		if (length > maxLength) {
+			return new String(chars, start, length);
+		}
+		int end = start + length;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int index = index(hash);
+		String symbol = slots[index];
+		if (symbol != null && matches(symbol, chars, start, length)) {
+			return symbol;
+		}
+		symbol = new String(chars, start, length);
+		slots[index] = symbol;
+		return symbol;
+	}
+
+	/**
+	 * @return the number of strings held by the table.
+	 */
+	public int size() {
+		int size = 0;
+		for (String symbol : slots) {
+			if (symbol != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Removes all strings from the table.
+	 */
+	public void clear() {
+		Arrays.fill(slots, null);
+	}
+
+	/**
+	 * Returns the canonical instance of the string of the given ASCII bytes,
+	 * see {@link #intern(char[], int, int)}.
+	 *
+	 * @param ascii
+	 *            bytes between 0 and 127.
+	 * @param start
+	 *            index of the first byte.
+	 * @param length
+	 *            number of bytes.
+	 * @return an equal string.
+	 */
+	String intern(byte[] ascii, int start, int length) {
+		if (length > maxLength) {
+			return new String(ascii, start, length, StandardCharsets.ISO_8859_1);
+		}
+		int end = start + length;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + ascii[i];
+		}
+		int index = index(hash);
+		String symbol = slots[index];
+		if (symbol != null && matches(symbol, ascii, start, length)) {
+			return symbol;
+		}
+		symbol = new String(ascii, start, length, StandardCharsets.ISO_8859_1);
+		slots[index] = symbol;
+		return symbol;
+	}
+
+	private int index(int hash) {
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private static boolean matches(String symbol, char[] chars, int start, int length) {
+		if (symbol.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (symbol.charAt(i) != chars[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(String symbol, byte[] ascii, int start, int length) {
+		if (symbol.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (symbol.charAt(i) != ascii[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,234 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Views of the collections of the values read by
+ * {@link JsonLdParser#parseRoundTrip(String)} that report every change, so
+ * that a value changed through a returned collection is no longer written as
+ * the text it was read from. The lists and maps nested in a tracked
+ * collection are returned as tracked views as well.
+ */
+final class JsonLdTracking {
+
+	private JsonLdTracking() {
+	}
+
+	/**
+	 * @return a view of the given value that reports its changes to the
+	 *         given callback if it is a list or a map, otherwise the value.
+	 */
+	@SuppressWarnings("unchecked")
+	static Object track(Object value, final Runnable modified) {
+		if (value instanceof List<?>) {
+			return new TrackedList<Object>((List<Object>) value) {
+				@Override
+				void modified() {
+					modified.run();
+				}
+			};
+		}
+		if (value instanceof Map<?, ?>) {
+			return new TrackedMap<Object, Object>((Map<Object, Object>) value) {
+				@Override
+				void modified() {
+					modified.run();
+				}
+			};
+		}
+		return value;
+	}
+
+	/**
+	 * A list whose changes are reported to {@link #modified()}. All changes
+	 * of {@link AbstractList}, including those of its iterators and sub
+	 * lists, end up in {@link #set(int, Object)}, {@link #add(int, Object)}
+	 * or {@link #remove(int)}.
+	 */
+	abstract static class TrackedList<E> extends AbstractList<E> {
+
+		private final List<E> list;
+
+		TrackedList(List<E> list) {
+			this.list = list;
+		}
+
+		abstract void modified();
+
+		@Override
+		public E get(int index) {
+			return nested(list.get(index));
+		}
+
+		@SuppressWarnings("unchecked")
+		private E nested(E element) {
+			if (!(element instanceof List<?> || element instanceof Map<?, ?>)) {
+				return element;
+			}
+			return (E) track(element, new Runnable() {
+				public void run() {
+					modified();
+				}
+			});
+		}
+
+		@Override
+		public int size() {
+			return list.size();
+		}
+
+		@Override
+		public E set(int index, E element) {
+			E old = list.set(index, element);
+			modified();
+			return old;
+		}
+
+		@Override
+		public void add(int index, E element) {
+			list.add(index, element);
+			modified();
+		}
+
+		@Override
+		public E remove(int index) {
+			E old = list.remove(index);
+			modified();
+			return old;
+		}
+	}
+
+	/**
+	 * A map whose changes are reported to {@link #modified()}. The key set
+	 * and the values of {@link AbstractMap} change the map through the
+	 * iterator of the entry set.
+	 */
+	abstract static class TrackedMap<K, V> extends AbstractMap<K, V> {
+
+		private final Map<K, V> map;
+
+		TrackedMap(Map<K, V> map) {
+			this.map = map;
+		}
+
+		abstract void modified();
+
+		@Override
+		public V get(Object key) {
+			return nested(map.get(key));
+		}
+
+		@SuppressWarnings("unchecked")
+		private V nested(V value) {
+			if (!(value instanceof List<?> || value instanceof Map<?, ?>)) {
+				return value;
+			}
+			return (V) track(value, new Runnable() {
+				public void run() {
+					modified();
+				}
+			});
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public V put(K key, V value) {
+			V old = map.put(key, value);
+			modified();
+			return old;
+		}
+
+		@Override
+		public V remove(Object key) {
+			if (!map.containsKey(key)) {
+				return null;
+			}
+			V old = map.remove(key);
+			modified();
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			if (!map.isEmpty()) {
+				map.clear();
+				modified();
+			}
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					final Iterator<Map.Entry<K, V>> entries = map.entrySet().iterator();
+					return new Iterator<Map.Entry<K, V>>() {
+						public boolean hasNext() {
+							return entries.hasNext();
+						}
+
+						public Map.Entry<K, V> next() {
+							final Map.Entry<K, V> entry = entries.next();
+							return new AbstractMap.SimpleEntry<K, V>(entry) {
+								private static final long serialVersionUID = 1L;
+
+								@Override
+								public V getValue() {
+									return nested(super.getValue());
+								}
+
+								@Override
+								public V setValue(V value) {
+									super.setValue(value);
+									modified();
+									return entry.setValue(value);
+								}
+							};
+						}
+
+						public void remove() {
+							entries.remove();
+							modified();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return map.size();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Target of the {@link JsonSerializer}. Implementations either collect the
+ * serialized JSON in memory or pass it on to a sink while it is produced.
+ *
+ * <p>
+ * Errors of an underlying sink are reported as {@link UncheckedIOException}
+ * because the serializer methods do not declare checked exceptions.
+ */
+public abstract class JsonOutput {
+
+	/**
+	 * Appends a single character.
+	 *
+	 * @param ch
+	 */
+	public abstract void append(char ch);
+
+	/**
+	 * Appends all characters of the given String.
+	 *
+	 * @param str
+	 */
+	public abstract void append(String str);
+
+	/**
+	 * @return the number of characters appended so far, including the ones
+	 *         already passed on to an underlying sink.
+	 */
+	public abstract long length();
+
+	/**
+	 * Passes all buffered characters on to the underlying sink, if any.
+	 *
+	 * @throws IOException
+	 */
+	public abstract void flush() throws IOException;
+
+	/**
+	 * Appends the characters of the given String from <code>start</code>
+	 * (inclusive) to <code>end</code> (exclusive).
+	 *
+	 * @param str
+	 * @param start
+	 * @param end
+	 */
+	public void append(String str, int start, int end) {
+		for (int i = start; i < end; i++) {
+			append(str.charAt(i));
+		}
+	}
+
+	/**
+	 * Appends JSON that has been encoded in advance, given as String and as
+	 * its UTF-8 bytes.
+	 *
+	 * @param json
+	 * @param utf8
+	 */
+	void appendEncoded(String json, byte[] utf8) {
+		append(json);
+	}
+
+	/**
+	 * Appends the given String as quoted and escaped JSON string. The runs of
+	 * characters between two escapes are appended at once.
+	 *
+	 * @param string
+	 */
+	public void appendQuoted(String string) {
+		append('"');
+		int len = string.length();
+		int start = 0;
+		int next;
+		while ((next = JsonEscaping.nextEscape(string, start)) < len) {
+			if (next > start) {
+				append(string, start, next);
+			}
+			appendEscaped(string.charAt(next));
+			start = next + 1;
+		}
+		if (start < len) {
+			append(string, start, len);
+		}
+		append('"');
+	}
+
+	private void appendEscaped(char ch) {
+		char escape = (char) JsonEscaping.ESCAPES[ch];
+		append('\\');
+		append(escape);
+		if (escape == 'u') {
+			append('0');
+			append('0');
+			append(JsonEscaping.HEX[(ch >> 4) & 0xf]);
+			append(JsonEscaping.HEX[ch & 0xf]);
+		}
+	}
+}
@@ -0,0 +1,553 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+
+/**
+ * {@link JsonTokenizer} for UTF-8 input that arrives in chunks. The chunks
+ * are passed in by {@link #setInput(ByteBuffer)}, and {@link #next()} returns
+ * {@link #NEED_INPUT} when a chunk has been consumed. The state of a token
+ * that is cut by the end of a chunk, e.g. a partial string, escape sequence
+ * or UTF-8 sequence, is kept until the next chunk arrives, so the chunks do
+ * not have to be copied or joined.
+ *
+ * <p>
+ * A name is returned as soon as its closing quote has been read, the colon
+ * following it is checked afterwards. Numbers end at the first character
+ * that can not be part of them, so a number is returned with the following
+ * token.
+ */
+final class JsonPushTokenizer extends JsonTokenizer {
+
+	/**
+	 * Returned by {@link #next()} when the current chunk has been consumed.
+	 */
+	static final int NEED_INPUT = -1;
+
+	private static final byte IN_OBJECT = 1;
+
+	private static final byte IN_ARRAY = 2;
+
+	private static final int EXPECT_VALUE = 0;
+
+	private static final int EXPECT_FIRST_VALUE = 1;
+
+	private static final int EXPECT_FIRST_NAME = 2;
+
+	private static final int EXPECT_SEPARATOR = 3;
+
+	private static final int EXPECT_NAME = 4;
+
+	private static final int EXPECT_COLON = 5;
+
+	/**
+	 * No token is being read.
+	 */
+	private static final int LEX_NONE = 0;
+
+	private static final int LEX_STRING = 1;
+
+	private static final int LEX_ESCAPE = 2;
+
+	private static final int LEX_UNICODE = 3;
+
+	private static final int LEX_UTF8 = 4;
+
+	private static final int LEX_NUMBER = 5;
+
+	private static final int LEX_LITERAL = 6;
+
+	private ByteBuffer in;
+
+	/**
+	 * Position of {@link #in} when it was set.
+	 */
+	private int inStart;
+
+	/**
+	 * Number of bytes of the chunks before {@link #in}.
+	 */
+	private long consumed;
+
+	private byte[] stack = new byte[16];
+
+	private int depth;
+
+	private int state = EXPECT_VALUE;
+
+	private int lex = LEX_NONE;
+
+	/**
+	 * Whether the string being read is a name.
+	 */
+	private boolean name;
+
+	/**
+	 * Value of the unicode escape or UTF-8 sequence being read.
+	 */
+	private int codePoint;
+
+	/**
+	 * Number of hex digits or UTF-8 continuation bytes read or missing.
+	 */
+	private int count;
+
+	/**
+	 * Number of continuation bytes of the UTF-8 sequence being read.
+	 */
+	private int sequenceLength;
+
+	private String literal;
+
+	private int literalToken;
+
+	private char[] text = new char[64];
+
+	private int tokenLength;
+
+	/**
+	 * Sets the next chunk of input. The bytes between its position and limit
+	 * are consumed by the following calls of {@link #next()}.
+	 *
+	 * @param chunk
+	 */
+	void setInput(ByteBuffer chunk) {
+		if (in != null) {
+			consumed += in.position() - inStart;
+		}
+		in = chunk;
+		inStart = chunk.position();
+	}
+
+	/**
+	 * @return whether a complete top level value has been read.
+	 */
+	boolean isComplete() {
+		return depth == 0 && state == EXPECT_SEPARATOR;
+	}
+
+	/**
+	 * Resets the tokenizer for a new document, keeping its buffers.
+	 */
+	void reset() {
+		in = null;
+		consumed = 0;
+		depth = 0;
+		state = EXPECT_VALUE;
+		lex = LEX_NONE;
+		tokenLength = 0;
+	}
+
+	/**
+	 * Signals the end of the input.
+	 *
+	 * @return a {@link #NUMBER} that has been ended by the end of the input,
+	 *         otherwise {@link #END}.
+	 * @throws JsonParseException
+	 *             if a token has been started but not finished.
+	 */
+	int finish() throws JsonParseException {
+		if (lex == LEX_NUMBER) {
+			return endNumber();
+		}
+		if (lex != LEX_NONE) {
+			throw error(lex == LEX_LITERAL ? "Invalid literal, expected '" + literal + "'" : "Unterminated string");
+		}
+		return END;
+	}
+
+	@Override
+	int next() throws JsonParseException {
+		if (lex != LEX_NONE) {
+			int token = continueToken();
+			if (token != LEX_NONE) {
+				return token;
+			}
+		}
+		while (in.hasRemaining()) {
+			int pos = in.position();
+			byte b = in.get(pos);
+			if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				in.position(pos + 1);
+				continue;
+			}
+			switch (state) {
+			case EXPECT_FIRST_NAME:
+				if (b == '}') {
+					return endContainer(END_OBJECT);
+				}
+				return startName(b);
+			case EXPECT_NAME:
+				return startName(b);
+			case EXPECT_COLON:
+				if (b != ':') {
+					throw unexpected(b, "':'");
+				}
+				in.position(pos + 1);
+				state = EXPECT_VALUE;
+				continue;
+			case EXPECT_FIRST_VALUE:
+				if (b == ']') {
+					return endContainer(END_ARRAY);
+				}
+				return startValue(b);
+			case EXPECT_SEPARATOR:
+				if (depth == 0) {
+					throw error("Unexpected character '" + (char) (b & 0xff) + "' after the end of the document");
+				}
+				boolean inObject = stack[depth - 1] == IN_OBJECT;
+				if (b == ',') {
+					in.position(pos + 1);
+					state = inObject ? EXPECT_NAME : EXPECT_VALUE;
+					continue;
+				}
+				if (b == (inObject ? '}' : ']')) {
+					return endContainer(inObject ? END_OBJECT : END_ARRAY);
+				}
+				throw unexpected(b, inObject ? "',' or '}'" : "',' or ']'");
+			default:
+				return startValue(b);
+			}
+		}
+		return NEED_INPUT;
+	}
+
+	@Override
+	String getString() {
+		return new String(text, 0, tokenLength);
+	}
+
+	@Override
+	String getString(JsonLdSymbolTable symbols) {
+		return symbols.intern(text, 0, tokenLength);
+	}
+
+	@Override
+	Number getNumber() throws JsonParseException {
+		Number number = toNumber(getString());
+		if (number == null) {
+			throw error("JSON does not allow non-finite numbers");
+		}
+		return number;
+	}
+
+	@Override
+	long getOffset() {
+		return in == null ? consumed : consumed + in.position() - inStart;
+	}
+
+	private int startName(byte b) throws JsonParseException {
+		if (b != '"') {
+			throw unexpected(b, "a name");
+		}
+		in.position(in.position() + 1);
+		name = true;
+		tokenLength = 0;
+		lex = LEX_STRING;
+		return ended(continueString());
+	}
+
+	private int startValue(byte b) throws JsonParseException {
+		switch (b) {
+		case '{':
+			in.position(in.position() + 1);
+			push(IN_OBJECT);
+			state = EXPECT_FIRST_NAME;
+			return START_OBJECT;
+		case '[':
+			in.position(in.position() + 1);
+			push(IN_ARRAY);
+			state = EXPECT_FIRST_VALUE;
+			return START_ARRAY;
+		case '"':
+			in.position(in.position() + 1);
+			name = false;
+			tokenLength = 0;
+			lex = LEX_STRING;
+			return ended(continueString());
+		case 't':
+			return startLiteral("true", TRUE);
+		case 'f':
+			return startLiteral("false", FALSE);
+		case 'n':
+			return startLiteral("null", NULL);
+		default:
+			if (b == '-' || (b >= '0' && b <= '9')) {
+				tokenLength = 0;
+				lex = LEX_NUMBER;
+				return ended(continueNumber());
+			}
+			throw unexpected(b, "a value");
+		}
+	}
+
+	private int startLiteral(String literal, int token) throws JsonParseException {
+		this.literal = literal;
+		this.literalToken = token;
+		count = 0;
+		lex = LEX_LITERAL;
+		return ended(continueLiteral());
+	}
+
+	/**
+	 * @return the given token, or {@link #NEED_INPUT} if the token has not
+	 *         been finished.
+	 */
+	private static int ended(int token) {
+		return token == LEX_NONE ? NEED_INPUT : token;
+	}
+
+	/**
+	 * Continues the token that was cut by the end of the previous chunk.
+	 *
+	 * @return the token type once it is finished, otherwise
+	 *         {@link #LEX_NONE} if the chunk has been consumed.
+	 */
+	private int continueToken() throws JsonParseException {
+		switch (lex) {
+		case LEX_NUMBER:
+			return continueNumber();
+		case LEX_LITERAL:
+			return continueLiteral();
+		default:
+			return continueString();
+		}
+	}
+
+	/**
+	 * Decodes the bytes of the current string up to the closing quote or the
+	 * end of the chunk. Runs of ASCII characters are copied in a tight loop.
+	 */
+	private int continueString() throws JsonParseException {
+		ByteBuffer in = this.in;
+		int pos = in.position();
+		int limit = in.limit();
+		try {
+			while (pos < limit) {
+				if (lex == LEX_STRING) {
+					int n = tokenLength;
+					char[] chars = text;
+					byte b = 0;
+					while (pos < limit && (b = in.get(pos)) >= ' ' && b != '"' && b != '\\') {
+						if (n == chars.length) {
+							chars = text = Arrays.copyOf(chars, n * 2);
+						}
+						chars[n++] = (char) b;
+						pos++;
+					}
+					tokenLength = n;
+					if (pos == limit) {
+						break;
+					}
+					pos++;
+					if (b == '"') {
+						lex = LEX_NONE;
+						if (name) {
+							state = EXPECT_COLON;
+							return NAME;
+						}
+						state = EXPECT_SEPARATOR;
+						return STRING;
+					}
+					if (b == '\\') {
+						lex = LEX_ESCAPE;
+					} else if (b < 0) {
+						startUtf8(b & 0xff, pos);
+					} else {
+						pos--;
+						in.position(pos);
+						throw error("Unescaped control character in string");
+					}
+				} else {
+					int b = in.get(pos++) & 0xff;
+					in.position(pos);
+					if (lex == LEX_ESCAPE) {
+						appendEscaped(b);
+					} else if (lex == LEX_UNICODE) {
+						appendUnicodeDigit(b);
+					} else {
+						appendUtf8(b);
+					}
+				}
+			}
+			return LEX_NONE;
+		} finally {
+			in.position(pos);
+		}
+	}
+
+	private void appendEscaped(int ch) throws JsonParseException {
+		lex = LEX_STRING;
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			appendText((char) ch);
+			break;
+		case 'b':
+			appendText('\b');
+			break;
+		case 'f':
+			appendText('\f');
+			break;
+		case 'n':
+			appendText('\n');
+			break;
+		case 'r':
+			appendText('\r');
+			break;
+		case 't':
+			appendText('\t');
+			break;
+		case 'u':
+			lex = LEX_UNICODE;
+			codePoint = 0;
+			count = 0;
+			break;
+		default:
+			throw error("Invalid escape sequence");
+		}
+	}
+
+	private void appendUnicodeDigit(int ch) throws JsonParseException {
+		int digit = Character.digit(ch, 16);
+		if (digit < 0) {
+			throw error("Invalid unicode escape");
+		}
+		codePoint = (codePoint << 4) | digit;
+		if (++count == 4) {
+			appendText((char) codePoint);
+			lex = LEX_STRING;
+		}
+	}
+
+	/**
+	 * Starts a multi-byte UTF-8 sequence.
+	 *
+	 * @param lead
+	 *            the first byte of the sequence.
+	 * @param pos
+	 *            the position after the first byte, for error messages.
+	 */
+	private void startUtf8(int lead, int pos) throws JsonParseException {
+		if (lead >= 0xc2 && lead <= 0xdf) {
+			sequenceLength = 1;
+			codePoint = lead & 0x1f;
+		} else if (lead >= 0xe0 && lead <= 0xef) {
+			sequenceLength = 2;
+			codePoint = lead & 0x0f;
+		} else if (lead >= 0xf0 && lead <= 0xf4) {
+			sequenceLength = 3;
+			codePoint = lead & 0x07;
+		} else {
+			in.position(pos);
+			throw error("Invalid UTF-8 byte");
+		}
+		count = sequenceLength;
+		lex = LEX_UTF8;
+	}
+
+	/**
+	 * Adds a continuation byte to the current UTF-8 sequence, rejecting
+	 * overlong forms, surrogates and code points beyond U+10FFFF.
+	 */
+	private void appendUtf8(int b) throws JsonParseException {
+		if ((b & 0xc0) != 0x80) {
+			throw error("Invalid UTF-8 sequence");
+		}
+		codePoint = (codePoint << 6) | (b & 0x3f);
+		if (--count > 0) {
+			return;
+		}
+		if (sequenceLength == 2 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint))
+				|| sequenceLength == 3 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT)) {
+			throw error("Invalid UTF-8 sequence");
+		}
+		if (sequenceLength == 3) {
+			appendText(Character.highSurrogate(codePoint));
+			appendText(Character.lowSurrogate(codePoint));
+		} else {
+			appendText((char) codePoint);
+		}
+		lex = LEX_STRING;
+	}
+
+	private int continueNumber() throws JsonParseException {
+		while (in.hasRemaining()) {
+			byte b = in.get(in.position());
+			if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+				appendText((char) b);
+				in.position(in.position() + 1);
+			} else {
+				return endNumber();
+			}
+		}
+		return LEX_NONE;
+	}
+
+	private int endNumber() throws JsonParseException {
+		lex = LEX_NONE;
+		if (!isNumber(text, tokenLength)) {
+			throw error("Invalid number '" + getString() + "'");
+		}
+		state = EXPECT_SEPARATOR;
+		return NUMBER;
+	}
+
+	private int continueLiteral() throws JsonParseException {
+		while (in.hasRemaining()) {
+			if (in.get() != literal.charAt(count)) {
+				throw error("Invalid literal, expected '" + literal + "'");
+			}
+			if (++count == literal.length()) {
+				lex = LEX_NONE;
+				state = EXPECT_SEPARATOR;
+				return literalToken;
+			}
+		}
+		return LEX_NONE;
+	}
+
+	private void push(byte container) {
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth++] = container;
+	}
+
+	private int endContainer(int token) {
+		in.position(in.position() + 1);
+		depth--;
+		state = EXPECT_SEPARATOR;
+		return token;
+	}
+
+	private void appendText(char ch) {
+		if (tokenLength == text.length) {
+			text = Arrays.copyOf(text, tokenLength * 2);
+		}
+		text[tokenLength++] = ch;
+	}
+
+	private JsonParseException unexpected(byte b, String expected) {
+		return error("Unexpected character '" + (char) (b & 0xff) + "', expected " + expected);
+	}
+}
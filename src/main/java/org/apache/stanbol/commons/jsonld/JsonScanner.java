@@ -0,0 +1,236 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+/**
+ * Finds the extent of JSON values in a String without building them, for the
+ * parsers that only look at parts of a document.
+ *
+ * <p>
+ * The scan checks the values for strict JSON (RFC 8259). Everything else,
+ * including the lenient syntax Jettison accepts, e.g. single quotes, comments
+ * or unquoted strings, is reported as -1, so that the callers can fall back to
+ * Jettison for the whole document.
+ */
+final class JsonScanner {
+
+	/**
+	 * Maximum nesting depth of the values, deeper ones are left to Jettison.
+	 */
+	private static final int MAX_DEPTH = 256;
+
+	private JsonScanner() {
+	}
+
+	/**
+	 * @return the offset of the first non-whitespace character from the given
+	 *         one on.
+	 */
+	static int skipWhitespace(String json, int i) {
+		while (i < json.length() && json.charAt(i) <= ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the offset after the value starting at the given offset, -1 if
+	 *         it is no strict JSON value.
+	 */
+	static int skipValue(String json, int i) {
+		return skipValue(json, i, 0);
+	}
+
+	/**
+	 * @return the offset after the closing quote of the string starting at
+	 *         the given offset, -1 if it is not terminated or not strict.
+	 */
+	static int skipString(String json, int i) {
+		if (i >= json.length() || json.charAt(i) != '"') {
+			return -1;
+		}
+		for (i++; i < json.length(); i++) {
+			char ch = json.charAt(i);
+			if (ch == '"') {
+				return i + 1;
+			}
+			if (ch < ' ') {
+				return -1;
+			}
+			if (ch == '\\') {
+				if (++i >= json.length()) {
+					return -1;
+				}
+				switch (json.charAt(i)) {
+				case '"':
+				case '\\':
+				case '/':
+				case 'b':
+				case 'f':
+				case 'n':
+				case 'r':
+				case 't':
+					break;
+				case 'u':
+					if (i + 4 >= json.length()) {
+						return -1;
+					}
+					for (int j = i + 1; j <= i + 4; j++) {
+						if (Character.digit(json.charAt(j), 16) < 0) {
+							return -1;
+						}
+					}
+					i += 4;
+					break;
+				default:
+					return -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static int skipValue(String json, int i, int depth) {
+		if (i >= json.length()) {
+			return -1;
+		}
+		switch (json.charAt(i)) {
+		case '"':
+			return skipString(json, i);
+		case '{':
+			return depth < MAX_DEPTH ? skipObject(json, i, depth + 1) : -1;
+		case '[':
+			return depth < MAX_DEPTH ? skipArray(json, i, depth + 1) : -1;
+		case 't':
+			return skipLiteral(json, i, "true");
+		case 'f':
+			return skipLiteral(json, i, "false");
+		case 'n':
+			return skipLiteral(json, i, "null");
+		default:
+			return skipNumber(json, i);
+		}
+	}
+
+	private static int skipObject(String json, int start, int depth) {
+		int i = skipWhitespace(json, start + 1);
+		if (i < json.length() && json.charAt(i) == '}') {
+			return i + 1;
+		}
+		for (;;) {
+			i = skipString(json, i);
+			if (i < 0) {
+				return -1;
+			}
+			i = skipWhitespace(json, i);
+			if (i >= json.length() || json.charAt(i) != ':') {
+				return -1;
+			}
+			i = skipValue(json, skipWhitespace(json, i + 1), depth);
+			if (i < 0) {
+				return -1;
+			}
+			i = skipWhitespace(json, i);
+			if (i >= json.length()) {
+				return -1;
+			}
+			if (json.charAt(i) == '}') {
+				return i + 1;
+			}
+			if (json.charAt(i) != ',') {
+				return -1;
+			}
+			i = skipWhitespace(json, i + 1);
+		}
+	}
+
+	private static int skipArray(String json, int start, int depth) {
+		int i = skipWhitespace(json, start + 1);
+		if (i < json.length() && json.charAt(i) == ']') {
+			return i + 1;
+		}
+		for (;;) {
+			i = skipValue(json, i, depth);
+			if (i < 0) {
+				return -1;
+			}
+			i = skipWhitespace(json, i);
+			if (i >= json.length()) {
+				return -1;
+			}
+			if (json.charAt(i) == ']') {
+				return i + 1;
+			}
+			if (json.charAt(i) != ',') {
+				return -1;
+			}
+			i = skipWhitespace(json, i + 1);
+		}
+	}
+
+	private static int skipLiteral(String json, int i, String literal) {
+		return json.startsWith(literal, i) && isDelimiter(json, i + literal.length()) ? i + literal.length() : -1;
+	}
+
+	private static int skipNumber(String json, int i) {
+		if (i < json.length() && json.charAt(i) == '-') {
+			i++;
+		}
+		int digits = skipDigits(json, i);
+		if (digits == i || (json.charAt(i) == '0' && digits > i + 1)) {
+			return -1;
+		}
+		i = digits;
+		if (i < json.length() && json.charAt(i) == '.') {
+			digits = skipDigits(json, i + 1);
+			if (digits == i + 1) {
+				return -1;
+			}
+			i = digits;
+		}
+		if (i < json.length() && (json.charAt(i) == 'e' || json.charAt(i) == 'E')) {
+			i++;
+			if (i < json.length() && (json.charAt(i) == '+' || json.charAt(i) == '-')) {
+				i++;
+			}
+			digits = skipDigits(json, i);
+			if (digits == i) {
+				return -1;
+			}
+			i = digits;
+		}
+		return isDelimiter(json, i) ? i : -1;
+	}
+
+	private static int skipDigits(String json, int i) {
+		while (i < json.length() && json.charAt(i) >= '0' && json.charAt(i) <= '9') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return whether a literal or number may end before the given offset.
+	 */
+	private static boolean isDelimiter(String json, int i) {
+		if (i >= json.length()) {
+			return true;
+		}
+		char ch = json.charAt(i);
+		return ch <= ' ' || ch == ',' || ch == '}' || ch == ']';
+	}
+}
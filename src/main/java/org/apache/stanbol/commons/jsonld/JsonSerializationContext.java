@@ -0,0 +1,156 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+/**
+ * Holds the buffers used by the {@link JsonSerializer} so that they can be
+ * reused from one serialization to the next instead of being allocated and
+ * grown again every time.
+ *
+ * <p>
+ * A context is not thread-safe. Either create one per thread or use
+ * {@link #get()} which returns a context bound to the calling thread. The
+ * latter is used by the serialization methods without a context parameter.
+ *
+ * <p>
+ * Buffers that have grown beyond the maximum retained capacity are dropped
+ * after use, so a single large document does not pin its buffer memory for
+ * the lifetime of the thread.
+ */
+public final class JsonSerializationContext {
+
+	/**
+	 * Default maximum capacity in chars or bytes a buffer may keep between two
+	 * serializations.
+	 */
+	public static final int DEFAULT_MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private static final ThreadLocal<JsonSerializationContext> CURRENT = new ThreadLocal<JsonSerializationContext>() {
+		@Override
+		protected JsonSerializationContext initialValue() {
+			return new JsonSerializationContext();
+		}
+	};
+
+	private final int maxRetainedCapacity;
+
+	private JsonCharOutput charOutput;
+
+	private JsonUtf8Output utf8Output;
+
+	private boolean charOutputInUse;
+
+	private boolean utf8OutputInUse;
+
+	private JsonLdNodePool nodePool;
+
+	private boolean nodePoolInUse;
+
+	public JsonSerializationContext() {
+		this(DEFAULT_MAX_RETAINED_CAPACITY);
+	}
+
+	/**
+	 * @param maxRetainedCapacity
+	 *            Maximum capacity in chars or bytes a buffer may keep between
+	 *            two serializations.
+	 */
+	public JsonSerializationContext(int maxRetainedCapacity) {
+		if (maxRetainedCapacity < 0) {
+			throw new IllegalArgumentException("maxRetainedCapacity must not be negative");
+		}
+		this.maxRetainedCapacity = maxRetainedCapacity;
+	}
+
+	/**
+	 * @return the context bound to the calling thread.
+	 */
+	public static JsonSerializationContext get() {
+		return CURRENT.get();
+	}
+
+	public int getMaxRetainedCapacity() {
+		return maxRetainedCapacity;
+	}
+
+	/**
+	 * Returns the reusable char output of this context. If it is already in
+	 * use, e.g. by a value that serializes itself while it is being
+	 * serialized, a new output is returned.
+	 */
+	JsonCharOutput acquireCharOutput() {
+		if (charOutputInUse) {
+			return new JsonCharOutput();
+		}
+		if (charOutput == null) {
+			charOutput = new JsonCharOutput();
+		}
+		charOutputInUse = true;
+		return charOutput;
+	}
+
+	void release(JsonCharOutput out) {
+		if (out == charOutput) {
+			out.reset(maxRetainedCapacity);
+			charOutputInUse = false;
+		}
+	}
+
+	/**
+	 * Returns the reusable UTF-8 output of this context, see
+	 * {@link #acquireCharOutput()}.
+	 */
+	JsonUtf8Output acquireUtf8Output() {
+		if (utf8OutputInUse) {
+			return new JsonUtf8Output();
+		}
+		if (utf8Output == null) {
+			utf8Output = new JsonUtf8Output();
+		}
+		utf8OutputInUse = true;
+		return utf8Output;
+	}
+
+	void release(JsonUtf8Output out) {
+		if (out == utf8Output) {
+			out.reset(maxRetainedCapacity);
+			utf8OutputInUse = false;
+		}
+	}
+
+	/**
+	 * Returns the reusable JSON objects and arrays {@link JsonLd} builds while
+	 * it is serialized, see {@link #acquireCharOutput()}.
+	 */
+	JsonLdNodePool acquireNodePool() {
+		if (nodePoolInUse) {
+			return new JsonLdNodePool(maxRetainedCapacity);
+		}
+		if (nodePool == null) {
+			nodePool = new JsonLdNodePool(maxRetainedCapacity);
+		}
+		nodePoolInUse = true;
+		return nodePool;
+	}
+
+	void release(JsonLdNodePool pool) {
+		if (pool == nodePool) {
+			pool.reset();
+			nodePoolInUse = false;
+		}
+	}
+}
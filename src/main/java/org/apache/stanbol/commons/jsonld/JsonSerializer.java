@@ -16,6 +16,10 @@
 */
 package org.apache.stanbol.commons.jsonld;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -42,117 +46,332 @@ public final class JsonSerializer {
 	private static Set<String> containerProps = new HashSet<String>();
 
 	public static String toString(Map<String, Object> jsonMap) {
-		StringBuffer sb = new StringBuffer();
+		return toString(jsonMap, 0);
+	}
 
-		appendJsonMap(jsonMap, sb, 0, 0);
-		removeOddChars(sb, 0);
+	public static String toString(Map<String, Object> jsonMap, int indent) {
+		return toString(jsonMap, indent, JsonSerializationContext.get());
+	}
 
-		return sb.toString();
+	/**
+	 * Serializes the given JSON map using the buffers of the given context.
+	 * 
+	 * @param jsonMap
+	 * @param indent
+	 * @param context
+	 * @return the serialized JSON
+	 */
+	public static String toString(Map<String, Object> jsonMap, int indent, JsonSerializationContext context) {
+		JsonCharOutput out = context.acquireCharOutput();
+		try {
+			write(jsonMap, indent, out);
+			return out.toString();
+		} finally {
+			context.release(out);
+		}
 	}
 
-	public static String toString(Map<String, Object> jsonMap, int indent) {
-		StringBuffer sb = new StringBuffer();
+	public static String toString(List<Object> jsonArray) {
+		return toString(jsonArray, 0);
+	}
 
-		appendJsonMap(jsonMap, sb, indent, 0);
-		removeOddChars(sb, indent);
+	public static String toString(List<Object> jsonArray, int indent) {
+		return toString(jsonArray, indent, JsonSerializationContext.get());
+	}
+
+	/**
+	 * Serializes the given JSON list using the buffers of the given context.
+	 * 
+	 * @param jsonArray
+	 * @param indent
+	 * @param context
+	 * @return the serialized JSON
+	 */
+	public static String toString(List<Object> jsonArray, int indent, JsonSerializationContext context) {
+		JsonCharOutput out = context.acquireCharOutput();
+		try {
+			write(jsonArray, indent, out);
+			return out.toString();
+		} finally {
+			context.release(out);
+		}
+	}
 
-		return sb.toString();
+	/**
+	 * Serializes the given JSON map to the writer. The output is passed on
+	 * in chunks while it is produced, the writer is flushed but not closed.
+	 * 
+	 * @param jsonMap
+	 * @param indent
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeTo(Map<String, Object> jsonMap, int indent, Writer writer) throws IOException {
+		JsonCharOutput out = new JsonCharOutput(writer);
+		try {
+			write(jsonMap, indent, out);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
 	}
 
-	public static String toString(List<Object> jsonArray) {
-		StringBuffer sb = new StringBuffer();
+	/**
+	 * Serializes the given JSON list to the writer. The output is passed on
+	 * in chunks while it is produced, the writer is flushed but not closed.
+	 * 
+	 * @param jsonArray
+	 * @param indent
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeTo(List<Object> jsonArray, int indent, Writer writer) throws IOException {
+		JsonCharOutput out = new JsonCharOutput(writer);
+		try {
+			write(jsonArray, indent, out);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
+	}
 
-		appendList(jsonArray, sb, 0, 0);
+	/**
+	 * Serializes the given JSON map directly to UTF-8 bytes.
+	 * 
+	 * @param jsonMap
+	 * @param indent
+	 * @return the UTF-8 encoded JSON
+	 */
+	public static byte[] toUtf8(Map<String, Object> jsonMap, int indent) {
+		return toUtf8(jsonMap, indent, JsonSerializationContext.get());
+	}
 
-		return sb.toString();
+	/**
+	 * Serializes the given JSON map directly to UTF-8 bytes using the buffers
+	 * of the given context.
+	 * 
+	 * @param jsonMap
+	 * @param indent
+	 * @param context
+	 * @return the UTF-8 encoded JSON
+	 */
+	public static byte[] toUtf8(Map<String, Object> jsonMap, int indent, JsonSerializationContext context) {
+		JsonUtf8Output out = context.acquireUtf8Output();
+		try {
+			write(jsonMap, indent, out);
+			return out.toByteArray();
+		} finally {
+			context.release(out);
+		}
 	}
 
-	public static String toString(List<Object> jsonArray, int indent) {
-		StringBuffer sb = new StringBuffer();
+	/**
+	 * Serializes the given JSON list directly to UTF-8 bytes.
+	 * 
+	 * @param jsonArray
+	 * @param indent
+	 * @return the UTF-8 encoded JSON
+	 */
+	public static byte[] toUtf8(List<Object> jsonArray, int indent) {
+		return toUtf8(jsonArray, indent, JsonSerializationContext.get());
+	}
 
-		appendList(jsonArray, sb, indent, 0);
+	/**
+	 * Serializes the given JSON list directly to UTF-8 bytes using the buffers
+	 * of the given context.
+	 * 
+	 * @param jsonArray
+	 * @param indent
+	 * @param context
+	 * @return the UTF-8 encoded JSON
+	 */
+	public static byte[] toUtf8(List<Object> jsonArray, int indent, JsonSerializationContext context) {
+		JsonUtf8Output out = context.acquireUtf8Output();
+		try {
+			write(jsonArray, indent, out);
+			return out.toByteArray();
+		} finally {
+			context.release(out);
+		}
+	}
 
-		return sb.toString();
+	/**
+	 * Serializes the given JSON map as UTF-8 to the stream. The output is
+	 * passed on in chunks while it is produced, the stream is flushed but not
+	 * closed.
+	 * 
+	 * @param jsonMap
+	 * @param indent
+	 * @param stream
+	 * @throws IOException
+	 */
+	public static void writeTo(Map<String, Object> jsonMap, int indent, OutputStream stream) throws IOException {
+		JsonUtf8Output out = new JsonUtf8Output(stream);
+		try {
+			write(jsonMap, indent, out);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
 	}
 
-	private static void appendJsonMap(Map<String, Object> jsonMap, StringBuffer sb, int indent, int level) {
+	/**
+	 * Serializes the given JSON list as UTF-8 to the stream. The output is
+	 * passed on in chunks while it is produced, the stream is flushed but not
+	 * closed.
+	 * 
+	 * @param jsonArray
+	 * @param indent
+	 * @param stream
+	 * @throws IOException
+	 */
+	public static void writeTo(List<Object> jsonArray, int indent, OutputStream stream) throws IOException {
+		JsonUtf8Output out = new JsonUtf8Output(stream);
+		try {
+			write(jsonArray, indent, out);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.flush();
+	}
+
+	public static void write(Map<String, Object> jsonMap, int indent, JsonOutput out) {
+		appendJsonMap(jsonMap, out, indent, 0);
+	}
+
+	public static void write(List<Object> jsonArray, int indent, JsonOutput out) {
+		appendList(jsonArray, out, indent, 0);
+	}
+
+	/*
+	 * Separators are written in a single pass: every container writes a ','
+	 * (and a linefeed when indenting) in front of each but its first element.
+	 * Null values are skipped together with their key.
+	 */
+
+	private static void appendJsonMap(Map<String, Object> jsonMap, JsonOutput out, int indent, int level) {
 		// for the use case that value is already a jsonld string
-	    	// hack for dereferenciation
-	    	String preSerializedMap = getPreSerializedValue(jsonMap);
-	    	if (preSerializedMap != null) {
-			sb.append(preSerializedMap);
-			sb.append(',');
+		// hack for dereferenciation
+		if (appendPreSerializedValue(jsonMap, out)) {
+			return;
+		}
+
+		out.append('{');
+		boolean first = true;
+		if (jsonMap instanceof JsonLdNode) {
+			// written by index, without entry objects
+			JsonLdNode node = (JsonLdNode) jsonMap;
+			for (int i = 0; i < node.size(); i++) {
+				if (appendMember(node.keyAt(i), node.valueAt(i), node.getPlan(), first, out, indent, level)) {
+					first = false;
+				}
+			}
 		} else {
-			sb.append('{');
-			level = increaseIndentationLevel(sb, indent, level);
-	
-			for (String key : jsonMap.keySet()) {
-				appendIndentation(sb, indent, level);
-				appendQuoted(key, sb);
-				if (indent == 0) {
-					sb.append(':');
-				} else {
-					sb.append(": ");
+			for (Map.Entry<String, Object> entry : jsonMap.entrySet()) {
+				if (appendMember(entry.getKey(), entry.getValue(), null, first, out, indent, level)) {
+					first = false;
 				}
-	
-				boolean isContainerProp = isContainerProp(key);
-	
-				appendValueOf(jsonMap.get(key), sb, indent, level, isContainerProp);
 			}
-			removeOddChars(sb, indent);
-			level = decreaseIndentationLevel(sb, indent, level);
-			appendIndentation(sb, indent, level);
-			sb.append('}').append(',');
 		}
-		appendLinefeed(sb, indent);
+		if (!first) {
+			// the members were written one level deeper
+			appendLinefeed(out, indent);
+			appendIndentation(out, indent, level);
+		}
+		out.append('}');
 	}
 
-	private static String getPreSerializedValue(Map<String, Object> jsonMap) {
-	    String valuePropName = "value";
-	    if(!jsonMap.containsKey(valuePropName)) {
-		return null;
-	    }
-	    //check if {XXX}
-	    String trimedValue = jsonMap.get(valuePropName).toString().trim();
-	    if(trimedValue.startsWith("{") && trimedValue.endsWith("}")){
-		return trimedValue;
-	    }
-	    
-	    return null;
+	/**
+	 * Appends a key and its value, unless the value is <code>null</code>.
+	 *
+	 * @param plan
+	 *            the plan holding the encoded key, may be <code>null</code>.
+	 * @param level
+	 *            the level of the enclosing map
+	 * @return <code>true</code> if the member has been written.
+	 */
+	private static boolean appendMember(String key, Object value, JsonLdSerializationPlan plan, boolean first,
+			JsonOutput out, int indent, int level) {
+		if (value == null) {
+			return false;
+		}
+		if (first) {
+			appendLinefeed(out, indent);
+		} else {
+			appendSeparator(out, indent);
+		}
+
+		int memberLevel = indent > 0 ? level + 1 : level;
+		appendIndentation(out, indent, memberLevel);
+		JsonLdSerializationPlan.EncodedKey encodedKey = plan != null ? plan.getEncodedKey(key) : null;
+		if (encodedKey != null) {
+			out.appendEncoded(encodedKey.json, encodedKey.utf8);
+		} else {
+			out.appendQuoted(key);
+		}
+		if (indent == 0) {
+			out.append(':');
+		} else {
+			out.append(": ");
+		}
+
+		appendValueOf(value, out, indent, memberLevel, isContainerProp(key));
+		return true;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static void appendValueOf(Object object, StringBuffer sb, int indent, int level, boolean isContainer) {
-		if (object == null) {
-			return;
+	/**
+	 * Maps with a String "value" that contains a JSON object are written as
+	 * that object. Use {@link JsonLdRawJson} values for new code, they are
+	 * written without inspecting their content.
+	 *
+	 * @return <code>true</code> if the map has been written.
+	 */
+	private static boolean appendPreSerializedValue(Map<String, Object> jsonMap, JsonOutput out) {
+		Object value = jsonMap.get(JsonLdCommon._VALUE);
+		if (!(value instanceof String)) {
+			return false;
+		}
+		//check if {XXX}
+		String str = (String) value;
+		int start = 0;
+		int end = str.length();
+		while (start < end && str.charAt(start) <= ' ') {
+			start++;
 		}
+		while (end > start && str.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (end - start < 2 || str.charAt(start) != '{' || str.charAt(end - 1) != '}') {
+			return false;
+		}
+		out.append(str, start, end);
+		return true;
+	}
 
+	@SuppressWarnings("unchecked")
+	private static void appendValueOf(Object object, JsonOutput out, int indent, int level, boolean isContainer) {
 		if (object instanceof String) {
 			String strValue = (String) object;
-			appendQuoted(strValue, sb);
-			sb.append(',');
-			appendLinefeed(sb, indent);
+			out.appendQuoted(strValue);
+		} else if (object instanceof JsonLdRawJson) {
+			((JsonLdRawJson) object).appendTo(out);
 		} else if (object instanceof Map<?, ?>) {
 			Map<String, Object> mapValue = (Map<String, Object>) object;
-			appendJsonMap(mapValue, sb, indent, level);
+			appendJsonMap(mapValue, out, indent, level);
 		} else if (object instanceof List<?>) {
 			List<Object> lstValue = (List<Object>) object;
 			// the list has more or no elements
-			appendList(lstValue, sb, indent, level);
-			sb.append(',');
-			appendLinefeed(sb, indent);
+			appendList(lstValue, out, indent, level);
 		} else if (object instanceof String[]) {
 			// keep consistent with List
 			String[] array = (String[]) object;
-			if (array.length == 1 && !isContainer) {
+			if (array.length == 1 && !isContainer && array[0] != null) {
 				// if the list contains only 1 element, we can serialize it as a
 				// single value
-				appendValueOf(array[0], sb, indent, level, isContainer);
+				appendValueOf(array[0], out, indent, level, isContainer);
 			} else {
 				// the list has more or no elements
-				appendStringArray(array, sb, indent, level);
-				sb.append(',');
-				appendLinefeed(sb, indent);
+				appendStringArray(array, out, indent, level);
 			}
 		} else if (object instanceof JSONArray) {
 			JSONArray ja = (JSONArray) object;
@@ -164,128 +383,91 @@ public final class JsonSerializer {
 			} catch (JSONException e) {
 				// ignore
 			}
-			appendValueOf(jsonList, sb, indent, level, isContainer);
+			appendValueOf(jsonList, out, indent, level, isContainer);
 
 		} else {
-			sb.append(object.toString());
-			sb.append(',');
-			appendLinefeed(sb, indent);
+			out.append(object.toString());
 		}
 	}
 
-	private static void appendList(List<Object> jsonArray, StringBuffer sb, int indent, int level) {
-		sb.append('[');
-		level = increaseIndentationLevel(sb, indent, level);
+	private static void appendList(List<Object> jsonArray, JsonOutput out, int indent, int level) {
+		out.append('[');
+		boolean first = true;
 		for (Object object : jsonArray) {
-			appendIndentation(sb, indent, level);
+			if (object == null) {
+				continue;
+			}
+			if (first) {
+				level = increaseIndentationLevel(out, indent, level);
+				first = false;
+			} else {
+				appendSeparator(out, indent);
+			}
+			appendIndentation(out, indent, level);
 			// array serialization doesn't use the isContainerProp() construct.
 			// They are individually set to minimized/verbose serialization
-			appendValueOf(object, sb, indent, level, false);
+			appendValueOf(object, out, indent, level, false);
+		}
+		if (!first) {
+			level = decreaseIndentationLevel(out, indent, level);
+			appendIndentation(out, indent, level);
 		}
-		removeOddChars(sb, indent);
-		level = decreaseIndentationLevel(sb, indent, level);
-		appendIndentation(sb, indent, level);
-		sb.append(']');
+		out.append(']');
 	}
 
-	private static void appendStringArray(String[] jsonArray, StringBuffer sb, int indent, int level) {
-		sb.append('[');
-		level = increaseIndentationLevel(sb, indent, level);
+	private static void appendStringArray(String[] jsonArray, JsonOutput out, int indent, int level) {
+		out.append('[');
+		boolean first = true;
 		for (String object : jsonArray) {
-			appendIndentation(sb, indent, level);
-			// array serialization doesn't use the isContainerProp() construct.
-			// They are individually set to minimized/verbose serialization
-			appendValueOf(object, sb, indent, level, false);
+			if (object == null) {
+				continue;
+			}
+			if (first) {
+				level = increaseIndentationLevel(out, indent, level);
+				first = false;
+			} else {
+				appendSeparator(out, indent);
+			}
+			appendIndentation(out, indent, level);
+			out.appendQuoted(object);
 		}
-		removeOddChars(sb, indent);
-		level = decreaseIndentationLevel(sb, indent, level);
-		appendIndentation(sb, indent, level);
-		sb.append(']');
+		if (!first) {
+			level = decreaseIndentationLevel(out, indent, level);
+			appendIndentation(out, indent, level);
+		}
+		out.append(']');
 	}
 
-	private static void appendQuoted(String string, StringBuffer sb) {
-		sb.append('"');
-		for (int i = 0; i < string.length(); i++) {
-			char ch = string.charAt(i);
-			switch (ch) {
-			case '\\':
-			case '"':
-				sb.append('\\');
-				sb.append(ch);
-				break;
-			// case '/':
-			// sb.append('\\');
-			// sb.append(ch);
-			// break;
-			case '\b':
-				sb.append("\\b");
-				break;
-			case '\t':
-				sb.append("\\t");
-				break;
-			case '\n':
-				sb.append("\\n");
-				break;
-			case '\f':
-				sb.append("\\f");
-				break;
-			case '\r':
-				sb.append("\\r");
-				break;
-			default:
-				if (ch < ' ') {
-					String str = "000" + Integer.toHexString(ch);
-					sb.append("\\u").append(str.substring(str.length() - 4));
-				} else {
-					sb.append(ch);
-				}
-			}
-		}
-		sb.append('"');
+	private static void appendSeparator(JsonOutput out, int indent) {
+		out.append(',');
+		appendLinefeed(out, indent);
 	}
 
-	private static void appendIndentation(StringBuffer sb, int indent, int level) {
+	private static void appendIndentation(JsonOutput out, int indent, int level) {
 		for (int i = 0; i < (indent * level); i++) {
-			sb.append(' ');
+			out.append(' ');
 		}
 	}
 
-	private static int decreaseIndentationLevel(StringBuffer sb, int indent, int level) {
+	private static int decreaseIndentationLevel(JsonOutput out, int indent, int level) {
 		if (indent > 0) {
-			appendLinefeed(sb, indent);
+			appendLinefeed(out, indent);
 			level--;
 		}
 		return level;
 	}
 
-	private static int increaseIndentationLevel(StringBuffer sb, int indent, int level) {
+	private static int increaseIndentationLevel(JsonOutput out, int indent, int level) {
 		if (indent > 0) {
-			appendLinefeed(sb, indent);
+			appendLinefeed(out, indent);
 			level++;
 		}
 		return level;
 	}
 
-	private static void appendLinefeed(StringBuffer sb, int indent) {
+	private static void appendLinefeed(JsonOutput out, int indent) {
 		if (indent > 0) {
-			sb.append('\n');
-		}
-	}
-
-	/**
-	 * During the serialization there are added ',' and line breaks '\n' by
-	 * default that need to be deleted when not needed, e.g. at the end of a
-	 * list.
-	 * 
-	 * @param sb
-	 * @param indent
-	 */
-	private static void removeOddChars(StringBuffer sb, int indent) {
-		if (sb.length() > 2) {
-			sb.deleteCharAt(sb.length() - 1);
-			if (indent > 0) {
-				sb.deleteCharAt(sb.length() - 1);
-			}
+			out.append('\n');
 		}
 	}
 
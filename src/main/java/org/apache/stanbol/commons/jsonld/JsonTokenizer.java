@@ -0,0 +1,187 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+
+/**
+ * Source of the tokens the {@link JsonLdStreamParser} builds a {@link JsonLd}
+ * from. Implementations read strict JSON (RFC 8259) incrementally and check
+ * the structure of the document, so the consumer can rely on names and
+ * values being properly nested.
+ *
+ * <p>
+ * The text of a {@link #NAME}, {@link #STRING} or {@link #NUMBER} token is
+ * only valid until the next call of {@link #next()}.
+ */
+abstract class JsonTokenizer {
+
+	static final int END = 0;
+
+	static final int START_OBJECT = 1;
+
+	static final int END_OBJECT = 2;
+
+	static final int START_ARRAY = 3;
+
+	static final int END_ARRAY = 4;
+
+	static final int NAME = 5;
+
+	static final int STRING = 6;
+
+	static final int NUMBER = 7;
+
+	static final int TRUE = 8;
+
+	static final int FALSE = 9;
+
+	static final int NULL = 10;
+
+	/**
+	 * Reads the next token.
+	 *
+	 * @return the type of the token, {@link #END} after the last token of the
+	 *         document.
+	 * @throws IOException
+	 * @throws JsonParseException
+	 *             if the input is no well-formed JSON.
+	 */
+	abstract int next() throws IOException, JsonParseException;
+
+	/**
+	 * @return the text of the current {@link #NAME} or {@link #STRING} token.
+	 */
+	abstract String getString();
+
+	/**
+	 * @param symbols
+	 * @return the canonical instance of the text of the current {@link #NAME}
+	 *         or {@link #STRING} token, see {@link JsonLdSymbolTable}.
+	 */
+	String getString(JsonLdSymbolTable symbols) {
+		return symbols.intern(getString());
+	}
+
+	/**
+	 * @return the value of the current {@link #NUMBER} token, see
+	 *         {@link #toNumber(String)}.
+	 * @throws JsonParseException
+	 *             if the number is not finite.
+	 */
+	abstract Number getNumber() throws JsonParseException;
+
+	/**
+	 * @return the number of characters or bytes read so far, used for error
+	 *         messages.
+	 */
+	abstract long getOffset();
+
+	JsonParseException error(String message) {
+		return new JsonParseException(message + " at offset " + getOffset());
+	}
+
+	/**
+	 * Converts a JSON number to the types Jettison uses, so that documents
+	 * parsed from a stream hold the same values as the ones parsed from a
+	 * String: Integer if the number is integral and fits, otherwise Long and
+	 * Double for all others.
+	 *
+	 * @param number
+	 *            well-formed JSON number.
+	 * @return the value or <code>null</code> if it is not finite.
+	 */
+	static Number toNumber(String number) {
+		int len = number.length();
+		boolean integral = true;
+		for (int i = 0; i < len && integral; i++) {
+			char ch = number.charAt(i);
+			integral = ch != '.' && ch != 'e' && ch != 'E';
+		}
+		if (integral) {
+			if (len <= 18) {
+				long value = 0;
+				for (int i = number.charAt(0) == '-' ? 1 : 0; i < len; i++) {
+					value = value * 10 + number.charAt(i) - '0';
+				}
+				return toIntegral(number.charAt(0) == '-' ? -value : value);
+			}
+			try {
+				return toIntegral(Long.parseLong(number));
+			} catch (NumberFormatException e) {
+				// too large for a long, same as Jettison
+			}
+		}
+		double value = Double.parseDouble(number);
+		return Double.isInfinite(value) ? null : Double.valueOf(value);
+	}
+
+	/**
+	 * @return whether the characters match the JSON number grammar
+	 *         <code>-?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?</code>.
+	 */
+	static boolean isNumber(char[] chars, int length) {
+		int i = 0;
+		if (i < length && chars[i] == '-') {
+			i++;
+		}
+		if (i < length && chars[i] == '0') {
+			i++;
+		} else {
+			int digits = i;
+			i = skipDigits(chars, i, length);
+			if (i == digits) {
+				return false;
+			}
+		}
+		if (i < length && chars[i] == '.') {
+			int digits = ++i;
+			i = skipDigits(chars, i, length);
+			if (i == digits) {
+				return false;
+			}
+		}
+		if (i < length && (chars[i] == 'e' || chars[i] == 'E')) {
+			i++;
+			if (i < length && (chars[i] == '+' || chars[i] == '-')) {
+				i++;
+			}
+			int digits = i;
+			i = skipDigits(chars, i, length);
+			if (i == digits) {
+				return false;
+			}
+		}
+		return i == length;
+	}
+
+	private static int skipDigits(char[] chars, int i, int length) {
+		while (i < length && chars[i] >= '0' && chars[i] <= '9') {
+			i++;
+		}
+		return i;
+	}
+
+	private static Number toIntegral(long value) {
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+}
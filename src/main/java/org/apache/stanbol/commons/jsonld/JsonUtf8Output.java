@@ -0,0 +1,272 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link JsonOutput} encoding the serialized JSON directly to UTF-8 bytes.
+ *
+ * <p>
+ * Without an {@link OutputStream} the bytes are collected in a growing array
+ * that is available through {@link #toByteArray()} or {@link #toByteBuffer()}.
+ * With an OutputStream the array has a fixed size and is passed on to the
+ * stream whenever it is full.
+ *
+ * <p>
+ * Unpaired surrogates are encoded as '?' like the UTF-8 encoder of the JDK
+ * does.
+ */
+public class JsonUtf8Output extends JsonOutput {
+
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * Longest byte sequence written by a single step of the encoder, a
+	 * "\\uXXXX" escape.
+	 */
+	private static final int MAX_STEP = 6;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final OutputStream stream;
+
+	private byte[] buf;
+
+	private int count;
+
+	private long flushed;
+
+	/**
+	 * High surrogate of a pair split across two {@link #append(char)} calls.
+	 */
+	private char pendingHighSurrogate;
+
+	/**
+	 * Creates an output collecting all bytes in memory.
+	 */
+	public JsonUtf8Output() {
+		this.stream = null;
+		this.buf = new byte[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates an output passing the bytes on to the given stream.
+	 *
+	 * @param stream
+	 */
+	public JsonUtf8Output(OutputStream stream) {
+		this(stream, DEFAULT_BUFFER_SIZE);
+	}
+
+	JsonUtf8Output(OutputStream stream, int bufferSize) {
+		this.stream = stream;
+		this.buf = new byte[Math.max(bufferSize, MAX_STEP)];
+	}
+
+	@Override
+	public void append(char ch) {
+		if (pendingHighSurrogate != 0) {
+			char high = pendingHighSurrogate;
+			pendingHighSurrogate = 0;
+			if (Character.isLowSurrogate(ch)) {
+				ensure(4);
+				count = encodeCodePoint(Character.toCodePoint(high, ch), buf, count);
+				return;
+			}
+			ensure(1);
+			buf[count++] = '?';
+		}
+		if (ch < 0x80) {
+			if (count == buf.length) {
+				makeRoom(1);
+			}
+			buf[count++] = (byte) ch;
+		} else if (Character.isHighSurrogate(ch)) {
+			pendingHighSurrogate = ch;
+		} else {
+			ensure(3);
+			count = encodeChar(ch, buf, count);
+		}
+	}
+
+	@Override
+	public void append(String str) {
+		append(str, 0, str.length());
+	}
+
+	@Override
+	public void append(String str, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char ch = str.charAt(i);
+			if (ch < 0x80 && pendingHighSurrogate == 0) {
+				if (count == buf.length) {
+					makeRoom(1);
+				}
+				buf[count++] = (byte) ch;
+			} else {
+				append(ch);
+			}
+		}
+	}
+
+	@Override
+	void appendEncoded(String json, byte[] utf8) {
+		if (pendingHighSurrogate != 0 || utf8.length > buf.length - count) {
+			super.appendEncoded(json, utf8);
+			return;
+		}
+		System.arraycopy(utf8, 0, buf, count, utf8.length);
+		count += utf8.length;
+	}
+
+	@Override
+	public void appendQuoted(String string) {
+		append('"');
+		int len = string.length();
+		byte[] bytes = buf;
+		int pos = count;
+		for (int i = 0; i < len; i++) {
+			if (bytes.length - pos < MAX_STEP) {
+				count = pos;
+				makeRoom(MAX_STEP);
+				bytes = buf;
+				pos = count;
+			}
+			char ch = string.charAt(i);
+			if (ch < 0x80) {
+				byte escape = JsonEscaping.ESCAPES[ch];
+				if (escape == 0) {
+					bytes[pos++] = (byte) ch;
+				} else {
+					bytes[pos++] = '\\';
+					bytes[pos++] = escape;
+					if (escape == 'u') {
+						bytes[pos++] = '0';
+						bytes[pos++] = '0';
+						bytes[pos++] = (byte) JsonEscaping.HEX[(ch >> 4) & 0xf];
+						bytes[pos++] = (byte) JsonEscaping.HEX[ch & 0xf];
+					}
+				}
+			} else if (!Character.isSurrogate(ch)) {
+				pos = encodeChar(ch, bytes, pos);
+			} else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(string.charAt(i + 1))) {
+				pos = encodeCodePoint(Character.toCodePoint(ch, string.charAt(++i)), bytes, pos);
+			} else {
+				bytes[pos++] = '?';
+			}
+		}
+		count = pos;
+		append('"');
+	}
+
+	static int encodeChar(char ch, byte[] buf, int pos) {
+		if (ch < 0x800) {
+			buf[pos++] = (byte) (0xc0 | (ch >> 6));
+		} else {
+			buf[pos++] = (byte) (0xe0 | (ch >> 12));
+			buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+		}
+		buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+		return pos;
+	}
+
+	static int encodeCodePoint(int cp, byte[] buf, int pos) {
+		buf[pos++] = (byte) (0xf0 | (cp >> 18));
+		buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+		buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+		buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+		return pos;
+	}
+
+	@Override
+	public long length() {
+		return flushed + count;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (pendingHighSurrogate != 0) {
+			pendingHighSurrogate = 0;
+			ensure(1);
+			buf[count++] = '?';
+		}
+		if (stream != null) {
+			stream.write(buf, 0, count);
+			flushed += count;
+			count = 0;
+			stream.flush();
+		}
+	}
+
+	private void ensure(int required) {
+		if (count + required > buf.length) {
+			makeRoom(required);
+		}
+	}
+
+	private void makeRoom(int required) {
+		if (stream == null) {
+			int newLength = Math.max(buf.length * 2, count + required);
+			buf = Arrays.copyOf(buf, newLength);
+		} else {
+			try {
+				stream.write(buf, 0, count);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			flushed += count;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Discards the collected bytes so that the output can be reused. The array
+	 * is dropped if it has grown beyond the given capacity.
+	 *
+	 * @param maxRetainedCapacity
+	 */
+	void reset(int maxRetainedCapacity) {
+		count = 0;
+		flushed = 0;
+		pendingHighSurrogate = 0;
+		if (buf.length > maxRetainedCapacity) {
+			buf = new byte[Math.min(INITIAL_CAPACITY, maxRetainedCapacity)];
+		}
+	}
+
+	/**
+	 * @return a copy of the collected bytes. Only meaningful for outputs
+	 *         created without a stream.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, count);
+	}
+
+	/**
+	 * @return the collected bytes wrapped without copying. The buffer is only
+	 *         valid until the next append. Only meaningful for outputs created
+	 *         without a stream.
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(buf, 0, count);
+	}
+}
@@ -0,0 +1,534 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+
+/**
+ * {@link JsonTokenizer} decoding UTF-8 bytes in place, either from a single
+ * {@link ByteBuffer} or from a file that is mapped into memory in windows of a
+ * fixed size. A window is mapped when the previous one has been read, so the
+ * memory used does not depend on the size of the file. Tokens may span
+ * windows, their text is decoded into a separate text buffer.
+ *
+ * <p>
+ * Strings of ASCII characters without escapes, which most names and IRIs
+ * are, are not decoded while they are read: only their position in the
+ * buffer is kept, and {@link #getString()} creates the String from the
+ * bytes, or {@link #getString(JsonLdSymbolTable)} looks it up without
+ * creating one. Strings that are never asked for are only scanned.
+ *
+ * <p>
+ * The tokenizer can read a sequence of JSON values separated by whitespace,
+ * e.g. newline delimited JSON, see {@link #JsonUtf8Tokenizer(FileChannel, int, boolean)}.
+ * Malformed UTF-8 is reported as {@link JsonParseException}.
+ */
+final class JsonUtf8Tokenizer extends JsonTokenizer {
+
+	/**
+	 * Default size of the windows a file is mapped in.
+	 */
+	static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static final byte IN_OBJECT = 1;
+
+	private static final byte IN_ARRAY = 2;
+
+	private static final int EXPECT_VALUE = 0;
+
+	private static final int EXPECT_FIRST_VALUE = 1;
+
+	private static final int EXPECT_FIRST_NAME = 2;
+
+	private static final int EXPECT_SEPARATOR = 3;
+
+	/**
+	 * The mapped file, <code>null</code> if the tokenizer reads a single
+	 * buffer.
+	 */
+	private final FileChannel channel;
+
+	private final int windowSize;
+
+	private final boolean sequence;
+
+	private final long size;
+
+	private ByteBuffer buf;
+
+	private int pos;
+
+	private int limit;
+
+	/**
+	 * Number of bytes before the current window.
+	 */
+	private long consumed;
+
+	private byte[] stack = new byte[16];
+
+	private int depth;
+
+	private int state = EXPECT_VALUE;
+
+	private char[] text = new char[64];
+
+	private int tokenLength;
+
+	/**
+	 * Position of the current token in {@link #buf} if it is an ASCII string
+	 * that has not been copied into {@link #text}, otherwise -1.
+	 */
+	private int asciiStart = -1;
+
+	/**
+	 * Reads the remaining bytes of the given buffer, which hold a single JSON
+	 * value.
+	 *
+	 * @param buffer
+	 */
+	JsonUtf8Tokenizer(ByteBuffer buffer) {
+		this.channel = null;
+		this.windowSize = 0;
+		this.sequence = false;
+		this.size = buffer.remaining();
+		this.buf = buffer;
+		this.pos = buffer.position();
+		this.limit = buffer.limit();
+		this.consumed = -pos;
+	}
+
+	/**
+	 * Reads a file from its current position, mapping it in windows of the
+	 * given size.
+	 *
+	 * @param channel
+	 * @param windowSize
+	 *            the size of the windows in bytes.
+	 * @param sequence
+	 *            whether the file holds a sequence of JSON values separated by
+	 *            whitespace instead of a single value.
+	 * @throws IOException
+	 */
+	JsonUtf8Tokenizer(FileChannel channel, int windowSize, boolean sequence) throws IOException {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("windowSize must be positive");
+		}
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.sequence = sequence;
+		this.size = channel.size();
+		this.consumed = channel.position();
+	}
+
+	@Override
+	int next() throws IOException, JsonParseException {
+		int ch = skipWhitespace();
+		switch (state) {
+		case EXPECT_FIRST_NAME:
+			if (ch == '}') {
+				return endContainer(END_OBJECT);
+			}
+			return readName(ch);
+		case EXPECT_FIRST_VALUE:
+			if (ch == ']') {
+				return endContainer(END_ARRAY);
+			}
+			return readValue(ch);
+		case EXPECT_SEPARATOR:
+			if (depth == 0) {
+				if (ch < 0) {
+					return END;
+				}
+				if (sequence) {
+					return readValue(ch);
+				}
+				throw error("Unexpected character '" + (char) ch + "' after the end of the document");
+			}
+			boolean inObject = stack[depth - 1] == IN_OBJECT;
+			if (ch == ',') {
+				pos++;
+				return inObject ? readName(skipWhitespace()) : readValue(skipWhitespace());
+			}
+			if (ch == (inObject ? '}' : ']')) {
+				return endContainer(inObject ? END_OBJECT : END_ARRAY);
+			}
+			throw unexpected(ch, inObject ? "',' or '}'" : "',' or ']'");
+		default:
+			if (ch < 0 && sequence) {
+				return END;
+			}
+			return readValue(ch);
+		}
+	}
+
+	@Override
+	String getString() {
+		if (asciiStart >= 0) {
+			if (buf.hasArray()) {
+				return new String(buf.array(), buf.arrayOffset() + asciiStart, tokenLength,
+						StandardCharsets.ISO_8859_1);
+			}
+			copyAscii();
+		}
+		return new String(text, 0, tokenLength);
+	}
+
+	@Override
+	String getString(JsonLdSymbolTable symbols) {
+		if (asciiStart >= 0) {
+			if (buf.hasArray()) {
+				return symbols.intern(buf.array(), buf.arrayOffset() + asciiStart, tokenLength);
+			}
+			copyAscii();
+		}
+		return symbols.intern(text, 0, tokenLength);
+	}
+
+	/**
+	 * Copies the current ASCII string from the buffer into the text buffer.
+	 */
+	private void copyAscii() {
+		if (tokenLength > text.length) {
+			text = new char[Math.max(tokenLength, text.length * 2)];
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			text[i] = (char) buf.get(asciiStart + i);
+		}
+		asciiStart = -1;
+	}
+
+	@Override
+	Number getNumber() throws JsonParseException {
+		Number number = toNumber(getString());
+		if (number == null) {
+			throw error("JSON does not allow non-finite numbers");
+		}
+		return number;
+	}
+
+	@Override
+	long getOffset() {
+		return consumed + pos;
+	}
+
+	private int readName(int ch) throws IOException, JsonParseException {
+		if (ch != '"') {
+			throw unexpected(ch, "a name");
+		}
+		pos++;
+		readString();
+		ch = skipWhitespace();
+		if (ch != ':') {
+			throw unexpected(ch, "':'");
+		}
+		pos++;
+		state = EXPECT_VALUE;
+		return NAME;
+	}
+
+	private int readValue(int ch) throws IOException, JsonParseException {
+		switch (ch) {
+		case '{':
+			pos++;
+			push(IN_OBJECT);
+			state = EXPECT_FIRST_NAME;
+			return START_OBJECT;
+		case '[':
+			pos++;
+			push(IN_ARRAY);
+			state = EXPECT_FIRST_VALUE;
+			return START_ARRAY;
+		case '"':
+			pos++;
+			readString();
+			state = EXPECT_SEPARATOR;
+			return STRING;
+		case 't':
+			readLiteral("true");
+			state = EXPECT_SEPARATOR;
+			return TRUE;
+		case 'f':
+			readLiteral("false");
+			state = EXPECT_SEPARATOR;
+			return FALSE;
+		case 'n':
+			readLiteral("null");
+			state = EXPECT_SEPARATOR;
+			return NULL;
+		default:
+			if (ch == '-' || (ch >= '0' && ch <= '9')) {
+				readNumber();
+				state = EXPECT_SEPARATOR;
+				return NUMBER;
+			}
+			throw unexpected(ch, "a value");
+		}
+	}
+
+	private void push(byte container) {
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+		}
+		stack[depth++] = container;
+	}
+
+	private int endContainer(int token) {
+		pos++;
+		depth--;
+		state = EXPECT_SEPARATOR;
+		return token;
+	}
+
+	/**
+	 * Reads a string up to the closing quote, the opening quote has already
+	 * been read. A string of ASCII characters without escapes within the
+	 * current window is only scanned, see {@link #asciiStart}. Otherwise the
+	 * bytes are decoded into the text buffer, runs of ASCII characters are
+	 * copied in a tight loop.
+	 */
+	private void readString() throws IOException, JsonParseException {
+		int end = pos;
+		byte last = 0;
+		while (end < limit && (last = buf.get(end)) >= ' ' && last != '"' && last != '\\') {
+			end++;
+		}
+		if (end < limit && last == '"') {
+			asciiStart = pos;
+			tokenLength = end - pos;
+			pos = end + 1;
+			return;
+		}
+		asciiStart = -1;
+		tokenLength = 0;
+		for (;;) {
+			int p = pos;
+			int n = tokenLength;
+			char[] chars = text;
+			byte b = 0;
+			while (p < limit && (b = buf.get(p)) >= ' ' && b != '"' && b != '\\') {
+				if (n == chars.length) {
+					chars = text = Arrays.copyOf(chars, n * 2);
+				}
+				chars[n++] = (char) b;
+				p++;
+			}
+			tokenLength = n;
+			pos = p;
+			if (p == limit) {
+				if (!fill()) {
+					throw error("Unterminated string");
+				}
+				continue;
+			}
+			pos++;
+			if (b == '"') {
+				return;
+			}
+			if (b == '\\') {
+				appendEscaped();
+			} else if (b < 0) {
+				appendUtf8(b & 0xff);
+			} else {
+				pos--;
+				throw error("Unescaped control character in string");
+			}
+		}
+	}
+
+	private void appendEscaped() throws IOException, JsonParseException {
+		int ch = read();
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			appendText((char) ch);
+			break;
+		case 'b':
+			appendText('\b');
+			break;
+		case 'f':
+			appendText('\f');
+			break;
+		case 'n':
+			appendText('\n');
+			break;
+		case 'r':
+			appendText('\r');
+			break;
+		case 't':
+			appendText('\t');
+			break;
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) {
+					throw error("Invalid unicode escape");
+				}
+				value = (value << 4) | digit;
+			}
+			appendText((char) value);
+			break;
+		default:
+			throw error("Invalid escape sequence");
+		}
+	}
+
+	/**
+	 * Decodes a multi-byte UTF-8 sequence, rejecting overlong forms,
+	 * surrogates and code points beyond U+10FFFF.
+	 *
+	 * @param lead
+	 *            the first byte of the sequence, already read.
+	 */
+	private void appendUtf8(int lead) throws IOException, JsonParseException {
+		int count;
+		int codePoint;
+		if (lead >= 0xc2 && lead <= 0xdf) {
+			count = 1;
+			codePoint = lead & 0x1f;
+		} else if (lead >= 0xe0 && lead <= 0xef) {
+			count = 2;
+			codePoint = lead & 0x0f;
+		} else if (lead >= 0xf0 && lead <= 0xf4) {
+			count = 3;
+			codePoint = lead & 0x07;
+		} else {
+			throw error("Invalid UTF-8 byte");
+		}
+		for (int i = 0; i < count; i++) {
+			int b = read();
+			if ((b & 0xc0) != 0x80) {
+				throw error("Invalid UTF-8 sequence");
+			}
+			codePoint = (codePoint << 6) | (b & 0x3f);
+		}
+		if (count == 2 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint))
+				|| count == 3 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT)) {
+			throw error("Invalid UTF-8 sequence");
+		}
+		if (count == 3) {
+			appendText(Character.highSurrogate(codePoint));
+			appendText(Character.lowSurrogate(codePoint));
+		} else {
+			appendText((char) codePoint);
+		}
+	}
+
+	private void readNumber() throws IOException, JsonParseException {
+		asciiStart = -1;
+		tokenLength = 0;
+		for (;;) {
+			if (pos == limit && !fill()) {
+				break;
+			}
+			byte b = buf.get(pos);
+			if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+				appendText((char) b);
+				pos++;
+			} else {
+				break;
+			}
+		}
+		if (!isNumber(text, tokenLength)) {
+			throw error("Invalid number '" + getString() + "'");
+		}
+	}
+
+	private void readLiteral(String literal) throws IOException, JsonParseException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (read() != literal.charAt(i)) {
+				throw error("Invalid literal, expected '" + literal + "'");
+			}
+		}
+	}
+
+	private void appendText(char ch) {
+		if (tokenLength == text.length) {
+			text = Arrays.copyOf(text, tokenLength * 2);
+		}
+		text[tokenLength++] = ch;
+	}
+
+	/**
+	 * @return the next byte or -1 at the end of the input.
+	 */
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buf.get(pos++) & 0xff;
+	}
+
+	/**
+	 * Skips whitespace and returns the next byte without consuming it.
+	 *
+	 * @return the next byte or -1 at the end of the input.
+	 */
+	private int skipWhitespace() throws IOException {
+		for (;;) {
+			while (pos < limit) {
+				byte b = buf.get(pos);
+				if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+					return b & 0xff;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Maps the window following the current one.
+	 *
+	 * @return <code>false</code> at the end of the input.
+	 */
+	private boolean fill() throws IOException {
+		if (channel == null) {
+			return false;
+		}
+		long position = consumed + limit;
+		if (position >= size) {
+			return false;
+		}
+		if (asciiStart >= 0) {
+			// the string of the current token is in the window being unmapped
+			copyAscii();
+		}
+		consumed = position;
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+		pos = 0;
+		limit = buf.limit();
+		return true;
+	}
+
+	private JsonParseException unexpected(int ch, String expected) {
+		if (ch < 0) {
+			return error("Unexpected end of input, expected " + expected);
+		}
+		return error("Unexpected character '" + (char) ch + "', expected " + expected);
+	}
+}
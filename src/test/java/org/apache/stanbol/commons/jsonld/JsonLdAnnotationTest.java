@@ -15,9 +15,13 @@
 */
 package org.apache.stanbol.commons.jsonld;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -64,7 +68,64 @@ public class JsonLdAnnotationTest {
         assertEquals(expectedIndent, actualIndent);
     }
 
-	private JsonLd createJsonLdObject() {
+    @Test
+    public void testWriteToMatchesToString() throws Exception {
+        JsonLd jsonLd = createJsonLdObject();
+
+        StringWriter writer = new StringWriter();
+        jsonLd.writeTo(writer);
+        assertEquals(jsonLd.toString(), writer.toString());
+
+        writer = new StringWriter();
+        jsonLd.writeTo(writer, 4);
+        assertEquals(jsonLd.toString(4), writer.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonLd.writeTo(out, StandardCharsets.UTF_8, 4);
+        assertEquals(jsonLd.toString(4), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteToWithSmallBuffer() throws Exception {
+        JsonLd jsonLd = createJsonLdObject();
+
+        // force the buffer to be passed on to the writer many times
+        for (int indent = 0; indent <= 4; indent += 4) {
+            StringWriter writer = new StringWriter();
+            JsonCharOutput out = new JsonCharOutput(writer, 5);
+            JsonSerializer.write(jsonLd.getJsonMap(), indent, out);
+            out.flush();
+            assertEquals(jsonLd.toString(indent), writer.toString());
+        }
+    }
+
+    @Test
+    public void testUtf8MatchesToString() throws Exception {
+        JsonLd jsonLd = createJsonLdObject();
+        jsonLd.getResource("").putProperty("label", "Dr\u0103cule\u0219ti \u4e2d\u6587 \ud83d\ude00 \"q\" \\ \t\u0001");
+
+        assertArrayEquals(jsonLd.toString().getBytes(StandardCharsets.UTF_8), jsonLd.toUtf8Bytes());
+        assertArrayEquals(jsonLd.toString(4).getBytes(StandardCharsets.UTF_8), jsonLd.toUtf8Bytes(4));
+
+        for (int indent = 0; indent <= 4; indent += 4) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            JsonUtf8Output out = new JsonUtf8Output(stream, 5);
+            JsonSerializer.write(jsonLd.getJsonMap(), indent, out);
+            out.flush();
+            assertArrayEquals(jsonLd.toString(indent).getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+        }
+    }
+
+    @Test
+    public void testUtf8UnpairedSurrogate() {
+        Map<String, Object> json = new HashMap<String, Object>();
+        json.put("a", "x\ud800y\udc00z\ud800");
+
+        assertArrayEquals(JsonSerializer.toString(json).getBytes(StandardCharsets.UTF_8),
+                JsonSerializer.toUtf8(json, 0));
+    }
+
+	static JsonLd createJsonLdObject() {
 		JsonLd jsonLd = new JsonLd();
         jsonLd.setUseTypeCoercion(false);
         jsonLd.setUseCuries(true);
@@ -0,0 +1,178 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+import org.junit.Test;
+
+public class JsonLdBatchReaderTest {
+
+    private static String createRecord(int i) {
+        return "{\"@context\":{\"foaf\":\"http://xmlns.com/foaf/0.1/\"},\"@type\":\"foaf:Person\","
+                + "\"foaf:name\":\"P\u00e9rson\\n" + i + "\"}";
+    }
+
+    private static InputStream toStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Collects records and errors in the order they are delivered.
+     */
+    private static final class Events implements Consumer<JsonLd>, JsonLdBatchReader.ErrorHandler {
+
+        final List<String> events = new ArrayList<String>();
+
+        final List<Exception> exceptions = new ArrayList<Exception>();
+
+        public void accept(JsonLd jsonLd) {
+            events.add(jsonLd.toString());
+        }
+
+        public void error(long lineNumber, String line, Exception e) {
+            events.add("error " + lineNumber + ": " + line);
+            exceptions.add(e);
+        }
+    }
+
+    @Test
+    public void testRecordsAreDeliveredInInputOrder() throws Exception {
+        StringBuilder input = new StringBuilder();
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            input.append(createRecord(i)).append('\n');
+            expected.add(JsonLdParser.parse(createRecord(i)).toString());
+        }
+        byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+
+        // chunks smaller than a line as well as chunks of many lines
+        for (int chunkSize : new int[] {16, 1000, JsonLdBatchReader.DEFAULT_CHUNK_SIZE}) {
+            JsonLdBatchReader reader = new JsonLdBatchReader(3, chunkSize, 2);
+            Events events = new Events();
+            reader.read(new ByteArrayInputStream(bytes), events, events);
+
+            assertEquals(expected, events.events);
+            assertEquals(500, reader.getRecordCount());
+            assertEquals(0, reader.getErrorCount());
+            assertEquals(500, reader.getLineCount());
+            assertEquals(bytes.length, reader.getByteCount());
+            assertTrue(reader.getRecordsPerSecond() > 0);
+        }
+    }
+
+    @Test
+    public void testErrorsDoNotAbortTheBatch() throws Exception {
+        String input = createRecord(1) + "\r\n{\"broken\":\n\n" + createRecord(2) + "\n  \nno json\n"
+                + createRecord(3);
+
+        JsonLdBatchReader reader = new JsonLdBatchReader(2, 8, 1);
+        Events events = new Events();
+        reader.read(toStream(input), events, events);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add(JsonLdParser.parse(createRecord(1)).toString());
+        expected.add("error 2: {\"broken\":");
+        expected.add(JsonLdParser.parse(createRecord(2)).toString());
+        expected.add("error 6: no json");
+        expected.add(JsonLdParser.parse(createRecord(3)).toString());
+        assertEquals(expected, events.events);
+        assertEquals(3, reader.getRecordCount());
+        assertEquals(2, reader.getErrorCount());
+        assertEquals(7, reader.getLineCount());
+    }
+
+    @Test
+    public void testTruncatedLineIsAnErrorOfItsOwn() throws Exception {
+        String input = "{\"a\":\"1\"}\n{\"a\":[1,\n{\"a\":\"3\"}\n";
+
+        JsonLdBatchReader reader = new JsonLdBatchReader(2, 8, 1);
+        Events events = new Events();
+        reader.read(toStream(input), events, events);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add(JsonLdParser.parse("{\"a\":\"1\"}").toString());
+        expected.add("error 2: {\"a\":[1,");
+        expected.add(JsonLdParser.parse("{\"a\":\"3\"}").toString());
+        assertEquals(expected, events.events);
+        assertTrue(events.exceptions.get(0) instanceof JsonParseException);
+        assertEquals(2, reader.getRecordCount());
+        assertEquals(1, reader.getErrorCount());
+    }
+
+    @Test
+    public void testConsumerExceptionAbortsTheBatch() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            input.append(createRecord(i)).append('\n');
+        }
+        final RuntimeException stop = new IllegalStateException("stop");
+        final List<JsonLd> records = new ArrayList<JsonLd>();
+        JsonLdBatchReader reader = new JsonLdBatchReader(2, 64, 1);
+        try {
+            reader.read(toStream(input.toString()), new Consumer<JsonLd>() {
+                public void accept(JsonLd jsonLd) {
+                    records.add(jsonLd);
+                    if (records.size() == 3) {
+                        throw stop;
+                    }
+                }
+            }, new Events());
+            fail("The consumer exception is expected to abort the batch");
+        } catch (IllegalStateException e) {
+            assertSame(stop, e);
+        }
+        assertEquals(3, records.size());
+    }
+
+    @Test
+    public void testReadFailureIsReportedAfterTheRecordsBefore() throws Exception {
+        final byte[] bytes = (createRecord(1) + "\n" + createRecord(2) + "\n").getBytes(StandardCharsets.UTF_8);
+        InputStream stream = new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                if (pos == bytes.length) {
+                    throw new IOException("connection reset");
+                }
+                return bytes[pos++];
+            }
+        };
+
+        Events events = new Events();
+        try {
+            new JsonLdBatchReader(2, 16, 1).read(stream, events, events);
+            fail("The read failure is expected to be reported");
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        assertEquals(2, events.events.size());
+    }
+}
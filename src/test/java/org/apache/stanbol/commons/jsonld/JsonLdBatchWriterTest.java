@@ -0,0 +1,85 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonLdBatchWriterTest {
+
+    private static JsonLd createPerson(String subject, String name, boolean curies) {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setUseCuries(curies);
+        jsonLd.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+        jsonLd.addNamespacePrefix("http://example.org/people#", "people");
+
+        JsonLdResource resource = new JsonLdResource();
+        resource.setSubject(subject);
+        resource.addType("http://xmlns.com/foaf/0.1/Person");
+        resource.putProperty("http://xmlns.com/foaf/0.1/name", name);
+        resource.putProperty("http://xmlns.com/foaf/0.1/knows", new JsonLdIRI("http://example.org/people#alice"));
+        jsonLd.put(resource);
+        return jsonLd;
+    }
+
+    @Test
+    public void testRecordsAreWrittenAsLines() throws Exception {
+        List<JsonLd> records = new ArrayList<JsonLd>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            // alternating prefix usage, the namespace matches are shared
+            records.add(createPerson("http://example.org/people#p" + i, "Pérson\n" + i, i % 2 == 0));
+            expected.append(createPerson("http://example.org/people#p" + i, "Pérson\n" + i, i % 2 == 0))
+                    .append('\n');
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonLdBatchWriter writer = new JsonLdBatchWriter(stream);
+        writer.writeAll(records.iterator());
+        writer.flush();
+
+        String actual = new String(stream.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(expected.toString(), actual);
+        assertEquals(5, writer.getRecordCount());
+        assertEquals(stream.size(), writer.getByteCount());
+        assertTrue(writer.getNamespaceCacheHitRatio() > 0.5);
+    }
+
+    @Test
+    public void testChangingNamespacesAreNotMixedUp() throws Exception {
+        JsonLd first = createPerson("http://example.org/people#p1", "P1", true);
+        JsonLd second = createPerson("http://example.org/people#p2", "P2", true);
+        second.getNamespacePrefixMap().put("http://xmlns.com/foaf/0.1/", "f");
+        String expected = createPerson("http://example.org/people#p1", "P1", true) + "\n" + second + "\n";
+        second.getUsedNamespaces().clear();
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonLdBatchWriter writer = new JsonLdBatchWriter(stream);
+        writer.writeAll(Arrays.asList(first, second).stream());
+        writer.close();
+
+        assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+/**
+ * Size and encode/decode time of CBOR compared to JSON text, based on the
+ * {@link JsonLdAnnotationTest} fixture, see {@link MicroBenchmark}.
+ */
+public class JsonLdCborBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final JsonLd annotation = JsonLdAnnotationTest.createJsonLdObject();
+		final String json = annotation.toString();
+		final byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+		final byte[] cbor = JsonLdCborWriter.toCbor(annotation);
+
+		System.out.println(String.format("size: JSON %d bytes, CBOR %d bytes (%.0f%%)", utf8.length, cbor.length,
+				100.0 * cbor.length / utf8.length));
+
+		MicroBenchmark.run("encode JSON (toUtf8Bytes)", new Callable<Object>() {
+			public Object call() {
+				return annotation.toUtf8Bytes();
+			}
+		});
+		MicroBenchmark.run("encode CBOR", new Callable<Object>() {
+			public Object call() {
+				return JsonLdCborWriter.toCbor(annotation);
+			}
+		});
+		MicroBenchmark.run("decode JSON (JsonLdParser.parse)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(json);
+			}
+		});
+		MicroBenchmark.run("decode CBOR", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdCborReader.parse(cbor);
+			}
+		});
+	}
+}
@@ -0,0 +1,162 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+import org.junit.Test;
+
+public class JsonLdCborTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Parsed nested objects are serialized with the toString() of their
+     * values, which holds identity hash codes.
+     */
+    private static String withoutHashCodes(JsonLd jsonLd) {
+        return jsonLd.toString().replaceAll("@[0-9a-f]+", "@");
+    }
+
+    @Test
+    public void testEncoding() {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setApplyNamespaces(false);
+        JsonLdResource resource = new JsonLdResource();
+        resource.setSubject("http://a.b/c");
+        resource.putProperty("ab", -25);
+        resource.putProperty("abc", "abc");
+        resource.putProperty("d", 1.5);
+        jsonLd.put(resource);
+
+        byte[] expected = bytes(0xd9, 0x01, 0x00, // stringref namespace
+                0xa4, // map of 4
+                0x63, '@', 'i', 'd', // "@id", stringref 0
+                0xd8, 0x20, 0x6c, 'h', 't', 't', 'p', ':', '/', '/', 'a', '.', 'b', '/', 'c', // IRI, stringref 1
+                0x62, 'a', 'b', 0x38, 0x18, // "ab": -25
+                0x63, 'a', 'b', 'c', 0xd8, 0x19, 0x02, // "abc": stringref 2
+                0x61, 'd', 0xfa, 0x3f, 0xc0, 0x00, 0x00); // "d": 1.5f
+        assertArrayEquals(expected, JsonLdCborWriter.toCbor(jsonLd));
+    }
+
+    @Test
+    public void testRoundTripMatchesTextParsing() throws Exception {
+        JsonLd annotation = JsonLdAnnotationTest.createJsonLdObject();
+        String json = annotation.toString();
+
+        JsonLd fromText = JsonLdParser.parse(json);
+        JsonLd fromCbor = JsonLdCborReader.parse(JsonLdCborWriter.toCbor(JsonLdAnnotationTest.createJsonLdObject()));
+        assertEquals(withoutHashCodes(fromText), withoutHashCodes(fromCbor));
+
+        byte[] cbor = JsonLdCborWriter.toCbor(JsonLdAnnotationTest.createJsonLdObject());
+        assertTrue(cbor.length < json.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(withoutHashCodes(fromText), withoutHashCodes(JsonLdCborReader.parse(new ByteArrayInputStream(cbor))));
+    }
+
+    @Test
+    public void testRoundTripOfValues() throws Exception {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setUseTypeCoercion(false);
+        jsonLd.setUseCuries(true);
+        jsonLd.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+        JsonLdResource resource = new JsonLdResource();
+        resource.setSubject("http://example.org/people#bob");
+        resource.addType("foaf:Person");
+        resource.addType("foaf:Agent");
+        resource.putProperty("foaf:name", "Böb 😀");
+        resource.putProperty("foaf:age", 4200000000L);
+        resource.putProperty("foaf:weight", 80.25);
+        resource.putProperty("foaf:knows", new JsonLdRawJson("{\"foaf:name\":[\"Alice\",true,null]}"));
+        JsonLdProperty nicks = new JsonLdProperty("foaf:nick");
+        nicks.addSingleValue("bob");
+        nicks.addSingleValue("bobby");
+        nicks.addSingleValue("bob");
+        resource.putProperty(nicks);
+        jsonLd.put(resource);
+
+        String json = jsonLd.toString();
+        assertEquals(withoutHashCodes(JsonLdParser.parse(json)),
+                withoutHashCodes(JsonLdCborReader.parse(JsonLdCborWriter.toCbor(jsonLd))));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testTruncatedData() throws Exception {
+        byte[] cbor = JsonLdCborWriter.toCbor(JsonLdAnnotationTest.createJsonLdObject());
+        byte[] truncated = new byte[cbor.length - 3];
+        System.arraycopy(cbor, 0, truncated, 0, truncated.length);
+        JsonLdCborReader.parse(truncated);
+    }
+
+    @Test
+    public void testDeeplyNestedData() throws Exception {
+        // {"a": [[[...]]]}
+        byte[] cbor = new byte[3 + 200000];
+        cbor[0] = (byte) 0xa1;
+        cbor[1] = 0x61;
+        cbor[2] = 'a';
+        Arrays.fill(cbor, 3, cbor.length, (byte) 0x81);
+        try {
+            JsonLdCborReader.parse(cbor);
+            fail("Nested too deep");
+        } catch (JsonParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("nested deeper"));
+        }
+    }
+
+    @Test
+    public void testWriteToStreamsBlocks() throws Exception {
+        JsonLd jsonLd = new JsonLd();
+        JsonLdResource resource = new JsonLdResource();
+        resource.setSubject("http://example.org/s");
+        for (int i = 0; i < 1000; i++) {
+            resource.putProperty("http://example.org/p" + i, "value " + i);
+        }
+        jsonLd.put(resource);
+
+        final List<Integer> writes = new ArrayList<Integer>();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.add(len);
+                super.write(b, off, len);
+            }
+        };
+        JsonLdCborWriter.writeTo(jsonLd, stream);
+        assertArrayEquals(JsonLdCborWriter.toCbor(jsonLd), stream.toByteArray());
+        assertTrue(writes.toString(), writes.size() > 1);
+        for (int len : writes) {
+            assertTrue(writes.toString(), len <= 8192);
+        }
+    }
+}
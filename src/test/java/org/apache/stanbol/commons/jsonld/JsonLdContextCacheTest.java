@@ -0,0 +1,109 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Test;
+
+public class JsonLdContextCacheTest {
+
+    private static final String CONTEXT = "{\"foaf\":\"http://xmlns.com/foaf/0.1/\",\"@coerce\":{\"xsd:int\":\"age\"},"
+            + "\"xsd\":\"http://www.w3.org/2001/XMLSchema#\"}";
+
+    @Test
+    public void testParseUsesCachedContext() throws Exception {
+        JsonLdContextCache cache = JsonLdContextCache.getShared();
+        String first = "{\"@context\":" + CONTEXT + ",\"foaf:name\":\"Alice\",\"age\":\"42\"}";
+        String second = "{\"@context\":" + CONTEXT + ",\"foaf:name\":\"Bob\",\"age\":\"7\"}";
+        String expected = "{\"@context\":{\"name\":\"http://xmlns.com/foaf/0.1/name\"},\"@id\":\"_:bnode1\",\"age\":\"7\","
+                + "\"name\":\"Bob\"}";
+
+        JsonLdParser.parse(first);
+        long hits = cache.getHits();
+        assertEquals(expected, JsonLdParser.parse(second).toString());
+        assertEquals(expected, JsonLdParser.parse(new StringReader(second)).toString());
+        assertEquals(hits + 2, cache.getHits());
+
+        JsonLdParser.parseLazy(first);
+        JsonLd eager = JsonLdParser.parse(second);
+        hits = cache.getHits();
+        assertEquals(eager.getNamespacePrefixMap(),
+                JsonLdParser.parseLazy(second).getNamespacePrefixMap());
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void testLazyParseRemembersNewContextOnce() throws Exception {
+        JsonLdContextCache cache = JsonLdContextCache.getShared();
+        String document = "{\"@context\":{\"lazy\":\"http://example.org/lazy/" + System.nanoTime() + "/\"},"
+                + "\"lazy:name\":\"Alice\"}";
+        long misses = cache.getMisses();
+        int size = cache.size();
+        JsonLdParser.parseLazy(document);
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(size + 1, cache.size());
+    }
+
+    @Test
+    public void testContextOrderMatters() throws Exception {
+        JsonLd first = JsonLdParser.parse("{\"@context\":{\"a\":\"http://example.org/\",\"b\":\"http://example.org/\"},\"x\":1}");
+        JsonLd second = JsonLdParser.parse("{\"@context\":{\"b\":\"http://example.org/\",\"a\":\"http://example.org/\"},\"x\":1}");
+        assertEquals("{http://example.org/=b}", first.getNamespacePrefixMap().toString());
+        assertEquals("{http://example.org/=a}", second.getNamespacePrefixMap().toString());
+    }
+
+    @Test
+    public void testRegisteredContext() throws Exception {
+        String iri = "http://example.org/context.jsonld";
+        String document = "{\"@context\":\"" + iri + "\",\"foaf:name\":\"Alice\",\"age\":\"42\"}";
+        String expected = JsonLdParser.parse("{\"@context\":" + CONTEXT + ",\"foaf:name\":\"Alice\",\"age\":\"42\"}")
+                .toString();
+        JsonLdContextCache.getShared().register(iri, CONTEXT);
+        try {
+            assertEquals(expected, JsonLdParser.parse(document).toString());
+            assertEquals(expected, JsonLdParser.parse(new StringReader(document)).toString());
+            assertEquals(expected, JsonLdParser.parseLazy(document).toString());
+        } finally {
+            JsonLdContextCache.getShared().unregister(iri);
+        }
+        // unknown IRIs are no valid context, as before
+        assertEquals("{}", JsonLdParser.parse(document).toString());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        JsonLdContextCache cache = new JsonLdContextCache(2);
+        ArrayList<JSONObject> contexts = new ArrayList<JSONObject>();
+        for (int i = 0; i < 5; i++) {
+            JSONObject context = new JSONObject("{\"ns" + i + "\":\"http://example.org/" + i + "/\"}");
+            contexts.add(context);
+            cache.get(context);
+            assertTrue(cache.size() <= 2);
+        }
+        cache.get(new JSONObject(contexts.get(4).toString()));
+        assertEquals(5, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,352 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Parser benchmarks based on the {@link JsonLdAnnotationTest} fixtures, see
+ * {@link MicroBenchmark}.
+ */
+public class JsonLdParserBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final String annotation = JsonLdAnnotationTest.createJsonLdObject().toString();
+		final byte[] annotationUtf8 = annotation.getBytes(StandardCharsets.UTF_8);
+
+		MicroBenchmark.run("annotation parse(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(annotation);
+			}
+		});
+		MicroBenchmark.run("annotation parse(Reader)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new StringReader(annotation));
+			}
+		});
+		MicroBenchmark.run("annotation parse(InputStream)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new ByteArrayInputStream(annotationUtf8));
+			}
+		});
+		MicroBenchmark.run("annotation parse(new String(byte[]))", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new String(annotationUtf8, StandardCharsets.UTF_8));
+			}
+		});
+		MicroBenchmark.run("annotation parse(byte[], int, int)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(annotationUtf8, 0, annotationUtf8.length);
+			}
+		});
+
+		final JsonLdPushParser pushParser = new JsonLdPushParser();
+		final ByteBuffer chunk = ByteBuffer.allocate(1024);
+		MicroBenchmark.run("annotation JsonLdPushParser, 1 KB chunks", new Callable<Object>() {
+			public Object call() throws Exception {
+				pushParser.reset();
+				for (int start = 0; start < annotationUtf8.length; start += chunk.capacity()) {
+					chunk.clear();
+					chunk.put(annotationUtf8, start, Math.min(chunk.capacity(), annotationUtf8.length - start));
+					chunk.flip();
+					pushParser.feed(chunk);
+				}
+				return pushParser.end();
+			}
+		});
+
+		final JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+		MicroBenchmark.run("annotation parse(String) with symbol table", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(annotation, symbols);
+			}
+		});
+		MicroBenchmark.run("annotation parse(Reader) with symbol table", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new StringReader(annotation), symbols);
+			}
+		});
+		MicroBenchmark.run("annotation parse(byte[], int, int) with symbol table", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(annotationUtf8, 0, annotationUtf8.length, symbols);
+			}
+		});
+
+		final JsonLdProjection projection = JsonLdProjection.of("@type", "target.source", "annotatedAt");
+		MicroBenchmark.run("annotation parseProjected(Reader)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseProjected(new StringReader(annotation), projection);
+			}
+		});
+
+		MicroBenchmark.run("annotation parse(String) + getProperty()", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(annotation).getResource("_:bnode1").getProperty("motivatedBy");
+			}
+		});
+		MicroBenchmark.run("annotation parseLazy(String) + getProperty()", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseLazy(annotation).getResource("_:bnode1").getProperty("motivatedBy");
+			}
+		});
+		MicroBenchmark.run("annotation parseModel(String) + toString()", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseModel(annotation).toString();
+			}
+		});
+		MicroBenchmark.run("annotation parseRoundTrip(String) + toString()", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseRoundTrip(annotation).toString();
+			}
+		});
+		final String contextDocument = createContextDocument(12);
+		MicroBenchmark.run("12 namespaces context parse(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(contextDocument);
+			}
+		});
+		MicroBenchmark.run("12 namespaces context parse(String), cache cleared", new Callable<Object>() {
+			public Object call() throws Exception {
+				JsonLdContextCache.getShared().clear();
+				return JsonLdParser.parse(contextDocument);
+			}
+		});
+		MicroBenchmark.run("12 namespaces context parse(Reader)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new StringReader(contextDocument));
+			}
+		});
+
+		final String wide = createWideDocument(100);
+		MicroBenchmark.run("100 properties parse(String) + toString()", new Callable<Object>() {
+			public Object call() throws Exception {
+				JsonLd jsonLd = JsonLdParser.parse(wide);
+				jsonLd.getResource("_:bnode1").getProperty("label1");
+				return jsonLd.toString();
+			}
+		});
+		MicroBenchmark.run("100 properties parseLazy(String) + toString()", new Callable<Object>() {
+			public Object call() throws Exception {
+				JsonLd jsonLd = JsonLdParser.parseLazy(wide);
+				jsonLd.getResource("_:bnode1").getProperty("label1");
+				return jsonLd.toString();
+			}
+		});
+
+		final String subjects = createSubjectsDocument(annotation, 10000);
+		MicroBenchmark.run("10000 subjects parse(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(subjects);
+			}
+		});
+		final byte[] subjectsUtf8 = subjects.getBytes(StandardCharsets.UTF_8);
+		MicroBenchmark.run("10000 subjects parse(byte[], int, int)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(subjectsUtf8, 0, subjectsUtf8.length);
+			}
+		});
+		MicroBenchmark.run("10000 subjects parseParallel(String), " + ForkJoinPool.commonPool().getParallelism()
+				+ " threads", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseParallel(subjects);
+			}
+		});
+
+		final String lines = createLines(annotation, 10000);
+		final byte[] linesUtf8 = lines.getBytes(StandardCharsets.UTF_8);
+		MicroBenchmark.run("10000 NDJSON lines parse(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				List<JsonLd> records = new ArrayList<JsonLd>();
+				for (String line : lines.split("\n")) {
+					records.add(JsonLdParser.parse(line));
+				}
+				return records;
+			}
+		});
+		final JsonLdBatchReader batchReader = new JsonLdBatchReader();
+		final List<JsonLd> records = new ArrayList<JsonLd>();
+		final Consumer<JsonLd> consumer = new Consumer<JsonLd>() {
+			public void accept(JsonLd jsonLd) {
+				records.add(jsonLd);
+			}
+		};
+		final JsonLdBatchReader.ErrorHandler errors = new JsonLdBatchReader.ErrorHandler() {
+			public void error(long lineNumber, String line, Exception e) {
+				throw new IllegalStateException(e);
+			}
+		};
+		MicroBenchmark.run("10000 NDJSON lines JsonLdBatchReader, " + Runtime.getRuntime().availableProcessors()
+				+ " threads", new Callable<Object>() {
+			public Object call() throws Exception {
+				records.clear();
+				batchReader.read(new ByteArrayInputStream(linesUtf8), consumer, errors);
+				return records;
+			}
+		});
+		System.out.printf("JsonLdBatchReader stages: read %.1f MB/s, parse %.0f records/s per thread,"
+				+ " delivery %.0f records/s, total %.0f records/s%n", batchReader.getBytesReadPerSecond() / 1e6,
+				batchReader.getRecordsParsedPerSecond(), batchReader.getRecordsDeliveredPerSecond(),
+				batchReader.getRecordsPerSecond());
+
+		final Path linesFile = Files.createTempFile("jsonld", ".ndjson");
+		try {
+			Files.write(linesFile, linesUtf8);
+			final int[] count = new int[1];
+			final Consumer<JsonLd> counter = new Consumer<JsonLd>() {
+				public void accept(JsonLd jsonLd) {
+					count[0]++;
+				}
+			};
+			MicroBenchmark.run("10000 NDJSON lines parseSubjects(Path)", new Callable<Object>() {
+				public Object call() throws Exception {
+					JsonLdParser.parseSubjects(linesFile, counter);
+					return count;
+				}
+			});
+		} finally {
+			Files.delete(linesFile);
+		}
+
+		runNestedValues("wide value, 1000 members", createWideValue(1000));
+		runNestedValues("deep value, depth 200", createDeepValue(200));
+
+		for (int properties = 10; properties <= 1000; properties *= 10) {
+			final String document = createWideDocument(properties);
+			MicroBenchmark.run("parseExt() " + properties + " properties", new Callable<Object>() {
+				@SuppressWarnings("deprecation")
+				public Object call() throws Exception {
+					return JsonLdParser.parseExt(document);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Compares the Map and List values of {@link JsonLdParser#parse(String)}
+	 * and {@link JsonLdParser#parse(java.io.Reader)} with the values built by
+	 * {@link JsonLdParser#parseModel(String)}.
+	 */
+	private static void runNestedValues(String name, final String document) throws Exception {
+		MicroBenchmark.run(name + " parse(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(document);
+			}
+		});
+		MicroBenchmark.run(name + " parse(Reader)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parse(new StringReader(document));
+			}
+		});
+		MicroBenchmark.run(name + " parseModel(String)", new Callable<Object>() {
+			public Object call() throws Exception {
+				return JsonLdParser.parseModel(document);
+			}
+		});
+	}
+
+	/**
+	 * @return a document with a property value of the given number of
+	 *         members, each an object with an array.
+	 */
+	private static String createWideValue(int members) {
+		StringBuilder sb = new StringBuilder("{\"@type\":\"oa:Annotation\",\"body\":{");
+		for (int i = 0; i < members; i++) {
+			sb.append(i == 0 ? "" : ",").append("\"member").append(i).append("\":{\"chars\":\"Value ").append(i)
+					.append("\",\"tags\":[\"a\",\"b\",").append(i).append("]}");
+		}
+		return sb.append("}}").toString();
+	}
+
+	/**
+	 * @return a document with a property value of objects nested to the given
+	 *         depth.
+	 */
+	private static String createDeepValue(int depth) {
+		StringBuilder sb = new StringBuilder("{\"@type\":\"oa:Annotation\",\"body\":");
+		for (int i = 0; i < depth; i++) {
+			sb.append("{\"chars\":\"Level ").append(i).append("\",\"tags\":[\"a\",").append(i).append("],\"next\":");
+		}
+		sb.append("null");
+		for (int i = 0; i < depth; i++) {
+			sb.append('}');
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * @return the given number of annotations as NDJSON.
+	 */
+	private static String createLines(String annotation, int lines) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			sb.append(annotation).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return a document with the given number of annotations as subjects of
+	 *         an <code>@id</code> array.
+	 */
+	private static String createSubjectsDocument(String annotation, int subjects) {
+		StringBuilder sb = new StringBuilder("{\"@id\":[");
+		for (int i = 0; i < subjects; i++) {
+			sb.append(i == 0 ? "" : ",").append(annotation);
+		}
+		return sb.append("]}").toString();
+	}
+
+	/**
+	 * @return a document with a context of the given number of namespaces
+	 *         and a few coerced properties, like the annotation contexts.
+	 */
+	private static String createContextDocument(int namespaces) {
+		StringBuilder sb = new StringBuilder("{\"@context\":{");
+		for (int i = 0; i < namespaces; i++) {
+			sb.append("\"ns").append(i).append("\":\"http://example.org/ns/").append(i).append("#\",");
+		}
+		sb.append("\"@coerce\":{\"xsd:dateTime\":\"created\",\"xsd:anyURI\":\"source\"}},");
+		return sb.append("\"created\":\"2012-01-01T00:00:00Z\",\"source\":\"http://example.org/a\"}").toString();
+	}
+
+	/**
+	 * @return an annotation with the given number of top level properties and
+	 *         as many nested objects in its target.
+	 */
+	private static String createWideDocument(int properties) {
+		StringBuilder sb = new StringBuilder("{\"@type\":\"oa:Annotation\",\"target\":{");
+		for (int i = 0; i < properties; i++) {
+			sb.append(i == 0 ? "" : ",").append("\"part").append(i).append("\":{\"@type\":\"oa:SpecificResource\",");
+			sb.append("\"source\":\"http://example.org/source/").append(i).append("\"}");
+		}
+		sb.append('}');
+		for (int i = 0; i < properties; i++) {
+			sb.append(",\"label").append(i).append("\":\"Label ").append(i).append('"');
+		}
+		return sb.append('}').toString();
+	}
+}
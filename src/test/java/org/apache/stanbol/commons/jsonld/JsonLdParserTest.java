@@ -18,8 +18,33 @@ package org.apache.stanbol.commons.jsonld;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.stanbol.commons.exception.JsonParseException;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 import org.junit.Test;
 
+import com.google.gson.Gson;
+
 public class JsonLdParserTest {
 
     @Test
@@ -111,6 +136,726 @@ public class JsonLdParserTest {
         assertNotNull(jsonLd);
     }
     
+    /**
+     * Documents covering the subject handling of the parser, see
+     * {@link #testParseReaderMatchesString()}.
+     */
+    private static final String[] DOCUMENTS = {
+        "{\"@context\":{\"iks\":\"http://iks-project.eu/ont/\",\"upb\":\"http://upb.de/persons/\"},\"@profile\":\"iks:employeeOf\",\"person\":{\"@id\":\"upb:bnagel\"},\"organization\":{\"@id\":\"http://uni-paderborn.de\"}}",
+        "{\"@context\":{\"iks\":\"http://iks-project.eu/ont/\",\"upb\":\"http://upb.de/persons/\"},\"@profile\":\"iks:employeeOf\",\"@id\":[{\"person\":{\"@id\":\"upb:bnagel\"},\"organization\":{\"@id\":\"http://uni-paderborn.de\"}},{\"person\":{\"@id\":\"upb:fchrist\"},\"organization\":{\"@id\":\"http://uni-paderborn.de\"}}]}",
+        "{\"@context\":{\"iks\":\"http://iks-project.eu/ont/\",\"upb\":\"http://upb.de/persons/\"},\"@id\":[{\"@profile\":\"iks:employeeOf\",\"person\":{\"@id\":\"upb:bnagel\"},\"organization\":{\"@id\":\"http://uni-paderborn.de\"}},{\"@profile\":\"iks:friendOf\",\"person\":{\"@id\":\"upb:bnagel\"},\"friend\":{\"@id\":\"upb:fchrist\"}}]}",
+        // @context, @profile and @id after the properties
+        "{\"person\":\"Benjamin\",\"@id\":[{\"name\":\"a\"},{\"name\":\"b\",\"@profile\":\"iks:friendOf\"}],\"@profile\":\"iks:employeeOf\",\"@context\":{\"iks\":\"http://iks-project.eu/ont/\"}}",
+        // type coercion and duplicate names
+        "{\"@context\":{\"@coerce\":{\"xsd:int\":\"age\"},\"xsd\":\"http://www.w3.org/2001/XMLSchema#\"},\"age\":\"42\",\"name\":\"a\",\"name\":\"b\"}",
+        // all kinds of values
+        "{ \"@id\" : \"http://example.org/a\" , \"n\" : [ 0, -1, 2147483648, 12345678901234567890, 1.5, -2E-3 ], \"b\" : [true, false, null],"
+                + " \"e\":{}, \"o\":{\"x\":{\"y\":[{\"@id\":\"http://example.org/b\",\"z\":1}]}},"
+                + " \"s\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e9\\ud83d\\ude00 \u00fc\" }",
+        // no JSON object as @context
+        "{\"@context\":\"http://www.w3.org/ns/anno.jsonld\",\"name\":\"a\"}"
+    };
+
+    /**
+     * Parsed nested objects are serialized with the toString() of their
+     * values, which holds identity hash codes.
+     */
+    private static String withoutHashCodes(JsonLd jsonLd) {
+        return jsonLd.toString().replaceAll("@[0-9a-f]+", "@");
+    }
+
+    @Test
+    public void testParseReaderMatchesString() throws Exception {
+        for (String document : DOCUMENTS) {
+            String expected = withoutHashCodes(JsonLdParser.parse(document));
+            assertEquals(document, expected, withoutHashCodes(JsonLdParser.parse(new StringReader(document))));
+            for (int bufferSize = 1; bufferSize < 8; bufferSize++) {
+                JsonLd jsonLd = JsonLdStreamParser.parse(new JsonCharTokenizer(new StringReader(document), bufferSize));
+                assertEquals(document, expected, withoutHashCodes(jsonLd));
+            }
+        }
+
+        String annotation = JsonLdAnnotationTest.createJsonLdObject().toString(2);
+        assertEquals(withoutHashCodes(JsonLdParser.parse(annotation)),
+                withoutHashCodes(JsonLdParser.parse(new StringReader(annotation))));
+    }
+
+    /**
+     * Removes the members the projection does not select from the given
+     * subject, the way {@link JsonLdParser#parseProjected(String, JsonLdProjection)}
+     * skips them.
+     */
+    private static JSONObject project(JSONObject object, Set<String> paths, String prefix, boolean subject)
+            throws JSONException {
+        JSONObject projected = new JSONObject();
+        Iterator<?> keys = object.keys();
+        while (keys.hasNext()) {
+            String name = (String) keys.next();
+            Object value = object.get(name);
+            String path = prefix + name;
+            if (subject && name.equals(JsonLdCommon.ID) && value instanceof JSONArray) {
+                JSONArray subjects = new JSONArray();
+                for (int i = 0; i < ((JSONArray) value).length(); i++) {
+                    subjects.put(project(((JSONArray) value).getJSONObject(i), paths, prefix, true));
+                }
+                projected.put(name, subjects);
+            } else if (name.equals(JsonLdCommon.ID) || paths.contains(path)
+                    || (subject && (name.equals(JsonLdCommon.CONTEXT) || name.equals(JsonLdCommon.PROFILE)))) {
+                projected.put(name, value);
+            } else if (hasPrefix(paths, path + ".")) {
+                projected.put(name, project(value, paths, path + "."));
+            }
+        }
+        return projected;
+    }
+
+    private static Object project(Object value, Set<String> paths, String prefix) throws JSONException {
+        if (value instanceof JSONObject) {
+            return project((JSONObject) value, paths, prefix, false);
+        }
+        if (value instanceof JSONArray) {
+            JSONArray projected = new JSONArray();
+            for (int i = 0; i < ((JSONArray) value).length(); i++) {
+                projected.put(project(((JSONArray) value).get(i), paths, prefix));
+            }
+            return projected;
+        }
+        return value;
+    }
+
+    private static boolean hasPrefix(Set<String> paths, String prefix) {
+        for (String path : paths) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testParseProjection() throws Exception {
+        JsonLdProjection[] projections = {
+            JsonLdProjection.of(),
+            JsonLdProjection.of("name"),
+            JsonLdProjection.of("person", "age", "n", "o.x.y.z", "s"),
+            JsonLdProjection.of("o.x", "o.x.y", "b", "e.a"),
+            JsonLdProjection.of("@type", "target.source", "annotatedAt", "body.chars", "styledBy.@type")
+        };
+        List<String> documents = new ArrayList<String>(Arrays.asList(DOCUMENTS));
+        documents.remove(4); // duplicate names are rejected by JSONObject(String)
+        documents.add(JsonLdAnnotationTest.createJsonLdObject().toString(2));
+        for (String document : documents) {
+            for (JsonLdProjection projection : projections) {
+                String projected = project(new JSONObject(document), projection.getPaths(), "", true).toString();
+                assertEquals(document + " " + projection, withoutHashCodes(JsonLdParser.parse(projected)),
+                        withoutHashCodes(JsonLdParser.parseProjected(document, projection)));
+            }
+        }
+
+        JsonLd jsonLd = JsonLdParser.parseProjected(DOCUMENTS[4], JsonLdProjection.of("name"));
+        assertEquals("{\"@context\":{},\"@id\":\"_:bnode1\",\"name\":\"b\"}", jsonLd.toString());
+
+        jsonLd = JsonLdParser.parseProjected(new StringReader(JsonLdAnnotationTest.createJsonLdObject().toString()),
+                JsonLdProjection.of("@type", "target.source", "serializedAt"));
+        JsonLdResource resource = jsonLd.getResource("_:bnode1");
+        assertEquals(new TreeSet<String>(Arrays.asList("@type", "target", "serializedAt")),
+                new TreeSet<String>(resource.getPropertyMap().keySet()));
+        Map<?, ?> target = (Map<?, ?>) resource.getPropertyMap().get("target").getValues().get(0).getValue();
+        assertEquals(Collections.singleton("source"), target.keySet());
+        assertEquals("http://europeana.eu/portal/record//15502/GG_8285.html",
+                ((JsonLdIRI) target.get("source")).getIRI());
+
+        try {
+            JsonLdProjection.of("target..source");
+            fail("No IllegalArgumentException for an empty name");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            JsonLdParser.parseProjected("{\"a\":{\"b\":[1,}}", JsonLdProjection.of("c"));
+            fail("No JsonParseException for a skipped value");
+        } catch (JsonParseException e) {
+            // expected
+        }
+
+        // a null symbol table still selects the symbol table overloads
+        assertEquals(withoutHashCodes(JsonLdParser.parse(DOCUMENTS[4])),
+                withoutHashCodes(JsonLdParser.parse(DOCUMENTS[4], null)));
+        assertEquals(withoutHashCodes(JsonLdParser.parse(DOCUMENTS[4])),
+                withoutHashCodes(JsonLdParser.parse(new StringReader(DOCUMENTS[4]), null)));
+    }
+
+    @Test
+    public void testParseInputStream() throws Exception {
+        String document = "{\"@id\":\"http://example.org/a\",\"name\":\"V\u0103lcea \u5438\ud83d\ude00\"}";
+        JsonLd jsonLd = JsonLdParser.parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(withoutHashCodes(JsonLdParser.parse(document)), withoutHashCodes(jsonLd));
+    }
+
+    @Test
+    public void testParseReaderErrors() throws Exception {
+        String[] invalid = { "", "[]", "\"a\"", "{", "{\"a\":1", "{\"a\":1}}", "{\"a\":1} x", "{\"a\" 1}", "{a:1}",
+                "{\"a\":01}", "{\"a\":1.}", "{\"a\":1e400}", "{\"a\":tru}", "{\"a\":\"b}", "{\"a\":\"\\x\"}",
+                "{\"a\":\"\\u12\"}", "{\"a\":\"\n\"}", "{\"a\":[1,]}", "{\"a\":1,}" };
+        for (String document : invalid) {
+            try {
+                JsonLdParser.parse(new StringReader(document));
+                fail("No JsonParseException for " + document);
+            } catch (JsonParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseUtf8MatchesString() throws Exception {
+        Path file = Files.createTempFile("jsonld", ".json");
+        try {
+            for (String document : DOCUMENTS) {
+                String expected = withoutHashCodes(JsonLdParser.parse(document));
+                byte[] utf8 = document.getBytes(StandardCharsets.UTF_8);
+                JsonLd jsonLd = JsonLdStreamParser.parse(new JsonUtf8Tokenizer(ByteBuffer.wrap(utf8)));
+                assertEquals(document, expected, withoutHashCodes(jsonLd));
+
+                byte[] padded = new byte[utf8.length + 7];
+                System.arraycopy(utf8, 0, padded, 3, utf8.length);
+                padded[2] = '[';
+                padded[utf8.length + 3] = ']';
+                assertEquals(document, expected, withoutHashCodes(JsonLdParser.parse(padded, 3, utf8.length)));
+                assertEquals(document, expected,
+                        withoutHashCodes(JsonLdParser.parse(padded, 3, utf8.length, new JsonLdSymbolTable())));
+
+                Files.write(file, utf8);
+                for (int windowSize = 1; windowSize < 8; windowSize++) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        jsonLd = JsonLdStreamParser.parse(new JsonUtf8Tokenizer(channel, windowSize, false));
+                    }
+                    assertEquals(document, expected, withoutHashCodes(jsonLd));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParseUtf8Errors() throws Exception {
+        List<byte[]> invalid = new ArrayList<byte[]>();
+        for (String document : new String[] { "", "[]", "{", "{\"a\":1} x", "{\"a\":01}", "{\"a\":tru}",
+                "{\"a\":\"b}", "{\"a\":\"\\u12\"}", "{\"a\":\"\n\"}", "{\"a\":[1,]}" }) {
+            invalid.add(document.getBytes(StandardCharsets.UTF_8));
+        }
+        // a lone continuation byte, an overlong '/', a truncated sequence and
+        // an encoded surrogate
+        for (byte[] bytes : new byte[][] { { (byte) 0x80 }, { (byte) 0xc0, (byte) 0xaf }, { (byte) 0xe5, (byte) 0x90 },
+                { (byte) 0xed, (byte) 0xa0, (byte) 0x80 } }) {
+            byte[] document = new byte[bytes.length + 9];
+            System.arraycopy("{\"a\":\"".getBytes(StandardCharsets.UTF_8), 0, document, 0, 6);
+            System.arraycopy(bytes, 0, document, 6, bytes.length);
+            document[bytes.length + 6] = 'x';
+            document[bytes.length + 7] = '"';
+            document[bytes.length + 8] = '}';
+            invalid.add(document);
+        }
+        for (byte[] document : invalid) {
+            try {
+                JsonLdStreamParser.parse(new JsonUtf8Tokenizer(ByteBuffer.wrap(document)));
+                fail("No JsonParseException for " + new String(document, StandardCharsets.UTF_8));
+            } catch (JsonParseException e) {
+                // expected
+            }
+            try {
+                JsonLdParser.parse(document, 0, document.length);
+                fail("No JsonParseException for " + new String(document, StandardCharsets.UTF_8));
+            } catch (JsonParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseSubjects() throws Exception {
+        // all subjects of the @id arrays, one document per line
+        String[] documents = { DOCUMENTS[0], DOCUMENTS[1], DOCUMENTS[2], DOCUMENTS[4] };
+        StringBuilder sb = new StringBuilder();
+        for (String document : documents) {
+            sb.append(document).append("\r\n\n");
+        }
+        Path file = Files.createTempFile("jsonld", ".json");
+        try {
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            for (int windowSize : new int[] { 3, 64, JsonUtf8Tokenizer.DEFAULT_WINDOW_SIZE }) {
+                final List<JsonLd> subjects = new ArrayList<JsonLd>();
+                JsonLdParser.parseSubjects(file, subjects::add, windowSize);
+                assertEquals(6, subjects.size());
+                assertEquals(describe(JsonLdParser.parse(documents[0])), describe(subjects.get(0)));
+                assertEquals(describe(JsonLdParser.parse(documents[1])), describe(merge(subjects.subList(1, 3))));
+                assertEquals(describe(JsonLdParser.parse(documents[2])), describe(merge(subjects.subList(3, 5))));
+                assertEquals(describe(JsonLdParser.parse(documents[3])), describe(subjects.get(5)));
+                assertEquals("[_:bnode2]", subjects.get(2).getResourceSubjects().toString());
+            }
+
+            // subjects with a name are passed on as well
+            Files.write(file, "{\"@id\":[{\"@id\":\"http://example.org/a\",\"name\":\"a\"}]}"
+                    .getBytes(StandardCharsets.UTF_8));
+            final List<JsonLd> subjects = new ArrayList<JsonLd>();
+            JsonLdParser.parseSubjects(file, subjects::add);
+            assertEquals(1, subjects.size());
+            assertEquals("{} <http://example.org/a> name=[{value=a}]", describe(subjects.get(0)));
+
+            // the @context must be known before the subjects are passed on
+            Files.write(file, DOCUMENTS[3].getBytes(StandardCharsets.UTF_8));
+            try {
+                JsonLdParser.parseSubjects(file, subjects::add);
+                fail("No JsonParseException");
+            } catch (JsonParseException e) {
+                // expected
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return a JSON-LD data structure with the namespaces and subjects of the
+     *         given ones.
+     */
+    private static JsonLd merge(List<JsonLd> jsonLds) {
+        JsonLd merged = new JsonLd();
+        for (JsonLd jsonLd : jsonLds) {
+            merged.getNamespacePrefixMap().putAll(jsonLd.getNamespacePrefixMap());
+            for (String subject : jsonLd.getResourceSubjects()) {
+                merged.put(subject, jsonLd.getResource(subject));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Feeds the UTF-8 bytes of the document to the parser in chunks of the
+     * given size.
+     */
+    private static JsonLd push(JsonLdPushParser parser, byte[] document, int chunkSize) throws JsonParseException {
+        ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+        int last = document.length;
+        while (last > 0 && document[last - 1] <= ' ') {
+            last--;
+        }
+        for (int start = 0; start < document.length; start += chunkSize) {
+            chunk.clear();
+            chunk.put(document, start, Math.min(chunkSize, document.length - start));
+            chunk.flip();
+            JsonLd jsonLd = parser.feed(chunk);
+            assertEquals(start + chunkSize >= last, jsonLd != null);
+            assertFalse(chunk.hasRemaining());
+        }
+        return parser.end();
+    }
+
+    @Test
+    public void testPushParserMatchesString() throws Exception {
+        List<String> documents = new ArrayList<String>();
+        for (String document : DOCUMENTS) {
+            documents.add(document);
+        }
+        documents.add("{\"@id\":\"http://example.org/a\",\"name\":\"V\u0103lcea \u5438\ud83d\ude00\\u00e9\"}\n ");
+        documents.add(JsonLdAnnotationTest.createJsonLdObject().toString(2));
+        JsonLdPushParser parser = new JsonLdPushParser();
+        for (String document : documents) {
+            String expected = withoutHashCodes(JsonLdParser.parse(document));
+            byte[] utf8 = document.getBytes(StandardCharsets.UTF_8);
+            for (int chunkSize : new int[] { 1, 2, 3, 5, 7, 64, utf8.length }) {
+                parser.reset();
+                assertEquals(document, expected, withoutHashCodes(push(parser, utf8, chunkSize)));
+            }
+        }
+
+        JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+        JsonLd first = new JsonLdPushParser(symbols).feed(ByteBuffer.wrap(DOCUMENTS[0].getBytes(StandardCharsets.UTF_8)));
+        JsonLd second = new JsonLdPushParser(symbols).feed(ByteBuffer.wrap(DOCUMENTS[0].getBytes(StandardCharsets.UTF_8)));
+        assertSame(first.getResource("_:bnode1").getProperty("person").getName(),
+                second.getResource("_:bnode1").getProperty("person").getName());
+    }
+
+    @Test
+    public void testPushParserErrors() throws Exception {
+        String[] invalid = { "", "[]", "\"a\"", "1", "{", "{\"a\":1", "{\"a\":1}}", "{\"a\":1} x", "{\"a\" 1}", "{a:1}",
+                "{\"a\":01}", "{\"a\":1.}", "{\"a\":1e400}", "{\"a\":tru}", "{\"a\":\"b}", "{\"a\":\"\\x\"}",
+                "{\"a\":\"\\u12\"}", "{\"a\":\"\n\"}", "{\"a\":[1,]}", "{\"a\":1,}", "{\"a\":\"\u00e9",
+                "{\"a\":\"\\u00", "{\"a\":nul" };
+        JsonLdPushParser parser = new JsonLdPushParser();
+        for (String document : invalid) {
+            byte[] utf8 = document.getBytes(StandardCharsets.UTF_8);
+            for (int chunkSize = 1; chunkSize <= Math.max(utf8.length, 1); chunkSize++) {
+                parser.reset();
+                try {
+                    ByteBuffer chunk = ByteBuffer.wrap(utf8);
+                    while (chunk.hasRemaining()) {
+                        int limit = Math.min(chunk.position() + chunkSize, utf8.length);
+                        parser.feed((ByteBuffer) chunk.duplicate().limit(limit));
+                        chunk.position(limit);
+                    }
+                    parser.end();
+                    fail("No JsonParseException for " + document + " in chunks of " + chunkSize);
+                } catch (JsonParseException e) {
+                    // expected
+                }
+            }
+        }
+
+        parser.reset();
+        try {
+            parser.feed(ByteBuffer.wrap(new byte[] { '{', '"', (byte) 0xc3, '"', ':', '1', '}' }));
+            fail("No JsonParseException for a truncated UTF-8 sequence");
+        } catch (JsonParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Annotations and their structure as built by the former string
+     * splitting implementation of parseExt(), see
+     * {@link #testParseExtCompatibility()}.
+     */
+    private static final String[][] EXT_DOCUMENTS = {
+        { "{\"@context\":{\"oa\":\"http://www.w3.org/ns/oa#\"},\"@id\":\"http://data.europeana.eu/annotation/1\",\"@type\":\"oa:Annotation\",\"motivatedBy\":\"oa:tagging\",\"annotatedBy\":{\"@id\":\"http://example.org/user/1\",\"name\":\"Doe, John\"}}",
+          "{oa=http://www.w3.org/ns/oa#} <http://data.europeana.eu/annotation/1> @type=[{value=oa:Annotation}] annotatedBy=[{ values={@id=http://example.org/user/1, name=Doe, John}}] motivatedBy=[{value=oa:tagging}]" },
+        { "{\"@context\":\"http://www.w3.org/ns/oa-context-20130208.json\",\"@type\":\"oa:Annotation\",\"body\":[{\"@type\":\"oa:Tag\",\"chars\":\"Vlad\"},{\"foaf:page\":\"https://www.freebase.com/m/035br4\",\"language\":\"ro\"}]}",
+          "{} <> coerce={oa=http://www.w3.org/ns/oa-context-20130208.json} @context=[{value=http://www.w3.org/ns/oa-context-20130208.json}] @type=[{value=oa:Annotation}] body=[{ values={@type=oa:Tag, chars=Vlad}}{ values={foaf:page=https://www.freebase.com/m/035br4, language=ro}}]" },
+        { "{\"@type\":\"oa:Annotation\",\"target\":{\"source\":{\"@id\":\"http://a.org/s\",\"@type\":\"euType:AGENT\"},\"selector\":{\"@type\":\"oa:FragmentSelector\",\"value\":\"xywh=1,2,3,4\"},\"scope\":\"http://a.org/scope\"}}",
+          "{} <> @type=[{value=oa:Annotation}] target=[{ values={scope=http://a.org/scope, source=\"@id\":\"http://a.org/s\",\"@type\":\"euType:AGENT\"} selector=[{ values={@type=oa:FragmentSelector, value=xywh=1,2,3,4}}]}]" },
+        { "{\"@type\":\"oa:Annotation\",\"styledBy\":{\"@type\":\"oa:CssStyle\",\"styleClass\":\"popup\"},\"body\":{\"@type\":\"oa:SemanticTag\",\"foaf:page\":\"http://x.org/a\"},\"target\":{\"selector\":{\"@type\":\"oa:SvgSelector\"},\"source\":{\"@id\":\"http://a.org/s\",\"format\":\"text/html\"}}}",
+          "{} <> @type=[{value=oa:Annotation}] body=[{ values={@type=oa:SemanticTag, foaf:page=http://x.org/a}}] styledBy=[{ values={@type=oa:CssStyle, styleClass=popup}}] target=[{ selector=[{ values={@type=oa:SvgSelector}}] source=[{ values={@id=http://a.org/s, format=text/html}}]}]" },
+        { "{\"@profile\":\"http://example.org/profile\",\"@type\":\"oa:Annotation\",\"annotatedAt\":\"2012-11-10T09:08:07\",\"body\":\"a plain \\\"text\\\" body\"}",
+          "{} <> profile=http://example.org/profile @type=[{value=oa:Annotation}] annotatedAt=[{value=2012-11-10T09:08:07}] body=[{value=a plain \"text\" body}]" }
+    };
+
+    /**
+     * @return the namespaces, subjects, properties and values of the given
+     *         JSON-LD data structure in a stable order.
+     */
+    private static String describe(JsonLd jsonLd) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new TreeMap<String, String>(jsonLd.getNamespacePrefixMap()));
+        for (String subject : new TreeSet<String>(jsonLd.getResourceSubjects())) {
+            JsonLdResource resource = jsonLd.getResource(subject);
+            sb.append(" <").append(subject).append(">");
+            if (resource.getProfile() != null) {
+                sb.append(" profile=").append(resource.getProfile());
+            }
+            if (!resource.getCoerceMap().isEmpty()) {
+                sb.append(" coerce=").append(new TreeMap<String, String>(resource.getCoerceMap()));
+            }
+            describe(resource.getPropertyMap(), sb);
+        }
+        // nested IRIs are only shown with their identity hash code
+        return sb.toString().replaceAll("JsonLdIRI@[0-9a-f]+", "JsonLdIRI");
+    }
+
+    private static void describe(Map<String, JsonLdProperty> properties, StringBuilder sb) {
+        for (String name : new TreeSet<String>(properties.keySet())) {
+            sb.append(" ").append(name).append("=[");
+            for (JsonLdPropertyValue value : properties.get(name).getValues()) {
+                sb.append("{");
+                if (value.getValue() != null) {
+                    sb.append("value=").append(value.getValue());
+                }
+                if (value.getType() != null) {
+                    sb.append(" type=").append(value.getType());
+                }
+                if (!value.getValues().isEmpty()) {
+                    sb.append(" values=").append(new TreeMap<String, String>(value.getValues()));
+                }
+                describe(value.getPropertyMap(), sb);
+                sb.append("}");
+            }
+            sb.append("]");
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testParseExtCompatibility() throws Exception {
+        for (String[] document : EXT_DOCUMENTS) {
+            assertEquals(document[1], describe(JsonLdParser.parseExt(document[0])));
+        }
+
+        String annotation = JsonLdAnnotationTest.createJsonLdObject().toString();
+        assertEquals("{oa=http://www.w3.org/ns/oa-context-20130208.json} <> @type=[{value=oa:Annotation}]"
+                + " annotatedAt=[{value=2012-11-10T09:08:07}]"
+                + " annotatedBy=[{ values={@type=http://xmlns.com/foaf/0.1/person, name=annonymous web user}}]"
+                + " body=[{ values={chars=Vlad Tepes, dc:language=ro, format=text/plain}}{ values={foaf:page=https://www.freebase.com/m/035br4}}]"
+                + " motivatedBy=[{value=oa:tagging}] serializedAt=[{value=2012-11-10T09:08:07}]"
+                + " serializedBy=[{ values={@type=prov:SoftwareAgent, foaf:homepage=http://annotorious.github.io/, name=Annotorious}}]"
+                + " styledBy=[{ values={@type=oa:CssStyle, source=http://annotorious.github.io/latest/themes/dark/annotorious-dark.css, styleClass=annotorious-popup}}]"
+                + " target=[{ selector=[{ values={@type=}}] source=[{ values={@id=http://europeana.eu/portal/record//15502/GG_8285.html, @type=dctypes:Text, format=text/html}}]}]",
+                describe(JsonLdParser.parseExt(annotation)));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testParseExtKeepsValues() throws Exception {
+        // values the string splitting used to garble
+        String document = "{\"target\":{\"selector\":{\"@type\":\"x\",\"refinedBy\":{\"start\":1,\"exact\":\"a}b\"}},"
+                + "\"scope\":[\"http://a.org/1\",\"http://a.org/2\"]},\"body\":[{\"value\":\"Doe\\\",\\\"John\"},\"http://a.org/b\"]}";
+        assertEquals("{} <> body=[{ values={value=Doe\",\"John}}{value=http://a.org/b}]"
+                + " target=[{ scope=[{value=http://a.org/1}{value=http://a.org/2}]"
+                + " selector=[{ values={@type=x} refinedBy=[{ values={exact=a}b, start=1}}]}]}]",
+                describe(JsonLdParser.parseExt(document)));
+    }
+
+    /**
+     * @return a document with the given number of subjects in an @id array,
+     *         some of them with their own context and profile.
+     */
+    private static String createSubjects(int count) {
+        StringBuilder sb = new StringBuilder("{\"@context\":{\"iks\":\"http://iks-project.eu/ont/\"},\"@id\":[");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "" : ",\n  ").append('{');
+            if (i % 7 == 0) {
+                sb.append("\"@context\":{\"ns").append(i % 3).append("\":\"http://example.org/").append(i).append("/\"},");
+            }
+            if (i % 5 == 0) {
+                sb.append("\"@profile\":\"iks:friendOf\",");
+            }
+            if (i % 50 == 0) {
+                // an IRI subject of the same name in every chunk
+                sb.append("\"@id\":\"http://example.org/s\",");
+            }
+            sb.append("\"name\":\"Subject ").append(i).append(" \\\"q\\\"\",\"knows\":[{\"@id\":\"http://example.org/")
+                    .append(i + 1).append("\"},{\"name\":\"x\",\"tags\":[\"a\",\"]\"]}],\"n\":").append(i).append('}');
+        }
+        return sb.append("],\"@profile\":\"iks:employeeOf\",\"label\":\"root\"}").toString();
+    }
+
+    @Test
+    public void testParseLazyMatchesParse() throws Exception {
+        for (String document : DOCUMENTS) {
+            assertEquals(document, describe(JsonLdParser.parse(document)), describe(JsonLdParser.parseLazy(document)));
+        }
+        // lenient syntax is left to Jettison
+        String lenient = "{'@context':{'foaf':'http://xmlns.com/foaf/0.1/'},'foaf:name':'x'}";
+        assertEquals(describe(JsonLdParser.parse(lenient)), describe(JsonLdParser.parseLazy(lenient)));
+    }
+
+    @Test
+    public void testParseLazyBuildsPropertiesOnDemand() throws Exception {
+        String document = "{\"@context\":{\"foaf\":\"http://xmlns.com/foaf/0.1/\"},\"@type\":\"foaf:Person\","
+                + "\"foaf:name\":\"Bob\",\"foaf:knows\":{\"@id\":\"foaf:alice\", \"since\" : [1, 2.50]}}";
+        JsonLd jsonLd = JsonLdParser.parseLazy(document);
+        JsonLdLazyParser.LazyResource resource = (JsonLdLazyParser.LazyResource) jsonLd.getResource("_:bnode1");
+
+        assertEquals("Bob", resource.getProperty("foaf:name").getValues().get(0).getValue());
+        assertFalse(resource.isRaw("foaf:name"));
+        assertTrue(resource.isRaw("foaf:knows"));
+        assertTrue(resource.isRaw("@type"));
+
+        // untouched values are written as they are, with the namespaces they use
+        String written = jsonLd.toString();
+        assertTrue(written, written.contains("\"knows\":{\"@id\":\"foaf:alice\", \"since\" : [1, 2.50]}"));
+        assertTrue(written, written.contains("\"@type\":\"foaf:Person\""));
+        assertTrue(written, written.contains("\"foaf\":\"http://xmlns.com/foaf/0.1/\""));
+
+        // once everything is built, the output is the one of the eager parser
+        JsonLd built = JsonLdParser.parseLazy(document);
+        built.getResource("_:bnode1").getPropertyMap();
+        assertEquals(JsonLdParser.parse(document).toString(), built.toString());
+    }
+
+    @Test
+    public void testParseModel() throws Exception {
+        String document = "{\"@context\":{\"oa\":\"http://www.w3.org/ns/oa#\"},\"@type\":\"oa:Annotation\","
+                + "\"target\":{\"scope\":\"http://a.org/scope\",\"selector\":{\"value\":\"xywh=1,2,3,4\"},"
+                + "\"source\":{\"@id\":\"http://a.org/s\"}},\"tags\":[\"a\",{\"chars\":\"b\"},2],\"empty\":{}}";
+        JsonLd jsonLd = JsonLdParser.parseModel(document);
+        JsonLdResource resource = jsonLd.getResource("_:bnode1");
+        assertEquals("{http://www.w3.org/ns/oa#=oa} <_:bnode1> @type=[{value=oa:Annotation}] empty=[{}]"
+                + " tags=[{value=a}{ chars=[{value=b}]}{value=2}]"
+                + " target=[{ scope=[{value=http://a.org/scope}] selector=[{ value=[{value=xywh=1,2,3,4}]}]"
+                + " source=[{value=http://a.org/s type=@id}]}]", describe(jsonLd));
+        assertEquals(3, resource.getProperty("tags").getValues().size());
+
+        // nested values are written as JSON again
+        assertEquals("{\"@context\":{\"Annotation\":\"http://www.w3.org/ns/oa#Annotation\"},\"@id\":\"_:bnode1\","
+                + "\"@type\":\"Annotation\",\"empty\":{},\"tags\":[\"a\",{\"chars\":\"b\"},2],"
+                + "\"target\":{\"scope\":\"http://a.org/scope\",\"selector\":{\"value\":\"xywh=1,2,3,4\"},"
+                + "\"source\":{\"@id\":\"http://a.org/s\"}}}", jsonLd.toString());
+
+        // documents without nested values are the same as with parse()
+        for (String simple : new String[] {DOCUMENTS[0], DOCUMENTS[1], DOCUMENTS[3]}) {
+            assertEquals(simple, describe(JsonLdParser.parse(simple)), describe(JsonLdParser.parseModel(simple)));
+        }
+    }
+
+    @Test
+    public void testParseRoundTrip() throws Exception {
+        String source = "{\"@context\":{\"oa\":\"http://www.w3.org/ns/oa#\"},\"@type\":\"oa:Annotation\","
+                + "\"target\":{\"scope\":\"http://a.org/scope\",\"selector\":{\"value\":\"xywh=1,2,3,4\"},"
+                + "\"source\":{\"@id\":\"http://a.org/s\"}},\"tags\":[\"a\",{\"chars\":\"b\"},2],\"empty\":{}}";
+        assertEquals(describe(JsonLdParser.parseModel(source)), describe(JsonLdParser.parseRoundTrip(source)));
+        // a document in the form JsonLd writes it is written again as with parseModel()
+        String canonical = "{\"@context\":{\"Annotation\":\"http://www.w3.org/ns/oa#Annotation\"},"
+                + "\"@type\":\"Annotation\",\"empty\":{},\"tags\":[\"a\",{\"chars\":\"b\"},2],"
+                + "\"target\":{\"scope\":\"http://a.org/scope\",\"selector\":{\"value\":\"xywh=1,2,3,4\"},"
+                + "\"source\":{\"@id\":\"http://a.org/s\"}}}";
+        assertEquals(JsonLdParser.parseModel(canonical).toString(), JsonLdParser.parseRoundTrip(canonical).toString());
+
+        // unmodified values keep their member order and formatting
+        String document = "{\"@context\":{\"oa\":\"http://www.w3.org/ns/oa#\"},\"@type\":\"oa:Annotation\","
+                + "\"target\":{\"selector\": {\"value\":\"xywh=1,2,3,4\", \"type\":\"FragmentSelector\"},"
+                + "\"scope\":\"http://a.org/scope\"},\"tags\":[\"a\",{ \"chars\" : \"b\" },2],"
+                + "\"body\":{\"value\":\"x\",\"format\":\"text/plain\"}}";
+        JsonLd jsonLd = JsonLdParser.parseRoundTrip(document);
+        String target = "\"target\":{\"selector\": {\"value\":\"xywh=1,2,3,4\", \"type\":\"FragmentSelector\"},"
+                + "\"scope\":\"http://a.org/scope\"}";
+        String written = jsonLd.toString();
+        assertTrue(written, written.contains(target));
+        assertTrue(written, written.contains("\"tags\":[\"a\",{ \"chars\" : \"b\" },2]"));
+        assertTrue(written, written.contains("\"body\":{\"value\":\"x\",\"format\":\"text/plain\"}"));
+        assertTrue(jsonLd.toString(4).contains(target.substring("\"target\":".length())));
+
+        // a modified value is serialized from its properties, the others stay as they are
+        JsonLdResource resource = jsonLd.getResource("_:bnode1");
+        JsonLdPropertyValue body = resource.getProperty("body").getValues().get(0);
+        body.getProperty("value").getValues().get(0).setValue("y");
+        written = jsonLd.toString();
+        assertTrue(written, written.contains("\"body\":{\"format\":\"text/plain\",\"value\":\"y\"}"));
+        assertTrue(written, written.contains(target));
+
+        // changes of nested values reach the values containing them
+        JsonLdPropertyValue target0 = resource.getProperty("target").getValues().get(0);
+        target0.getProperty("selector").getValues().get(0).putProperty(new JsonLdProperty("conformsTo", "z"));
+        written = jsonLd.toString();
+        assertTrue(written, written.contains("\"target\":{\"scope\":\"http://a.org/scope\",\"selector\":"
+                + "{\"conformsTo\":\"z\",\"type\":\"FragmentSelector\",\"value\":\"xywh=1,2,3,4\"}}"));
+        assertTrue(written, written.contains("\"tags\":[\"a\",{ \"chars\" : \"b\" },2]"));
+
+        // changes made through the returned collections are tracked as well
+        JsonLdPropertyValue tag = resource.getProperty("tags").getValues().get(1);
+        tag.getPropertyMap().remove("chars");
+        assertTrue(jsonLd.toString(), jsonLd.toString().contains("\"tags\":[\"a\",{},2]"));
+
+        jsonLd = JsonLdParser.parseRoundTrip(document);
+        resource = jsonLd.getResource("_:bnode1");
+        body = resource.getProperty("body").getValues().get(0);
+        body.getProperty("format").getValues().set(0, new JsonLdPropertyValue("text/html"));
+        Iterator<JsonLdProperty> targetProperties = resource.getProperty("target").getValues().get(0)
+                .getPropertyMap().values().iterator();
+        targetProperties.next();
+        targetProperties.remove();
+        written = jsonLd.toString();
+        assertTrue(written, written.contains("\"body\":{\"format\":\"text/html\",\"value\":\"x\"}"));
+        assertFalse(written, written.contains(target));
+        assertTrue(written, written.contains("\"tags\":[\"a\",{ \"chars\" : \"b\" },2]"));
+
+        try {
+            JsonLdParser.parseRoundTrip("[]");
+            fail("No JSON object");
+        } catch (JsonParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseRoundTripKeepsNamespaces() throws Exception {
+        // the verbatim values use the CURIEs of the document
+        String document = "{\"@context\":{\"dc\":\"http://purl.org/dc/terms/\"},"
+                + "\"http://ex.org/p\":{\"@type\":\"dc:Text\",\"http://purl.org/dc/terms/format\":\"text/plain\"}}";
+        assertEquals("{\"@context\":{\"dc\":\"http://purl.org/dc/terms/\"},\"@id\":\"_:bnode1\","
+                + "\"http://ex.org/p\":{\"@type\":\"dc:Text\",\"http://purl.org/dc/terms/format\":\"text/plain\"}}",
+                JsonLdParser.parseRoundTrip(document).toString());
+
+        document = "{\"@context\":{\"oa\":\"http://www.w3.org/ns/oa#\",\"dc\":\"http://purl.org/dc/terms/\"},"
+                + "\"oa:hasBody\":{\"dc:title\":\"T\",\"dc:format\":\"text/plain\"}}";
+        assertEquals("{\"@context\":{\"dc\":\"http://purl.org/dc/terms/\","
+                + "\"hasBody\":\"http://www.w3.org/ns/oa#hasBody\",\"oa\":\"http://www.w3.org/ns/oa#\"},"
+                + "\"@id\":\"_:bnode1\",\"hasBody\":{\"dc:title\":\"T\",\"dc:format\":\"text/plain\"}}",
+                JsonLdParser.parseRoundTrip(document).toString());
+
+        // the source of the values is not part of their reflective serialization
+        JsonLdPropertyValue model = JsonLdParser.parseModel(document).getResource("_:bnode1")
+                .getProperty("oa:hasBody").getValues().get(0);
+        JsonLdPropertyValue roundTrip = JsonLdParser.parseRoundTrip(document).getResource("_:bnode1")
+                .getProperty("oa:hasBody").getValues().get(0);
+        assertEquals(new Gson().toJson(model), new Gson().toJson(roundTrip));
+    }
+
+    @Test
+    public void testParseRoundTripTracksNestedValues() throws Exception {
+        // a modified array nested in an array is serialized like a new one
+        String document = "{\"sel\":{\"start\":1, \"v\":[[1,2],[3]]}}";
+        JsonLd jsonLd = JsonLdParser.parseRoundTrip(document);
+        assertTrue(jsonLd.toString(), jsonLd.toString().contains("\"sel\":{\"start\":1, \"v\":[[1,2],[3]]}"));
+        JsonLdPropertyValue sel = jsonLd.getResource("_:bnode1").getProperty("sel").getValues().get(0);
+        JsonLdPropertyValue v = sel.getProperty("v").getValues().get(0);
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) v.getValue();
+        list.add(99);
+        assertEquals(JsonLdParser.parseModel("{\"sel\":{\"start\":1,\"v\":[[1,2,99],[3]]}}").toString(),
+                jsonLd.toString());
+
+        // so are the lists and maps nested in it
+        document = "{\"sel\":{\"v\":[[[1],{\"a\":[2]}]]}}";
+        jsonLd = JsonLdParser.parseRoundTrip(document);
+        sel = jsonLd.getResource("_:bnode1").getProperty("sel").getValues().get(0);
+        list = (List<Object>) sel.getProperty("v").getValues().get(0).getValue();
+        @SuppressWarnings("unchecked")
+        List<Object> inner = (List<Object>) list.get(0);
+        inner.add(3);
+        assertEquals(JsonLdParser.parseModel("{\"sel\":{\"v\":[[[1,3],{\"a\":[2]}]]}}").toString(),
+                jsonLd.toString());
+
+        document = "{\"sel\":{\"v\":[[{\"a\":[2]}]]}}";
+        jsonLd = JsonLdParser.parseRoundTrip(document);
+        sel = jsonLd.getResource("_:bnode1").getProperty("sel").getValues().get(0);
+        list = (List<Object>) sel.getProperty("v").getValues().get(0).getValue();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) list.get(0);
+        map.put("b", 4);
+        assertEquals(JsonLdParser.parseModel("{\"sel\":{\"v\":[[{\"a\":[2],\"b\":4}]]}}").toString(),
+                jsonLd.toString());
+    }
+
+    @Test
+    public void testParseParallelMatchesSequential() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int count : new int[] { 1, JsonLdParallelParser.MIN_SUBJECTS, 500 }) {
+                String document = createSubjects(count);
+                String expected = describe(JsonLdParser.parse(document));
+                assertEquals(expected, describe(JsonLdParser.parseParallel(document, pool)));
+                assertEquals(expected, describe(JsonLdParser.parseParallel(document)));
+                assertEquals(withoutHashCodes(JsonLdParser.parse(document)),
+                        withoutHashCodes(JsonLdParser.parseParallel(document, pool)));
+            }
+
+            // an element that is no object ends the subjects
+            String document = createSubjects(300).replace("{\"name\":\"Subject 200 ", "\"x\",{\"name\":\"Subject 200 ");
+            JsonLd jsonLd = JsonLdParser.parseParallel(document, pool);
+            assertEquals(describe(JsonLdParser.parse(document)), describe(jsonLd));
+            assertTrue(jsonLd.getResourceSubjects().contains("_:bnode200"));
+            assertFalse(jsonLd.getResourceSubjects().contains("_:bnode201"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseParallelErrors() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String document = createSubjects(300).replace("\"n\":250}", "\"n\":250:}");
+            try {
+                JsonLdParser.parseParallel(document, pool);
+                fail("No JSONException");
+            } catch (JSONException e) {
+                // expected
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @SuppressWarnings("unused")
     private void toConsole(String actual) {
         System.out.println(actual);
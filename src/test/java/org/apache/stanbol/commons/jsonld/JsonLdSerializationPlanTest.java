@@ -0,0 +1,108 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class JsonLdSerializationPlanTest {
+
+    private static JsonLd createPerson(String name) {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setUseCuries(false);
+        jsonLd.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+        jsonLd.addNamespacePrefix("http://iks-project.eu/ont/", "iks");
+
+        JsonLdResource resource = new JsonLdResource();
+        resource.setSubject("http://iks-project.eu/ont/" + name);
+        resource.addType("http://xmlns.com/foaf/0.1/Person");
+        resource.putProperty("http://xmlns.com/foaf/0.1/name", name);
+        resource.putProperty("http://xmlns.com/foaf/0.1/age", 42);
+        resource.putPropertyType("http://xmlns.com/foaf/0.1/age", "http://www.w3.org/2001/XMLSchema#int");
+        jsonLd.put(resource);
+        return jsonLd;
+    }
+
+    private static void assertSameOutput(JsonLd expected, JsonLd planned) {
+        String generic = expected.toString(2);
+        assertEquals(generic, planned.toString(2));
+        assertEquals(expected.toString(), planned.toString());
+        assertEquals(new String(expected.toUtf8Bytes(), StandardCharsets.UTF_8),
+                new String(planned.toUtf8Bytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPlanFromSample() {
+        JsonLdSerializationPlan plan = JsonLdSerializationPlan.compile(createPerson("sample"));
+        assertTrue(plan.getKeyCount() > 0);
+
+        JsonLd planned = createPerson("bob");
+        planned.setSerializationPlan(plan);
+        assertTrue(plan.appliesTo(planned));
+        assertSameOutput(createPerson("bob"), planned);
+
+        JsonLd annotation = JsonLdAnnotationTest.createJsonLdObject();
+        JsonLdSerializationPlan annotationPlan = JsonLdSerializationPlan.compile(annotation);
+        JsonLd plannedAnnotation = JsonLdAnnotationTest.createJsonLdObject();
+        plannedAnnotation.setSerializationPlan(annotationPlan);
+        assertSameOutput(JsonLdAnnotationTest.createJsonLdObject(), plannedAnnotation);
+    }
+
+    @Test
+    public void testDocumentsNotMatchingThePlan() {
+        JsonLdSerializationPlan plan = JsonLdSerializationPlan.compile(createPerson("sample"));
+
+        // unknown keys, including one only differing in case from a known key
+        JsonLd expected = createPerson("bob");
+        expected.getResource("http://iks-project.eu/ont/bob").putProperty("http://xmlns.com/foaf/0.1/Name", "Robert");
+        expected.getResource("http://iks-project.eu/ont/bob").putProperty("http://xmlns.com/foaf/0.1/nick", "Bobby");
+        JsonLd planned = createPerson("bob");
+        planned.getResource("http://iks-project.eu/ont/bob").putProperty("http://xmlns.com/foaf/0.1/Name", "Robert");
+        planned.getResource("http://iks-project.eu/ont/bob").putProperty("http://xmlns.com/foaf/0.1/nick", "Bobby");
+        planned.setSerializationPlan(plan);
+        assertSameOutput(expected, planned);
+
+        // other namespaces, the plan is not used
+        expected = createPerson("alice");
+        expected.addNamespacePrefix("http://xmlns.com/foaf/0.1/name", "n");
+        planned = createPerson("alice");
+        planned.addNamespacePrefix("http://xmlns.com/foaf/0.1/name", "n");
+        planned.setSerializationPlan(plan);
+        assertFalse(plan.appliesTo(planned));
+        assertSameOutput(expected, planned);
+    }
+
+    @Test
+    public void testPlanFromProfile() {
+        JsonLdProfile profile = new JsonLdProfile();
+        profile.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+        profile.addNamespacePrefix("http://iks-project.eu/ont/", "iks");
+        profile.addType("http://xmlns.com/foaf/0.1/name", "http://www.w3.org/2001/XMLSchema#string");
+        profile.addType("http://xmlns.com/foaf/0.1/age", "http://www.w3.org/2001/XMLSchema#int");
+        JsonLdSerializationPlan plan = JsonLdSerializationPlan.compile(profile);
+
+        JsonLd planned = createPerson("carol");
+        planned.setSerializationPlan(plan);
+        assertTrue(plan.appliesTo(planned));
+        assertSameOutput(createPerson("carol"), planned);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks of the string splitting helpers of {@link JsonLdParser} and
+ * their {@link JsonLdSplitter} alternatives, see {@link MicroBenchmark}.
+ */
+public class JsonLdSplitterBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < 10; i++) {
+			sb.append(i == 0 ? "" : ",").append("\"property").append(i).append("\":\"http://example.org/value/")
+					.append(i).append('"');
+		}
+		final String map = sb.append('}').toString();
+		sb.setLength(0);
+		for (int i = 0; i < 10; i++) {
+			sb.append(i == 0 ? "" : ",").append(map);
+		}
+		final String array = sb.toString();
+
+		final JsonLdSplitter splitter = new JsonLdSplitter();
+		final Map<String, String> reusedMap = new HashMap<String, String>();
+		final List<String> reusedList = new ArrayList<String>();
+		final int[] count = new int[1];
+		final JsonLdSplitter.EntryVisitor entryVisitor = new JsonLdSplitter.EntryVisitor() {
+			public void entry(CharSequence key, CharSequence value) {
+				count[0] += key.length() + value.length();
+			}
+		};
+		final JsonLdSplitter.PartVisitor partVisitor = new JsonLdSplitter.PartVisitor() {
+			public void part(CharSequence text, int start, int end) {
+				count[0] += end - start;
+			}
+		};
+
+		MicroBenchmark.run("10 entries JsonLdParser.splitToMap()", new Callable<Object>() {
+			public Object call() {
+				return JsonLdParser.splitToMap(map);
+			}
+		});
+		MicroBenchmark.run("10 entries JsonLdSplitter.splitToMap(), reused Map", new Callable<Object>() {
+			public Object call() {
+				return splitter.splitToMap(map, reusedMap);
+			}
+		});
+		MicroBenchmark.run("10 entries JsonLdSplitter.splitToMap(), visitor", new Callable<Object>() {
+			public Object call() {
+				splitter.splitToMap(map, entryVisitor);
+				return count;
+			}
+		});
+
+		MicroBenchmark.run("10 objects JsonLdParser.splitToArray()", new Callable<Object>() {
+			public Object call() {
+				return JsonLdParser.splitToArray(array);
+			}
+		});
+		MicroBenchmark.run("10 objects JsonLdSplitter.splitToArray(), reused List", new Callable<Object>() {
+			public Object call() {
+				return splitter.splitToArray(array, reusedList);
+			}
+		});
+		MicroBenchmark.run("10 objects JsonLdSplitter.splitToArray(), visitor", new Callable<Object>() {
+			public Object call() {
+				splitter.splitToArray(array, partVisitor);
+				return count;
+			}
+		});
+	}
+}
@@ -0,0 +1,97 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonLdSplitterTest {
+
+    private static final String[] MAPS = {
+        "",
+        "{\"a\":\"b\",\"c\":\"d\"}",
+        "{\"@id\":\"http://example.org/a\",\"@type\":\"oa:Tag\",\"chars\":\"Vlad Tepes\"}",
+        "{\"a\":{\"b\":\"c\"},\"d\":\"e\"}",
+        "\"a\":\"b",
+        "a",
+        "\",\"a\":\"b\",\"\",\"c\":\"d\",\"\",\"",
+        "},\"a\":\"b\":\"c\",\"d\":\"\"",
+        "a\":\"x\"y\"z\",\"a\":\"w",
+        "\":\"b\",\"c\":\""
+    };
+
+    private static final String[] ARRAYS = {
+        "",
+        "a",
+        "{\"a\":1},{\"b\":2},{\"c\":3}",
+        "},{a},{},{},{",
+        "},{},{",
+        "{\"a\":{\"b\":1}},{\"c\":{\"d\":2}},{\"e\":3}",
+        "}},{}},{x}},{",
+        "}}},{{"
+    };
+
+    @Test
+    public void testSplitToMapMatchesParser() {
+        JsonLdSplitter splitter = new JsonLdSplitter();
+        Map<String, String> map = new HashMap<String, String>();
+        for (String text : MAPS) {
+            assertEquals(text, JsonLdParser.splitToMap(text), splitter.splitToMap(text, map));
+            assertEquals(text, JsonLdParser.splitToMap(text),
+                    splitter.splitToMap(new StringBuilder(text), new HashMap<String, String>()));
+        }
+    }
+
+    @Test
+    public void testSplitToArrayMatchesParser() {
+        JsonLdSplitter splitter = new JsonLdSplitter();
+        List<String> list = new ArrayList<String>();
+        for (String text : ARRAYS) {
+            assertArrayEquals(text, JsonLdParser.splitToArray(text), splitter.splitToArray(text, list).toArray());
+            assertArrayEquals(text, JsonLdParser.splitAnnotationListStringToArray(text),
+                    splitter.splitAnnotationListStringToArray(text, list).toArray());
+        }
+    }
+
+    @Test
+    public void testVisitors() {
+        JsonLdSplitter splitter = new JsonLdSplitter();
+        final StringBuilder sb = new StringBuilder();
+        splitter.splitToMap("{\"a\":\"b\",\"c\":\"d\"e\"}", new JsonLdSplitter.EntryVisitor() {
+            public void entry(CharSequence key, CharSequence value) {
+                sb.append(key).append('=').append(value).append(';');
+            }
+        });
+        assertEquals("{\"a=b;c=de};", sb.toString());
+
+        final List<String> parts = new ArrayList<String>();
+        splitter.splitToArray("{a},{b}", new JsonLdSplitter.PartVisitor() {
+            public void part(CharSequence text, int start, int end) {
+                parts.add(text.subSequence(start, end).toString());
+            }
+        });
+        assertEquals(Arrays.asList("{a", "b}"), parts);
+    }
+}
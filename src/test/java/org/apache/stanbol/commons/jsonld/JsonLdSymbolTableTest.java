@@ -0,0 +1,129 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonLdSymbolTableTest {
+
+    private static String createDocument(String name) {
+        return "{\"@context\":{\"foaf\":\"http://xmlns.com/foaf/0.1/\"},\"@type\":\"foaf:Person\","
+                + "\"foaf:name\":\"" + name + "\",\"foaf:knows\":{\"@id\":\"http://example.org/bob\"}}";
+    }
+
+    @Test
+    public void testIntern() {
+        JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+        String name = symbols.intern(new String("foaf:name"));
+        assertSame(name, symbols.intern(new String("foaf:name")));
+        assertSame(name, symbols.intern("xfoaf:namex".toCharArray(), 1, 9));
+        assertEquals(null, symbols.intern(null));
+        assertEquals(1, symbols.size());
+
+        String chars = symbols.intern("foaf:knows".toCharArray(), 0, 10);
+        assertEquals("foaf:knows", chars);
+        assertSame(chars, symbols.intern(new String("foaf:knows")));
+        assertSame(chars, symbols.intern("xfoaf:knows".getBytes(StandardCharsets.US_ASCII), 1, 10));
+
+        String bytes = symbols.intern("@type".getBytes(StandardCharsets.US_ASCII), 0, 5);
+        assertEquals("@type", bytes);
+        assertSame(bytes, symbols.intern("@type".toCharArray(), 0, 5));
+
+        symbols.clear();
+        assertEquals(0, symbols.size());
+        assertNotSame(name, symbols.intern(new String("foaf:name")));
+    }
+
+    @Test
+    public void testBounds() {
+        JsonLdSymbolTable symbols = new JsonLdSymbolTable(3, 4);
+        assertEquals(4, symbols.getCapacity());
+        assertEquals(4, symbols.getMaxLength());
+
+        String longString = new String("abcde");
+        symbols.intern(longString);
+        assertNotSame(longString, symbols.intern(new String("abcde")));
+        assertEquals(0, symbols.size());
+
+        for (int i = 0; i < 100; i++) {
+            symbols.intern(Integer.toString(i));
+        }
+        assertEquals(4, symbols.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new JsonLdSymbolTable(0, 16);
+    }
+
+    @Test
+    public void testParseSharesStrings() throws Exception {
+        JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+        JsonLd first = JsonLdParser.parse(createDocument("Alice"), symbols);
+        JsonLd second = JsonLdParser.parse(createDocument("Carol"), symbols);
+        assertSharedStrings(first, second);
+        assertEquals(JsonLdParser.parse(createDocument("Carol")).toString(), second.toString());
+    }
+
+    @Test
+    public void testStreamParseSharesStrings() throws Exception {
+        JsonLdSymbolTable symbols = new JsonLdSymbolTable();
+        JsonLd first = JsonLdParser.parse(new StringReader(createDocument("Alice")), symbols);
+        JsonLd second = JsonLdParser.parse(new StringReader(createDocument("Carol")), symbols);
+        assertSharedStrings(first, second);
+        assertEquals(JsonLdParser.parse(new StringReader(createDocument("Carol"))).toString(), second.toString());
+
+        JsonLd model = JsonLdParser.parseModel(new StringReader(createDocument("Dave")), symbols);
+        assertSharedStrings(first, model);
+
+        byte[] utf8 = createDocument("Eve").getBytes(StandardCharsets.UTF_8);
+        assertSharedStrings(first, JsonLdParser.parse(utf8, 0, utf8.length, symbols));
+    }
+
+    private static void assertSharedStrings(JsonLd first, JsonLd second) {
+        JsonLdResource firstSubject = first.getResource("_:bnode1");
+        JsonLdResource secondSubject = second.getResource("_:bnode1");
+        assertSame(firstSubject.getProperty("@type").getValues().get(0).getValue(),
+                secondSubject.getProperty("@type").getValues().get(0).getValue());
+        assertSame(firstSubject.getProperty("foaf:name").getName(),
+                secondSubject.getProperty("foaf:name").getName());
+        assertSame(first.getNamespacePrefixMap().keySet().iterator().next(),
+                second.getNamespacePrefixMap().keySet().iterator().next());
+
+        Map<String, JsonLdProperty> firstProperties = firstSubject.getPropertyMap();
+        Map<String, JsonLdProperty> secondProperties = secondSubject.getPropertyMap();
+        for (String name : firstProperties.keySet()) {
+            for (String other : secondProperties.keySet()) {
+                if (name.equals(other)) {
+                    assertSame(name, other);
+                }
+            }
+        }
+        Object firstKnows = firstSubject.getProperty("foaf:knows").getValues().get(0).getValue();
+        Object secondKnows = secondSubject.getProperty("foaf:knows").getValues().get(0).getValue();
+        assertEquals("http://example.org/bob", secondKnows);
+        assertSame(firstKnows, secondKnows);
+    }
+}
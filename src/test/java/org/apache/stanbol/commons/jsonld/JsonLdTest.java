@@ -17,6 +17,11 @@
 package org.apache.stanbol.commons.jsonld;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -1039,4 +1044,87 @@ public class JsonLdTest {
         s = s.replace("\n", "\\n");
         System.out.println(s);
     }
+
+    @Test
+    public void testRawJsonValues() {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setUseTypeCoercion(false);
+        jsonLd.setUseCuries(true);
+        jsonLd.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+
+        JsonLdResource jsonLdResource = new JsonLdResource();
+        jsonLdResource.putProperty("foaf:knows", new JsonLdRawJson("{\"foaf:name\":\"Bob\"}"));
+        JsonLdProperty interests = new JsonLdProperty("foaf:interest");
+        interests.addSingleValue(new JsonLdRawJson("[1,2]"));
+        interests.addSingleValue("Music");
+        jsonLdResource.putProperty(interests);
+        jsonLd.put(jsonLdResource);
+
+        String expected = "{\"@context\":{\"foaf\":\"http://xmlns.com/foaf/0.1/\"},\"foaf:interest\":[[1,2],\"Music\"],\"foaf:knows\":{\"foaf:name\":\"Bob\"}}";
+        assertEquals(expected, jsonLd.toString());
+    }
+
+    @Test
+    public void testSerializationMatchesJsonMap() {
+        JsonLd jsonLd = new JsonLd();
+        jsonLd.setUseTypeCoercion(true);
+        jsonLd.setUseCuries(true);
+        jsonLd.addNamespacePrefix("http://xmlns.com/foaf/0.1/", "foaf");
+
+        JsonLdResource r1 = new JsonLdResource();
+        r1.setSubject("_:bnode1");
+        r1.addType("foaf:Person");
+        r1.addType("foaf:Agent");
+        // keys only differing in case are the same key for the comparator
+        r1.putProperty("foaf:name", "Bob");
+        r1.putProperty("foaf:Name", "Robert");
+        r1.putProperty("foaf:age", 42);
+        r1.putPropertyType("foaf:age", "xsd:int");
+        JsonLdProperty knows = new JsonLdProperty("foaf:knows");
+        knows.addSingleValue(new JsonLdIRI("_:bnode2"));
+        knows.addSingleValue("Alice");
+        r1.putProperty(knows);
+        jsonLd.put(r1);
+
+        JsonLdResource r2 = new JsonLdResource();
+        r2.setSubject("_:bnode2");
+        r2.putProperty("foaf:name", "Alice");
+        jsonLd.put(r2);
+
+        assertEquals(JsonSerializer.toString(jsonLd.getJsonMap(), 2), jsonLd.toString(2));
+        assertEquals(JsonSerializer.toString(jsonLd.getJsonMap()), jsonLd.toString());
+
+        jsonLd.setUseJointGraphs(false);
+        assertEquals(JsonSerializer.toString(jsonLd.getJsonList(), 2), jsonLd.toString(2));
+        // the pooled objects are reused for the next document
+        assertEquals(JsonSerializer.toString(jsonLd.getJsonList()), jsonLd.toString());
+    }
+
+    @Test
+    public void testNodePoolDropsGrownNodes() {
+        // room for 8 entries per node or list
+        JsonLdNodePool pool = new JsonLdNodePool(64);
+        JsonLdNode small = pool.newNode(null, null);
+        small.put("a", "b");
+        JsonLdNode large = pool.newNode(null, null);
+        List<Object> smallList = pool.newList();
+        smallList.add("a");
+        List<Object> largeList = pool.newList();
+        for (int i = 0; i < 100; i++) {
+            large.put("k" + i, i);
+            largeList.add(i);
+        }
+        pool.reset();
+
+        assertSame(small, pool.newNode(null, null));
+        JsonLdNode replaced = pool.newNode(null, null);
+        assertNotSame(large, replaced);
+        assertTrue(replaced.isEmpty());
+        assertTrue(replaced.capacity() <= 8);
+        assertSame(smallList, pool.newList());
+        List<Object> replacedList = pool.newList();
+        assertNotSame(largeList, replacedList);
+        assertTrue(replacedList.isEmpty());
+    }
+
 }
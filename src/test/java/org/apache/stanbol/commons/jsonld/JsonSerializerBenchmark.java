@@ -0,0 +1,116 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Serialization benchmarks based on the {@link JsonLdAnnotationTest}
+ * fixtures, see {@link MicroBenchmark}.
+ */
+public class JsonSerializerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final JsonLd annotation = JsonLdAnnotationTest.createJsonLdObject();
+		final Map<String, Object> annotationMap = annotation.getJsonMap();
+
+		MicroBenchmark.run("annotation map toString()", new Callable<Object>() {
+			public Object call() {
+				return JsonSerializer.toString(annotationMap);
+			}
+		});
+		MicroBenchmark.run("annotation map toString(4)", new Callable<Object>() {
+			public Object call() {
+				return JsonSerializer.toString(annotationMap, 4);
+			}
+		});
+		MicroBenchmark.run("annotation JsonLd.toString()", new Callable<Object>() {
+			public Object call() {
+				return annotation.toString();
+			}
+		});
+
+		final JsonLd plannedAnnotation = JsonLdAnnotationTest.createJsonLdObject();
+		plannedAnnotation.setSerializationPlan(JsonLdSerializationPlan.compile(JsonLdAnnotationTest.createJsonLdObject()));
+		MicroBenchmark.run("annotation JsonLd.toString() with plan", new Callable<Object>() {
+			public Object call() {
+				return plannedAnnotation.toString();
+			}
+		});
+
+		final OutputStream sink = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+		MicroBenchmark.run("annotation toString() + getBytes()", new Callable<Object>() {
+			public Object call() throws IOException {
+				sink.write(annotation.toString().getBytes(StandardCharsets.UTF_8));
+				sink.write('\n');
+				return sink;
+			}
+		});
+		final JsonLdBatchWriter batchWriter = new JsonLdBatchWriter(sink);
+		MicroBenchmark.run("annotation JsonLdBatchWriter.write()", new Callable<Object>() {
+			public Object call() throws IOException {
+				batchWriter.write(annotation);
+				return batchWriter;
+			}
+		});
+
+		runEscaping("ascii", createText("The quick brown fox jumps over the lazy dog. ", 4096));
+		runEscaping("mixed unicode",
+				createText("Vlad \u021aepe\u0219, Dr\u0103cule\u0219ti \u5438\u8840\u9b3c \u00e9t\u00e9 ", 4096));
+		runEscaping("escape heavy", createText("\"a\"\tb\\c\nd\u0001 ", 4096));
+	}
+
+	private static String createText(String pattern, int length) {
+		StringBuilder sb = new StringBuilder(length + pattern.length());
+		while (sb.length() < length) {
+			sb.append(pattern);
+		}
+		return sb.substring(0, length);
+	}
+
+	private static void runEscaping(String name, final String text) throws Exception {
+		final JsonCharOutput charOutput = new JsonCharOutput();
+		final JsonUtf8Output utf8Output = new JsonUtf8Output();
+
+		MicroBenchmark.run("appendQuoted chars, " + name + " 4K", new Callable<Object>() {
+			public Object call() {
+				charOutput.reset(Integer.MAX_VALUE);
+				charOutput.appendQuoted(text);
+				return charOutput;
+			}
+		});
+		MicroBenchmark.run("appendQuoted UTF-8, " + name + " 4K", new Callable<Object>() {
+			public Object call() {
+				utf8Output.reset(Integer.MAX_VALUE);
+				utf8Output.appendQuoted(text);
+				return utf8Output;
+			}
+		});
+	}
+}
@@ -0,0 +1,150 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class JsonSerializerTest {
+
+    @Test
+    public void testEmptyContainers() {
+        Map<String, Object> json = new TreeMap<String, Object>();
+        json.put("a", new TreeMap<String, Object>());
+        json.put("b", new ArrayList<Object>());
+        json.put("c", new String[0]);
+
+        assertEquals("{\"a\":{},\"b\":[],\"c\":[]}", JsonSerializer.toString(json));
+        assertEquals("{\n  \"a\": {},\n  \"b\": [],\n  \"c\": []\n}", JsonSerializer.toString(json, 2));
+        assertEquals("{}", JsonSerializer.toString(new TreeMap<String, Object>()));
+        assertEquals("[]", JsonSerializer.toString(new ArrayList<Object>(), 2));
+    }
+
+    @Test
+    public void testNullValuesAreSkipped() {
+        Map<String, Object> json = new TreeMap<String, Object>();
+        json.put("a", "x");
+        json.put("b", null);
+        List<Object> list = new ArrayList<Object>(Arrays.asList(null, "y", null, "z", null));
+        json.put("c", list);
+        json.put("d", null);
+
+        assertEquals("{\"a\":\"x\",\"c\":[\"y\",\"z\"]}", JsonSerializer.toString(json));
+        assertEquals("{\n  \"a\": \"x\",\n  \"c\": [\n    \"y\",\n    \"z\"\n  ]\n}", JsonSerializer.toString(json, 2));
+    }
+
+    @Test
+    public void testNestedSeparators() {
+        Map<String, Object> inner = new TreeMap<String, Object>();
+        inner.put("k", Arrays.<Object>asList("v1", 2));
+        Map<String, Object> json = new TreeMap<String, Object>();
+        json.put("m", inner);
+        json.put("n", Arrays.<Object>asList(inner, inner));
+
+        assertEquals("{\"m\":{\"k\":[\"v1\",2]},\"n\":[{\"k\":[\"v1\",2]},{\"k\":[\"v1\",2]}]}",
+                JsonSerializer.toString(json));
+        assertEquals("[{\"k\":[\"v1\",2]}]", JsonSerializer.toString(Arrays.<Object>asList(inner)));
+    }
+
+    @Test
+    public void testContextReuse() {
+        JsonSerializationContext context = new JsonSerializationContext(16);
+        Map<String, Object> small = new TreeMap<String, Object>();
+        small.put("a", "b");
+        Map<String, Object> large = new TreeMap<String, Object>();
+        large.put("a", "0123456789012345678901234567890123456789");
+
+        assertEquals("{\"a\":\"b\"}", JsonSerializer.toString(small, 0, context));
+        assertEquals("{\"a\":\"0123456789012345678901234567890123456789\"}",
+                JsonSerializer.toString(large, 0, context));
+        assertEquals("{\"a\":\"b\"}", JsonSerializer.toString(small, 0, context));
+        assertEquals("{\"a\":\"b\"}", new String(JsonSerializer.toUtf8(small, 0, context)));
+    }
+
+    @Test
+    public void testNestedUseOfThreadContext() {
+        final Map<String, Object> inner = new TreeMap<String, Object>();
+        inner.put("x", "y");
+        Map<String, Object> json = new TreeMap<String, Object>();
+        // serializes itself through the context of the thread while the outer
+        // map is serialized through it
+        json.put("a", new Object() {
+            @Override
+            public String toString() {
+                return JsonSerializer.toString(inner);
+            }
+        });
+        json.put("b", "c");
+
+        assertEquals("{\"a\":{\"x\":\"y\"},\"b\":\"c\"}", JsonSerializer.toString(json));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        String value = "a\"b\\c\b\f\n\r\t\u0001\u001f/\u00e9\ud83d\ude00 end";
+        String expected = "\"a\\\"b\\\\c\\b\\f\\n\\r\\t\\u0001\\u001f/\u00e9\ud83d\ude00 end\"";
+
+        JsonCharOutput chars = new JsonCharOutput();
+        chars.appendQuoted(value);
+        assertEquals(expected, chars.toString());
+
+        JsonUtf8Output bytes = new JsonUtf8Output();
+        bytes.appendQuoted(value);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        // buffers smaller than the value are passed on while escaping
+        StringWriter writer = new StringWriter();
+        JsonCharOutput smallChars = new JsonCharOutput(writer, 4);
+        smallChars.appendQuoted(value);
+        smallChars.flush();
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonUtf8Output smallBytes = new JsonUtf8Output(stream, 7);
+        smallBytes.appendQuoted(value);
+        smallBytes.flush();
+        assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPreSerializedValues() {
+        Map<String, Object> raw = new TreeMap<String, Object>();
+        raw.put("a", new JsonLdRawJson("{\"b\":[true,null]}"));
+        raw.put("c", Arrays.<Object>asList(new JsonLdRawJson("1.5e3")));
+        assertEquals("{\"a\":{\"b\":[true,null]},\"c\":[1.5e3]}", JsonSerializer.toString(raw));
+
+        // maps holding a serialized object as "value" are written as that object
+        Map<String, Object> preSerialized = new TreeMap<String, Object>();
+        preSerialized.put("value", " \n{\"x\":1}\t");
+        preSerialized.put("other", "ignored");
+        Map<String, Object> json = new TreeMap<String, Object>();
+        json.put("p", preSerialized);
+        json.put("q", Collections.<String, Object>singletonMap("value", "{no object"));
+        assertEquals("{\"p\":{\"x\":1},\"q\":{\"value\":\"{no object\"}}", JsonSerializer.toString(json));
+    }
+}
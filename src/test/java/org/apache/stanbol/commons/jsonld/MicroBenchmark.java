@@ -0,0 +1,86 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.stanbol.commons.jsonld;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+/**
+ * Minimal benchmark harness for the *Benchmark classes of this package. They
+ * are not unit tests and are started manually through their main method, e.g.
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     org.apache.stanbol.commons.jsonld.JsonSerializerBenchmark
+ * </pre>
+ *
+ * Every operation is warmed up first and then measured in several rounds. The
+ * best round is reported as time per operation together with the bytes
+ * allocated per operation by the measuring thread.
+ */
+final class MicroBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	private static final long ROUND_NANOS = 500L * 1000 * 1000;
+
+	private static volatile Object sink;
+
+	private MicroBenchmark() {
+	}
+
+	static void run(String name, Callable<?> operation) throws Exception {
+		// warm up
+		measure(operation, ROUND_NANOS * 2);
+
+		double bestNanos = Double.MAX_VALUE;
+		double bytes = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			double[] result = measure(operation, ROUND_NANOS);
+			if (result[0] < bestNanos) {
+				bestNanos = result[0];
+				bytes = result[1];
+			}
+		}
+		System.out.println(String.format("%-50s %12.1f ns/op %12.0f B/op", name, bestNanos, bytes));
+	}
+
+	private static double[] measure(Callable<?> operation, long duration) throws Exception {
+		long ops = 0;
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			for (int i = 0; i < 16; i++) {
+				sink = operation.call();
+			}
+			ops += 16;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < duration);
+		long allocated = allocatedBytes() - allocatedBefore;
+		return new double[] { (double) elapsed / ops, (double) allocated / ops };
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}